@@ -0,0 +1,178 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import com.github.rholder.moar.concurrent.thread.BalancingThreadPoolExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ * This benchmark sums a cheap function over a large range of values with a
+ * plain loop, with a hand-written loop submitting a task per part from
+ * {@link Parts#between(long, long, long)}, with a parallel stream, and with a
+ * {@link ParallelRange} on both a {@link ForkJoinPool} and a
+ * {@link BalancingThreadPoolExecutor}, for a few different part sizes. The
+ * guided variant uses the part size as the smallest part it hands out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParallelRangeBenchmark {
+
+    private static final long END = 10000000 - 1;
+
+    @Param({"1000", "100000"})
+    public long chunkSize;
+
+    private ForkJoinPool forkJoinPool;
+    private BalancingThreadPoolExecutor balancing;
+    private ParallelRange forkJoinRange;
+    private ParallelRange balancingRange;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        forkJoinPool = new ForkJoinPool(threads);
+        balancing = StrategicExecutors.newBalancingThreadPoolExecutor(threads, 1.0f);
+        forkJoinRange = new ParallelRange(forkJoinPool);
+        balancingRange = new ParallelRange(balancing, threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        forkJoinPool.shutdown();
+        balancing.shutdown();
+        forkJoinPool.awaitTermination(1, TimeUnit.MINUTES);
+        balancing.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private static long f(long i) {
+        return (i * 31) ^ (i >>> 3);
+    }
+
+    private static long sum(long start, long end) {
+        long sum = 0;
+        for (long i = start; i <= end; i++) {
+            sum += f(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sequentialLoop() {
+        return sum(0, END);
+    }
+
+    @Benchmark
+    public long handWrittenTasks() throws ExecutionException, InterruptedException {
+        List<Future<Long>> futures = new ArrayList<Future<Long>>();
+        for (final Part part : Parts.between(0, END, chunkSize)) {
+            futures.add(forkJoinPool.submit(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return sum(part.start, part.end);
+                }
+            }));
+        }
+        long sum = 0;
+        for (Future<Long> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long parallelStream() throws ExecutionException, InterruptedException {
+        return forkJoinPool.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return LongStream.rangeClosed(0, END).parallel().map(new LongUnaryOperator() {
+                    @Override
+                    public long applyAsLong(long i) {
+                        return f(i);
+                    }
+                }).sum();
+            }
+        }).get();
+    }
+
+    @Benchmark
+    public long parallelRangeForkJoin() throws ExecutionException, InterruptedException {
+        return reduce(forkJoinRange, RangeDispenser.fixed(0, END, chunkSize));
+    }
+
+    @Benchmark
+    public long parallelRangeBalancing() throws ExecutionException, InterruptedException {
+        return reduce(balancingRange, RangeDispenser.fixed(0, END, chunkSize));
+    }
+
+    @Benchmark
+    public long parallelRangeGuided() throws ExecutionException, InterruptedException {
+        return reduce(forkJoinRange, RangeDispenser.guided(0, END, forkJoinRange.getParallelism(), chunkSize));
+    }
+
+    private long reduce(ParallelRange range, RangeDispenser dispenser) throws ExecutionException, InterruptedException {
+        return range.parallelReduce(dispenser,
+                new Supplier<long[]>() {
+                    @Override
+                    public long[] get() {
+                        return new long[1];
+                    }
+                },
+                new RangeAccumulator<long[]>() {
+                    @Override
+                    public long[] accumulate(long[] accumulator, long start, long end) {
+                        accumulator[0] += sum(start, end);
+                        return accumulator;
+                    }
+                },
+                new BinaryOperator<long[]>() {
+                    @Override
+                    public long[] apply(long[] a, long[] b) {
+                        a[0] += b[0];
+                        return a;
+                    }
+                })[0];
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark transposes a square matrix of doubles in parallel, once split
+ * into parts of whole rows with a {@link ParallelRange} and once split into
+ * tiles sized to fit the L1 cache with {@link ParallelTiles}, in both
+ * {@link TileOrder}'s. Splitting by rows writes every element of a row to a
+ * different row of the result, touching a new cache line for each one, while a
+ * tile reuses the cache lines of both matrices it touches before moving on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TilingBenchmark {
+
+    @Param({"1024", "4096"})
+    public int n;
+
+    private double[] source;
+    private double[] target;
+    private ForkJoinPool forkJoinPool;
+    private ParallelRange parallelRange;
+    private ParallelTiles parallelTiles;
+    private long side;
+    private List<Tile> rowMajorTiles;
+    private List<Tile> zOrderTiles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = new double[n * n];
+        target = new double[n * n];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = i;
+        }
+
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        parallelRange = new ParallelRange(forkJoinPool);
+        parallelTiles = new ParallelTiles(parallelRange);
+
+        // the tile being read and the one being written
+        side = Tiles.tileSize(8, Tiles.L1_CACHE_BYTES, 2);
+        rowMajorTiles = Tiles.among(n, n, side, side, TileOrder.ROW_MAJOR);
+        zOrderTiles = Tiles.among(n, n, side, side, TileOrder.Z_ORDER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        forkJoinPool.shutdown();
+        forkJoinPool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void transpose(long rowStart, long rowEnd, long colStart, long colEnd) {
+        for (int r = (int) rowStart; r <= rowEnd; r++) {
+            for (int c = (int) colStart; c <= colEnd; c++) {
+                target[c * n + r] = source[r * n + c];
+            }
+        }
+    }
+
+    @Benchmark
+    public double[] rows() throws ExecutionException, InterruptedException {
+        // one part per row of tiles, so only the shape of the parts differs
+        parallelRange.parallelFor(0, n - 1, side, new RangeTask() {
+            @Override
+            public void run(long start, long end) {
+                transpose(start, end, 0, n - 1);
+            }
+        });
+        return target;
+    }
+
+    @Benchmark
+    public double[] tilesRowMajor() throws ExecutionException, InterruptedException {
+        return tiled(rowMajorTiles);
+    }
+
+    @Benchmark
+    public double[] tilesZOrder() throws ExecutionException, InterruptedException {
+        return tiled(zOrderTiles);
+    }
+
+    private double[] tiled(List<Tile> tiles) throws ExecutionException, InterruptedException {
+        parallelTiles.forEach(tiles, new TileTask() {
+            @Override
+            public void run(long rowStart, long rowEnd, long colStart, long colEnd) {
+                transpose(rowStart, rowEnd, colStart, colEnd);
+            }
+        });
+        return target;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This task simulates a blocking call by sleeping for a random amount of time
+ * between minWait (inclusive) and maxWait (exclusive) microseconds before
+ * running the given {@link Runnable}.
+ */
+public class BlockingWorkerSim implements Runnable {
+
+    private final long minWait;
+    private final long maxWait;
+    private final Runnable runnable;
+
+    public BlockingWorkerSim(long minWait, long maxWait, Runnable runnable) {
+        if (minWait < 0 || maxWait <= minWait) {
+            throw new IllegalArgumentException();
+        }
+        this.minWait = minWait;
+        this.maxWait = maxWait;
+        this.runnable = runnable;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // simulate blocking call by sleeping
+            TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextLong(minWait, maxWait));
+            runnable.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
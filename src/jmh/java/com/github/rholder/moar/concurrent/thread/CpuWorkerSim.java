@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This task simulates purely CPU bound work by doing some floating point math
+ * on random numbers for the given number of iterations.
+ */
+public class CpuWorkerSim implements Runnable {
+
+    private final int iterations;
+
+    public CpuWorkerSim(int iterations) {
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void run() {
+        double sum = 0;
+        for(int i = 0; i < iterations; i++) {
+            int a = ThreadLocalRandom.current().nextInt();
+            sum += Math.pow(a, 61) * Math.pow(a, 13);
+        }
+        // keep the JIT from throwing away the loop
+        Blackhole.consumeCPU(sum == 42 ? 1 : 0);
+    }
+}
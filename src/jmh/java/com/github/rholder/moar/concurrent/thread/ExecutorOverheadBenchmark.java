@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the average time it takes to run a task through
+ * each kind of executor, from submitting it to seeing it complete. The
+ * balancing executors are given a {@link PoolSizingController} that never
+ * changes the pool size, so the difference between them and the raw pools they
+ * wrap is the cost of profiling each task.
+ *
+ * The empty task shows the overhead on its own, while the CPU bound and
+ * blocking tasks show how much of it is left once tasks do real work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ExecutorOverheadBenchmark {
+
+    private static final int TASKS = 1000;
+    private static final int THREADS = 4;
+
+    @Param({"threadPool", "balancing", "balancingSampled", "profiling", "forkJoin", "balancingForkJoin"})
+    public String executor;
+
+    @Param({"empty", "cpu", "blocking"})
+    public String task;
+
+    private ExecutorService executorService;
+    private Runnable work;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executorService = newExecutor(executor);
+        work = newTask(task);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executorService.shutdown();
+        executorService.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void runTasks() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for(int i = 0; i < TASKS; i++) {
+            executorService.execute(new Completing(work, done));
+        }
+        done.await();
+    }
+
+    private static ExecutorService newExecutor(String executor) {
+        PoolSizingController fixed = new PoolSizingController() {
+            @Override
+            public int computePoolSize(PoolSnapshot snapshot) {
+                return THREADS;
+            }
+        };
+
+        if ("threadPool".equals(executor)) {
+            return newThreadPoolExecutor();
+        } else if ("balancing".equals(executor)) {
+            return new BalancingThreadPoolExecutor(newThreadPoolExecutor(), new MXBeanThreadProfiler(), fixed, 0.5f, 23, SamplingStrategies.everyTask());
+        } else if ("balancingSampled".equals(executor)) {
+            return new BalancingThreadPoolExecutor(newThreadPoolExecutor(), new MXBeanThreadProfiler(), fixed, 0.5f, 23, SamplingStrategies.fixedRate(16));
+        } else if ("profiling".equals(executor)) {
+            return new ProfilingThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadPoolExecutor.AbortPolicy(), new MXBeanThreadProfiler(), fixed, 0.5f, 23, SamplingStrategies.everyTask());
+        } else if ("forkJoin".equals(executor)) {
+            return new ForkJoinPool(THREADS);
+        } else if ("balancingForkJoin".equals(executor)) {
+            return new BalancingForkJoinExecutor(THREADS, THREADS, new MXBeanThreadProfiler(), fixed, 0.5f, 23, SamplingStrategies.everyTask());
+        }
+        throw new IllegalArgumentException("Unknown executor " + executor);
+    }
+
+    private static ThreadPoolExecutor newThreadPoolExecutor() {
+        return new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    }
+
+    static Runnable newTask(String task) {
+        if ("empty".equals(task)) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                }
+            };
+        } else if ("cpu".equals(task)) {
+            return new CpuWorkerSim(1000);
+        } else if ("blocking".equals(task)) {
+            return new BlockingWorkerSim(0, 200, new CpuWorkerSim(100));
+        }
+        throw new IllegalArgumentException("Unknown task " + task);
+    }
+
+    /**
+     * Run the given task and count down the latch once it's done.
+     */
+    static class Completing implements Runnable {
+
+        private final Runnable runnable;
+        private final CountDownLatch done;
+
+        Completing(Runnable runnable, CountDownLatch done) {
+            this.runnable = runnable;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runnable.run();
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures how many tasks per second a pool completes once it
+ * has settled, for a range of fixed pool sizes and for the size a
+ * {@link BalancingThreadPoolExecutor} picks on its own. Comparing the balanced
+ * result with the best of the fixed sizes shows how good that pick is for a
+ * workload that mixes some CPU time with a lot of waiting.
+ *
+ * The warmup iterations give the balancing executor time to converge before
+ * anything is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SteadyStateThroughputBenchmark {
+
+    private static final int TASKS = 500;
+    private static final int MAX_THREADS = 256;
+
+    /**
+     * The pool size to use, where "balanced" lets the executor decide.
+     */
+    @Param({"balanced", "4", "16", "64", "256"})
+    public String poolSize;
+
+    @Param({"cpu", "blocking"})
+    public String task;
+
+    private ThreadPoolExecutor threadPoolExecutor;
+    private BalancingThreadPoolExecutor balancing;
+    private Runnable work;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("balanced".equals(poolSize)) {
+            balancing = StrategicExecutors.newBalancingThreadPoolExecutor(MAX_THREADS, 1.0f);
+        } else {
+            int size = Integer.parseInt(poolSize);
+            threadPoolExecutor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new CallerBlocksPolicy());
+        }
+        work = ExecutorOverheadBenchmark.newTask(task);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (balancing != null) {
+            balancing.shutdown();
+            balancing.awaitTermination(1, TimeUnit.MINUTES);
+        } else {
+            threadPoolExecutor.shutdown();
+            threadPoolExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void runTasks() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for(int i = 0; i < TASKS; i++) {
+            Runnable completing = new ExecutorOverheadBenchmark.Completing(work, done);
+            if (balancing != null) {
+                balancing.execute(completing);
+            } else {
+                threadPoolExecutor.execute(completing);
+            }
+        }
+        done.await();
+    }
+}
@@ -16,18 +16,39 @@
 
 package com.github.rholder.moar.concurrent;
 
+import com.github.rholder.moar.concurrent.thread.BalanceListener;
+import com.github.rholder.moar.concurrent.thread.BalancingForkJoinExecutor;
+import com.github.rholder.moar.concurrent.thread.BalancingScheduledExecutor;
 import com.github.rholder.moar.concurrent.thread.BalancingThreadPoolExecutor;
+import com.github.rholder.moar.concurrent.thread.BatchingExecutor;
 import com.github.rholder.moar.concurrent.thread.CallerBlocksPolicy;
+import com.github.rholder.moar.concurrent.thread.CpuBudget;
+import com.github.rholder.moar.concurrent.thread.CpuBudgetCoordinator;
+import com.github.rholder.moar.concurrent.thread.CpuBudgets;
+import com.github.rholder.moar.concurrent.thread.DeadlineExecutor;
+import com.github.rholder.moar.concurrent.thread.KeyedSerialExecutor;
 import com.github.rholder.moar.concurrent.thread.MXBeanThreadProfiler;
+import com.github.rholder.moar.concurrent.thread.PoolSizingController;
+import com.github.rholder.moar.concurrent.thread.PoolSizingControllers;
+import com.github.rholder.moar.concurrent.thread.ProfilingThreadPoolExecutor;
+import com.github.rholder.moar.concurrent.thread.RejectionPolicies;
+import com.github.rholder.moar.concurrent.thread.SamplingStrategies;
+import com.github.rholder.moar.concurrent.thread.SamplingStrategy;
+import com.github.rholder.moar.concurrent.thread.TaskClassBalancingExecutor;
+import com.github.rholder.moar.concurrent.thread.TaskClassifier;
+import com.github.rholder.moar.concurrent.thread.TaskClassifiers;
 import com.github.rholder.moar.concurrent.thread.ThreadProfiler;
 
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Provide some convenience functions for creating new
- * {@link BalancingThreadPoolExecutor} instances.
+ * {@link BalancingThreadPoolExecutor} instances and the executors built from
+ * them.
  */
 public class StrategicExecutors {
 
@@ -49,6 +70,98 @@ public class StrategicExecutors {
         return newBalancingThreadPoolExecutor(maxThreads, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER);
     }
 
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads, target utilization, and sampling strategy.
+     * The default smoothing weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param samplingStrategy  decides which of the submitted tasks are
+     *                          profiled, see {@link SamplingStrategies}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             SamplingStrategy samplingStrategy) {
+        return newBalancingThreadPoolExecutor(maxThreads, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, samplingStrategy);
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads, target utilization, and policy for tasks the
+     * pool can't take on right away. The default smoothing weight and balance
+     * after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param rejectionPolicy   decides what happens to a task when every
+     *                          thread is busy, see {@link RejectionPolicies}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             RejectedExecutionHandler rejectionPolicy) {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), rejectionPolicy);
+        return newBalancingThreadPoolExecutor(tpe, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER);
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads, target utilization, and CPU budget. The
+     * default smoothing weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the budgeted CPU time to be used
+     *                          by this pool
+     * @param cpuBudget         decides how many CPU's the pool may use, see
+     *                          {@link CpuBudgets}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             CpuBudget cpuBudget) {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(PoolSizingControllers.targetUtilization(targetUtilization, cpuBudget));
+        return newBalancingThreadPoolExecutor(maxThreads, controller);
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads and target utilization that sizes itself with
+     * a share of the budget divided by the given {@link CpuBudgetCoordinator}.
+     * The default smoothing weight and balance after constants are used. The
+     * share is unregistered once the pool has terminated.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of its share of the CPU time to be
+     *                          used by this pool
+     * @param coordinator       divides the CPU budget among the pools
+     *                          registered with it, such as
+     *                          {@link CpuBudgetCoordinator#jvmWide()}
+     * @param weight            how much more CPU this pool should get than
+     *                          others with the same demand
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             CpuBudgetCoordinator coordinator,
+                                                                             double weight) {
+        final CpuBudgetCoordinator.Share share = coordinator.register(weight);
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new CallerBlocksPolicy()) {
+            @Override
+            protected void terminated() {
+                // don't leave the share behind in a coordinator that outlives the pool
+                share.unregister();
+            }
+        };
+        PoolSizingController controller = PoolSizingControllers.backlogAware(PoolSizingControllers.targetUtilization(targetUtilization, share));
+        BalancingThreadPoolExecutor executor = newBalancingThreadPoolExecutor(tpe, controller, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, SamplingStrategies.everyTask());
+        executor.addBalanceListener(share);
+        return executor;
+    }
+
     /**
      * Return a capped {@link BalancingThreadPoolExecutor} with the given
      * maximum number of threads, target utilization, smoothing weight, and
@@ -68,8 +181,73 @@ public class StrategicExecutors {
                                                                              float targetUtilization,
                                                                              float smoothingWeight,
                                                                              int balanceAfter) {
+        return newBalancingThreadPoolExecutor(maxThreads, targetUtilization, smoothingWeight, balanceAfter, SamplingStrategies.everyTask());
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads, target utilization, smoothing weight, balance
+     * after values, and sampling strategy.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param smoothingWeight   smooth out the averages of the CPU and wait time
+     *                          over time such that tasks aren't too heavily
+     *                          skewed with old or spiking data
+     * @param balanceAfter      balance the thread pool after this many sampled
+     *                          tasks have run
+     * @param samplingStrategy  decides which of the submitted tasks are
+     *                          profiled, see {@link SamplingStrategies}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             float smoothingWeight,
+                                                                             int balanceAfter,
+                                                                             SamplingStrategy samplingStrategy) {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(PoolSizingControllers.targetUtilization(targetUtilization));
+        return newBalancingThreadPoolExecutor(maxThreads, controller, smoothingWeight, balanceAfter, samplingStrategy);
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads that is sized by the given
+     * {@link PoolSizingController}. The default smoothing weight and balance
+     * after constants are used and every task is profiled.
+     *
+     * @param maxThreads           maximum number of threads to use
+     * @param poolSizingController decides on the size of the pool each time it
+     *                             is balanced, see {@link PoolSizingControllers}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             PoolSizingController poolSizingController) {
+        return newBalancingThreadPoolExecutor(maxThreads, poolSizingController, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, SamplingStrategies.everyTask());
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads, pool sizing controller, smoothing weight,
+     * balance after values, and sampling strategy.
+     *
+     * @param maxThreads           maximum number of threads to use
+     * @param poolSizingController decides on the size of the pool each time it
+     *                             is balanced, see {@link PoolSizingControllers}
+     * @param smoothingWeight      smooth out the averages of the CPU and wait
+     *                             time over time such that tasks aren't too
+     *                             heavily skewed with old or spiking data
+     * @param balanceAfter         balance the thread pool after this many
+     *                             sampled tasks have run
+     * @param samplingStrategy     decides which of the submitted tasks are
+     *                             profiled, see {@link SamplingStrategies}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             PoolSizingController poolSizingController,
+                                                                             float smoothingWeight,
+                                                                             int balanceAfter,
+                                                                             SamplingStrategy samplingStrategy) {
         ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new CallerBlocksPolicy());
-        return newBalancingThreadPoolExecutor(tpe, targetUtilization, smoothingWeight, balanceAfter);
+        return newBalancingThreadPoolExecutor(tpe, poolSizingController, smoothingWeight, balanceAfter, samplingStrategy);
     }
 
     /**
@@ -91,7 +269,327 @@ public class StrategicExecutors {
                                                                              float targetUtilization,
                                                                              float smoothingWeight,
                                                                              int balanceAfter) {
+        return newBalancingThreadPoolExecutor(tpe, targetUtilization, smoothingWeight, balanceAfter, SamplingStrategies.everyTask());
+    }
+
+    /**
+     * Return a {@link BalancingThreadPoolExecutor} with the given
+     * {@link ThreadPoolExecutor}, target utilization, smoothing weight, balance
+     * after values, and sampling strategy.
+     *
+     * @param tpe               the underlying executor to use for this instance
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param smoothingWeight   smooth out the averages of the CPU and wait time
+     *                          over time such that tasks aren't too heavily
+     *                          skewed with old or spiking data
+     * @param balanceAfter      balance the thread pool after this many sampled
+     *                          tasks have run
+     * @param samplingStrategy  decides which of the submitted tasks are
+     *                          profiled, see {@link SamplingStrategies}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(ThreadPoolExecutor tpe,
+                                                                             float targetUtilization,
+                                                                             float smoothingWeight,
+                                                                             int balanceAfter,
+                                                                             SamplingStrategy samplingStrategy) {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(PoolSizingControllers.targetUtilization(targetUtilization));
+        return newBalancingThreadPoolExecutor(tpe, controller, smoothingWeight, balanceAfter, samplingStrategy);
+    }
+
+    /**
+     * Return a {@link BalancingThreadPoolExecutor} with the given
+     * {@link ThreadPoolExecutor}, pool sizing controller, smoothing weight,
+     * balance after values, and sampling strategy. When the rejection policy
+     * of the {@link ThreadPoolExecutor} is also a {@link BalanceListener}, such
+     * as one that sheds based on the measured queue delay, it is added to the
+     * returned executor.
+     *
+     * @param tpe                  the underlying executor to use for this
+     *                             instance
+     * @param poolSizingController decides on the size of the pool each time it
+     *                             is balanced, see {@link PoolSizingControllers}
+     * @param smoothingWeight      smooth out the averages of the CPU and wait
+     *                             time over time such that tasks aren't too
+     *                             heavily skewed with old or spiking data
+     * @param balanceAfter         balance the thread pool after this many
+     *                             sampled tasks have run
+     * @param samplingStrategy     decides which of the submitted tasks are
+     *                             profiled, see {@link SamplingStrategies}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(ThreadPoolExecutor tpe,
+                                                                             PoolSizingController poolSizingController,
+                                                                             float smoothingWeight,
+                                                                             int balanceAfter,
+                                                                             SamplingStrategy samplingStrategy) {
+        RejectedExecutionHandler rejectionPolicy = tpe.getRejectedExecutionHandler();
+        ThreadProfiler tp = new MXBeanThreadProfiler();
+        BalancingThreadPoolExecutor executor = new BalancingThreadPoolExecutor(tpe, tp, poolSizingController, smoothingWeight, balanceAfter, samplingStrategy);
+        if (rejectionPolicy instanceof BalanceListener) {
+            executor.addBalanceListener((BalanceListener) rejectionPolicy);
+        }
+        return executor;
+    }
+
+    /**
+     * Return a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads and target utilization that keeps a separate
+     * profile for each class of task as decided by the given
+     * {@link TaskClassifier}. The default smoothing weight and balance after
+     * constants are used and every task is profiled.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param taskClassifier    decides which class each task belongs to, see
+     *                          {@link TaskClassifiers}
+     */
+    public static BalancingThreadPoolExecutor newBalancingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             TaskClassifier taskClassifier) {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new CallerBlocksPolicy());
+        PoolSizingController controller = PoolSizingControllers.backlogAware(PoolSizingControllers.targetUtilization(targetUtilization));
+        ThreadProfiler tp = new MXBeanThreadProfiler();
+        return new BalancingThreadPoolExecutor(tpe, tp, controller, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, SamplingStrategies.everyTask(), taskClassifier);
+    }
+
+    /**
+     * Return a capped {@link ProfilingThreadPoolExecutor} with the given
+     * maximum number of threads and target utilization, which balances like a
+     * {@link BalancingThreadPoolExecutor} without wrapping each task. The
+     * default smoothing weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     */
+    public static ProfilingThreadPoolExecutor newProfilingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization) {
+        return newProfilingThreadPoolExecutor(maxThreads, targetUtilization, SamplingStrategies.everyTask());
+    }
+
+    /**
+     * Return a capped {@link ProfilingThreadPoolExecutor} with the given
+     * maximum number of threads, target utilization, and sampling strategy.
+     * The default smoothing weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param samplingStrategy  decides which of the submitted tasks are
+     *                          profiled, see {@link SamplingStrategies}
+     */
+    public static ProfilingThreadPoolExecutor newProfilingThreadPoolExecutor(int maxThreads,
+                                                                             float targetUtilization,
+                                                                             SamplingStrategy samplingStrategy) {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(PoolSizingControllers.targetUtilization(targetUtilization));
+        return newProfilingThreadPoolExecutor(maxThreads, controller, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, samplingStrategy);
+    }
+
+    /**
+     * Return a capped {@link ProfilingThreadPoolExecutor} with the given
+     * maximum number of threads, pool sizing controller, smoothing weight,
+     * balance after values, and sampling strategy. Tasks wait in an unbounded
+     * queue and the pool starts out with a thread for each processor, growing
+     * and shrinking from there as it balances.
+     *
+     * @param maxThreads           maximum number of threads to use
+     * @param poolSizingController decides on the size of the pool each time it
+     *                             is balanced, see {@link PoolSizingControllers}
+     * @param smoothingWeight      smooth out the averages of the CPU and wait
+     *                             time over time such that tasks aren't too
+     *                             heavily skewed with old or spiking data
+     * @param balanceAfter         balance the thread pool after this many
+     *                             sampled tasks have run
+     * @param samplingStrategy     decides which of the submitted tasks are
+     *                             profiled, see {@link SamplingStrategies}
+     */
+    public static ProfilingThreadPoolExecutor newProfilingThreadPoolExecutor(int maxThreads,
+                                                                             PoolSizingController poolSizingController,
+                                                                             float smoothingWeight,
+                                                                             int balanceAfter,
+                                                                             SamplingStrategy samplingStrategy) {
+        int coreThreads = Math.min(maxThreads, Runtime.getRuntime().availableProcessors());
+        ThreadProfiler tp = new MXBeanThreadProfiler();
+        return new ProfilingThreadPoolExecutor(coreThreads, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadPoolExecutor.AbortPolicy(), tp, poolSizingController, smoothingWeight, balanceAfter, samplingStrategy);
+    }
+
+    /**
+     * Return a {@link TaskClassBalancingExecutor} that runs each class of task,
+     * as decided by the given {@link TaskClassifier}, in its own balanced
+     * sub-pool, with all of the sub-pools sharing the given maximum number of
+     * threads and target utilization. The default smoothing weight and balance
+     * after constants are used and every task is profiled.
+     *
+     * @param maxThreads        maximum number of threads to use across all of
+     *                          the sub-pools
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          all of the sub-pools
+     * @param taskClassifier    decides which class each task belongs to, see
+     *                          {@link TaskClassifiers}
+     */
+    public static TaskClassBalancingExecutor newTaskClassBalancingExecutor(int maxThreads,
+                                                                           float targetUtilization,
+                                                                           TaskClassifier taskClassifier) {
         ThreadProfiler tp = new MXBeanThreadProfiler();
-        return new BalancingThreadPoolExecutor(tpe, tp, targetUtilization, smoothingWeight, balanceAfter);
+        return new TaskClassBalancingExecutor(taskClassifier, maxThreads, tp, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, SamplingStrategies.everyTask());
+    }
+
+    /**
+     * Return a capped {@link BalancingForkJoinExecutor} with the given maximum
+     * number of threads and target utilization. The default smoothing weight
+     * and balance after constants are used and every task is profiled.
+     *
+     * @param maxThreads        maximum number of threads to use, including the
+     *                          spare threads started to stand in for blocked
+     *                          ones
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     */
+    public static BalancingForkJoinExecutor newBalancingForkJoinExecutor(int maxThreads,
+                                                                         float targetUtilization) {
+        return newBalancingForkJoinExecutor(maxThreads, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER, SamplingStrategies.everyTask());
+    }
+
+    /**
+     * Return a capped {@link BalancingForkJoinExecutor} with the given maximum
+     * number of threads, target utilization, smoothing weight, balance after
+     * values, and sampling strategy.
+     *
+     * @param maxThreads        maximum number of threads to use, including the
+     *                          spare threads started to stand in for blocked
+     *                          ones
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param smoothingWeight   smooth out the averages of the CPU and wait time
+     *                          over time such that tasks aren't too heavily
+     *                          skewed with old or spiking data
+     * @param balanceAfter      balance the thread pool after this many sampled
+     *                          tasks have run
+     * @param samplingStrategy  decides which of the submitted tasks are
+     *                          profiled, see {@link SamplingStrategies}
+     */
+    public static BalancingForkJoinExecutor newBalancingForkJoinExecutor(int maxThreads,
+                                                                         float targetUtilization,
+                                                                         float smoothingWeight,
+                                                                         int balanceAfter,
+                                                                         SamplingStrategy samplingStrategy) {
+        ThreadProfiler tp = new MXBeanThreadProfiler();
+        return new BalancingForkJoinExecutor(maxThreads, tp, targetUtilization, smoothingWeight, balanceAfter, samplingStrategy);
+    }
+
+    /**
+     * Return a {@link KeyedSerialExecutor} that runs the tasks for each key in
+     * order, keyed by the tag of tasks implementing
+     * {@link com.github.rholder.moar.concurrent.thread.TaggedTask} with other
+     * tasks left unordered, on top of a capped
+     * {@link BalancingThreadPoolExecutor} with the given maximum number of
+     * threads and target utilization. The underlying executor queues tasks
+     * instead of blocking when all of its threads are busy and the default
+     * smoothing weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     */
+    public static KeyedSerialExecutor newKeyedSerialExecutor(int maxThreads,
+                                                             float targetUtilization) {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        return new KeyedSerialExecutor(newBalancingThreadPoolExecutor(tpe, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER));
+    }
+
+    /**
+     * Return a {@link BatchingExecutor} that coalesces tasks into batches of up
+     * to the given size, handing off partial batches every linger period, and
+     * runs them on a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads and target utilization. Each batch is profiled
+     * as a single task and the default smoothing weight and balance after
+     * constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param maxBatch          hand off a batch as soon as it holds this many
+     *                          tasks
+     * @param linger            hand off partially filled batches this often
+     * @param unit              the unit of the linger period
+     */
+    public static BatchingExecutor newBatchingExecutor(int maxThreads,
+                                                       float targetUtilization,
+                                                       int maxBatch,
+                                                       long linger,
+                                                       TimeUnit unit) {
+        return new BatchingExecutor(newBalancingThreadPoolExecutor(maxThreads, targetUtilization), maxBatch, linger, unit);
+    }
+
+    /**
+     * Return a {@link DeadlineExecutor} that runs tasks earliest deadline
+     * first, discarding the ones whose deadline passed before they could
+     * start, on top of a capped {@link BalancingThreadPoolExecutor} with the
+     * given maximum number of threads and target utilization. The underlying
+     * executor queues tasks instead of blocking when all of its threads are
+     * busy, so the backlog shows up in its sizing, and the default smoothing
+     * weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     */
+    public static DeadlineExecutor newDeadlineExecutor(int maxThreads,
+                                                       float targetUtilization) {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        return new DeadlineExecutor(newBalancingThreadPoolExecutor(tpe, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER));
+    }
+
+    /**
+     * Return a {@link BalancingScheduledExecutor} that runs tasks as they come
+     * due on a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads and target utilization. The underlying
+     * executor queues tasks instead of blocking the timer when all of its
+     * threads are busy, and the default jitter, smoothing weight, and balance
+     * after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     */
+    public static BalancingScheduledExecutor newBalancingScheduledExecutor(int maxThreads,
+                                                                           float targetUtilization) {
+        return newBalancingScheduledExecutor(maxThreads, targetUtilization, BalancingScheduledExecutor.DEFAULT_JITTER);
+    }
+
+    /**
+     * Return a {@link BalancingScheduledExecutor} that runs tasks as they come
+     * due on a capped {@link BalancingThreadPoolExecutor} with the given
+     * maximum number of threads and target utilization, spreading out
+     * periodic tasks by up to the given jitter. The underlying executor queues
+     * tasks instead of blocking the timer when all of its threads are busy,
+     * and the default smoothing weight and balance after constants are used.
+     *
+     * @param maxThreads        maximum number of threads to use
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          this pool
+     * @param jitter            a float between 0.0 and 1.0, the most the start
+     *                          of each periodic task is randomly delayed by as
+     *                          a fraction of its period
+     */
+    public static BalancingScheduledExecutor newBalancingScheduledExecutor(int maxThreads,
+                                                                           float targetUtilization,
+                                                                           float jitter) {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        return new BalancingScheduledExecutor(newBalancingThreadPoolExecutor(tpe, targetUtilization, DEFAULT_SMOOTHING_WEIGHT, DEFAULT_BALANCE_AFTER), jitter);
     }
 }
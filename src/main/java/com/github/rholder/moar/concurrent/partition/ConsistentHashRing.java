@@ -0,0 +1,303 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This assigns {@link Part}'s and other keys to named members, such as the
+ * workers or hosts sharing a range, with consistent hashing. Each member is
+ * placed on a ring of 64-bit hashes at a number of virtual nodes in proportion
+ * to its weight, and a key belongs to the member of the first virtual node at
+ * or after its own hash, wrapping around at the end.
+ *
+ * When a member joins, it takes over only the keys that now land on its own
+ * virtual nodes, and when one leaves only its keys move to the members after
+ * it, so about 1/n of the keys move instead of nearly all of them with a
+ * modulo. The virtual nodes are held in a sorted array that's rebuilt
+ * whenever the members change, making each lookup a binary search that
+ * doesn't lock. Members are expected to change rarely compared to lookups.
+ */
+public class ConsistentHashRing {
+
+    /**
+     * The default number of virtual nodes for a member with a weight of 1.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+
+    // weights is guarded by this, and the ring is replaced rather than modified
+    private final Map<String, Double> weights;
+    private volatile Ring ring;
+
+    /**
+     * Construct a new, empty {@link ConsistentHashRing} with the default
+     * number of virtual nodes.
+     */
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Construct a new, empty {@link ConsistentHashRing}. More virtual nodes
+     * spread keys more evenly between members at the cost of memory.
+     *
+     * @param virtualNodes the number of virtual nodes for a member with a
+     *                     weight of 1
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.virtualNodes = virtualNodes;
+        this.weights = new LinkedHashMap<String, Double>();
+        this.ring = new Ring(new long[0], new String[0]);
+    }
+
+    /**
+     * Add a member with a weight of 1, or reset an existing member's weight to
+     * 1.
+     *
+     * @param member the name of the member
+     */
+    public void add(String member) {
+        add(member, 1.0);
+    }
+
+    /**
+     * Add a member with the given weight, or change the weight of an existing
+     * one. A member with twice the weight of another gets about twice as many
+     * keys. Every member has at least one virtual node.
+     *
+     * @param member the name of the member
+     * @param weight the share of the keys this member should get relative to
+     *               the others
+     */
+    public synchronized void add(String member, double weight) {
+        if (member == null) {
+            throw new NullPointerException();
+        }
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        weights.put(member, weight);
+        rebuild();
+    }
+
+    /**
+     * Remove a member, handing its keys to the members after each of its
+     * virtual nodes.
+     *
+     * @param member the name of the member
+     * @return true if the member was on the ring
+     */
+    public synchronized boolean remove(String member) {
+        if (weights.remove(member) == null) {
+            return false;
+        }
+        rebuild();
+        return true;
+    }
+
+    /**
+     * Return the names of the members on the ring.
+     */
+    public synchronized List<String> getMembers() {
+        return Collections.unmodifiableList(new ArrayList<String>(weights.keySet()));
+    }
+
+    /**
+     * Return the member the given hash belongs to.
+     *
+     * @param hash a 64-bit hash of a key, which should be evenly distributed
+     * @return the name of the member
+     * @throws IllegalStateException if there are no members
+     */
+    public String memberForHash(long hash) {
+        Ring current = ring;
+        if (current.hashes.length == 0) {
+            throw new IllegalStateException("There are no members on the ring");
+        }
+        int i = Arrays.binarySearch(current.hashes, hash);
+        if (i < 0) {
+            i = -i - 1;
+            if (i == current.hashes.length) {
+                i = 0;
+            }
+        }
+        return current.members[i];
+    }
+
+    /**
+     * Return the member the given key belongs to.
+     *
+     * @param key the key to look up
+     * @return the name of the member
+     * @throws IllegalStateException if there are no members
+     */
+    public String memberFor(String key) {
+        return memberForHash(hash(key));
+    }
+
+    /**
+     * Return the member the given key belongs to.
+     *
+     * @param key the key to look up
+     * @return the name of the member
+     * @throws IllegalStateException if there are no members
+     */
+    public String memberFor(long key) {
+        return memberForHash(mix(key));
+    }
+
+    /**
+     * Return the member the given {@link Part} belongs to, which depends on
+     * both its start and end.
+     *
+     * @param part the part to look up
+     * @return the name of the member
+     * @throws IllegalStateException if there are no members
+     */
+    public String memberFor(Part part) {
+        return memberForHash(mix(mix(part.start) ^ part.end));
+    }
+
+    /**
+     * Return the given {@link Part}'s grouped by the member each one belongs
+     * to, keeping their order. Members without any parts are left out.
+     *
+     * @param parts the parts to assign
+     * @return the parts of each member
+     * @throws IllegalStateException if there are no members
+     */
+    public Map<String, List<Part>> assign(List<Part> parts) {
+        Map<String, List<Part>> assigned = new HashMap<String, List<Part>>();
+        for (Part part : parts) {
+            String member = memberFor(part);
+            List<Part> memberParts = assigned.get(member);
+            if (memberParts == null) {
+                memberParts = new ArrayList<Part>();
+                assigned.put(member, memberParts);
+            }
+            memberParts.add(part);
+        }
+        return assigned;
+    }
+
+    /**
+     * Rebuild the ring from the current members. This must be called while
+     * holding this.
+     */
+    private void rebuild() {
+        int total = 0;
+        int[] counts = new int[weights.size()];
+        int m = 0;
+        for (double weight : weights.values()) {
+            counts[m] = (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2, Math.round(virtualNodes * weight)));
+            total += counts[m++];
+        }
+
+        VirtualNode[] nodes = new VirtualNode[total];
+        int n = 0;
+        m = 0;
+        for (String member : weights.keySet()) {
+            for (int i = 0; i < counts[m]; i++) {
+                nodes[n++] = new VirtualNode(hash(member + "#" + i), member);
+            }
+            m++;
+        }
+
+        // sort by hash, keeping the first name of any that collide so every ring with the same members agrees
+        Arrays.sort(nodes);
+        long[] hashes = new long[total];
+        String[] members = new String[total];
+        int unique = 0;
+        for (int i = 0; i < total; i++) {
+            if (unique > 0 && hashes[unique - 1] == nodes[i].hash) {
+                continue;
+            }
+            hashes[unique] = nodes[i].hash;
+            members[unique++] = nodes[i].member;
+        }
+        ring = new Ring(Arrays.copyOf(hashes, unique), Arrays.copyOf(members, unique));
+    }
+
+    /**
+     * Return a 64-bit hash of the UTF-8 bytes of the given string, which is
+     * FNV-1a with the bits mixed by the MurmurHash3 finalizer.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Mix the bits of the given value such that every input bit affects every
+     * output bit, the 64-bit finalizer of MurmurHash3.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The sorted hashes of every virtual node with the member each belongs to.
+     */
+    private static class Ring {
+
+        final long[] hashes;
+        final String[] members;
+
+        Ring(long[] hashes, String[] members) {
+            this.hashes = hashes;
+            this.members = members;
+        }
+    }
+
+    private static class VirtualNode implements Comparable<VirtualNode> {
+
+        final long hash;
+        final String member;
+
+        VirtualNode(long hash, String member) {
+            this.hash = hash;
+            this.member = member;
+        }
+
+        @Override
+        public int compareTo(VirtualNode o) {
+            int c = Long.compare(hash, o.hash);
+            return c != 0 ? c : member.compareTo(o.member);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This {@link RangeCost} is a histogram of how much processing each bucket of
+ * a range costs, with the cost of each bucket assumed to be spread evenly
+ * across its values. Values outside of the buckets cost nothing.
+ *
+ * The cost of any range is computed from the cumulative cost of the buckets
+ * in O(log(buckets)) time, which makes it cheap enough to partition ranges of
+ * any size.
+ */
+public class CostHistogram implements RangeCost {
+
+    private final long start;
+    private final long[] bucketEnds;
+
+    // the total cost of every bucket up to and including each one
+    private final double[] cumulativeCosts;
+
+    /**
+     * Construct a new {@link CostHistogram} where the first bucket covers the
+     * values from start to the first bucket end, inclusive, and every other
+     * bucket covers the values after the end of the one before it up to its
+     * own end.
+     *
+     * @param start       the first value of the first bucket
+     * @param bucketEnds  the last value of each bucket, in increasing order
+     * @param bucketCosts the cost of all of the values in each bucket
+     */
+    public CostHistogram(long start, long[] bucketEnds, double[] bucketCosts) {
+        if (bucketEnds.length != bucketCosts.length || bucketEnds.length == 0) {
+            throw new IllegalArgumentException("There must be a cost for each bucket");
+        }
+
+        this.start = start;
+        this.bucketEnds = Arrays.copyOf(bucketEnds, bucketEnds.length);
+        this.cumulativeCosts = new double[bucketCosts.length];
+
+        long previousEnd = start - 1;
+        double total = 0;
+        for (int i = 0; i < bucketEnds.length; i++) {
+            if (bucketEnds[i] <= previousEnd || bucketCosts[i] < 0) {
+                throw new IllegalArgumentException("Buckets must be in increasing order with non-negative costs");
+            }
+            previousEnd = bucketEnds[i];
+            total += bucketCosts[i];
+            cumulativeCosts[i] = total;
+        }
+    }
+
+    /**
+     * Return a {@link CostHistogram} over the range from start to end,
+     * inclusive, split into the given number of equal buckets, where the cost
+     * of each bucket is estimated from sampled costs of single values. Each
+     * bucket costs the average of the samples that fall in it times its
+     * length, and buckets without any samples use the average of all of them.
+     *
+     * @param start   starting value of the range
+     * @param end     ending value of the range
+     * @param buckets the number of buckets to split the range into
+     * @param values  the sampled values
+     * @param costs   the measured cost of each sampled value
+     */
+    public static CostHistogram fromSamples(long start, long end, int buckets, long[] values, double[] costs) {
+        if (values.length != costs.length || values.length == 0) {
+            throw new IllegalArgumentException("There must be a cost for each sampled value");
+        }
+
+        List<Part> parts = Parts.into(start, end, buckets);
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("The range must not be empty");
+        }
+
+        double[] sums = new double[parts.size()];
+        long[] counts = new long[parts.size()];
+        double total = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (costs[i] < 0) {
+                throw new IllegalArgumentException("Costs must not be negative");
+            }
+            total += costs[i];
+            int bucket = bucketOf(parts, values[i]);
+            if (bucket >= 0) {
+                sums[bucket] += costs[i];
+                counts[bucket]++;
+            }
+        }
+
+        double average = total / values.length;
+        long[] bucketEnds = new long[parts.size()];
+        double[] bucketCosts = new double[parts.size()];
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            double perValue = counts[i] > 0 ? sums[i] / counts[i] : average;
+            bucketEnds[i] = part.end;
+            bucketCosts[i] = perValue * ((part.end - part.start) + 1);
+        }
+        return new CostHistogram(start, bucketEnds, bucketCosts);
+    }
+
+    private static int bucketOf(List<Part> parts, long value) {
+        int lo = 0;
+        int hi = parts.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            Part part = parts.get(mid);
+            if (value < part.start) {
+                hi = mid - 1;
+            } else if (value > part.end) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public double cost(long start, long end) {
+        if (end < start) {
+            return 0;
+        }
+        return cumulativeCost(end) - (start > this.start ? cumulativeCost(start - 1) : 0);
+    }
+
+    /**
+     * Return the total cost of every value up to and including the given one.
+     */
+    private double cumulativeCost(long value) {
+        if (value < start) {
+            return 0;
+        }
+
+        int bucket = Arrays.binarySearch(bucketEnds, value);
+        if (bucket < 0) {
+            bucket = -bucket - 1;
+        }
+        if (bucket >= bucketEnds.length) {
+            return cumulativeCosts[cumulativeCosts.length - 1];
+        }
+
+        double before = bucket == 0 ? 0 : cumulativeCosts[bucket - 1];
+        long bucketStart = bucket == 0 ? start : bucketEnds[bucket - 1] + 1;
+        double fraction = ((value - bucketStart) + 1) / (double) ((bucketEnds[bucket] - bucketStart) + 1);
+        return before + (cumulativeCosts[bucket] - before) * fraction;
+    }
+}
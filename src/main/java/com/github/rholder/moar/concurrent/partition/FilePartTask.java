@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementations of this interface process one part of a file at a time for
+ * a {@link MappedFileReader}.
+ */
+public interface FilePartTask {
+
+    /**
+     * Process the bytes of a part of the file.
+     *
+     * @param offset the position in the file of the first byte of the part
+     * @param buffer a read only buffer holding the bytes of the part, from
+     *               its position to its limit
+     * @throws Exception to stop processing the rest of the file
+     */
+    public void process(long offset, ByteBuffer buffer) throws Exception;
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a collection of utilities to partition files of delimited records by
+ * byte offset, such that no record is split across two partitions.
+ *
+ * Each partition is about the given chunk size, ending at the end of the first
+ * delimiter that finishes at or after where an equal split would have ended
+ * it. Only the bytes around each boundary are read to find the delimiters, so
+ * splitting even very large files is cheap. A partition holding a record
+ * longer than the chunk size is longer than the chunk size, and the last
+ * partition ends at the end of the file whether or not it ends with a
+ * delimiter.
+ *
+ * Since each search starts near where an equal split would end rather than at
+ * the previous boundary, a delimiter must not overlap itself, the way "aa"
+ * does in "aaa", or a boundary may fall on a different match than reading the
+ * file from the start would find.
+ */
+public class FileParts {
+
+    static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.US_ASCII);
+
+    // how much of the file to read at a time while looking for a delimiter
+    private static final int SEARCH_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Return a list of {@link Part}'s of the byte offsets of the given file
+     * split up into chunks of about the given size that end on a newline.
+     *
+     * @param file      the file to partition
+     * @param chunkSize the number of bytes each partition should hold
+     * @return a list of {@link Part}'s
+     * @throws IOException if the file couldn't be read
+     */
+    public static List<Part> byLines(Path file, long chunkSize) throws IOException {
+        return byRecords(file, chunkSize, NEWLINE);
+    }
+
+    /**
+     * Return a list of {@link Part}'s of the byte offsets of the given file
+     * split up into chunks of about the given size that end on the given
+     * delimiter.
+     *
+     * @param file      the file to partition
+     * @param chunkSize the number of bytes each partition should hold
+     * @param delimiter the bytes that end each record
+     * @return a list of {@link Part}'s
+     * @throws IOException if the file couldn't be read
+     */
+    public static List<Part> byRecords(Path file, long chunkSize, byte[] delimiter) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return byRecords(channel, chunkSize, delimiter);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Return a list of {@link Part}'s of the byte offsets of the given
+     * channel's file split up into chunks of about the given size that end on
+     * the given delimiter, which must not overlap itself. The channel's
+     * position is left alone.
+     *
+     * @param channel   the file to partition
+     * @param chunkSize the number of bytes each partition should hold
+     * @param delimiter the bytes that end each record
+     * @return a list of {@link Part}'s
+     * @throws IOException if the file couldn't be read
+     */
+    public static List<Part> byRecords(FileChannel channel, long chunkSize, byte[] delimiter) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        if (delimiter.length == 0) {
+            throw new IllegalArgumentException("Delimiter must not be empty");
+        }
+
+        List<Part> parts = new ArrayList<Part>();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(SEARCH_BUFFER_SIZE, 2 * delimiter.length));
+        long size = channel.size();
+        long start = 0;
+        while (start < size) {
+            long nominalEnd = chunkSize > size - start ? size - 1 : start + chunkSize - 1;
+            if (nominalEnd >= size - 1) {
+                parts.add(new Part(start, size - 1));
+                break;
+            }
+
+            // a delimiter that straddles where an equal split would end still counts
+            long from = Math.max(start, nominalEnd - delimiter.length + 1);
+            long found = indexOf(channel, from, size, delimiter, buffer);
+            long end = found < 0 ? size - 1 : found + delimiter.length - 1;
+            parts.add(new Part(start, end));
+            start = end + 1;
+        }
+        return parts;
+    }
+
+    /**
+     * Return the position of the first occurrence of the delimiter at or after
+     * the given position, or -1 if there isn't one.
+     */
+    static long indexOf(FileChannel channel, long from, long size, byte[] delimiter, ByteBuffer buffer) throws IOException {
+        long position = from;
+        while (size - position >= delimiter.length) {
+            buffer.clear();
+            int read = 0;
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, position + read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            if (read < delimiter.length) {
+                return -1;
+            }
+
+            byte[] bytes = buffer.array();
+            for (int i = 0; i <= read - delimiter.length; i++) {
+                if (matches(bytes, i, delimiter)) {
+                    return position + i;
+                }
+            }
+
+            // keep the tail that may hold the start of a delimiter for the next read
+            position += read - delimiter.length + 1;
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte[] bytes, int offset, byte[] delimiter) {
+        for (int i = 0; i < delimiter.length; i++) {
+            if (bytes[offset + i] != delimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * This reads the parts of a file in parallel on a {@link ParallelRange}, such
+ * as the record aligned parts from {@link FileParts}. Consecutive parts are
+ * grouped into windows of up to {@link Integer#MAX_VALUE} bytes, the most a
+ * single mapping can hold, and each window is memory mapped once, the first
+ * time one of its parts is read. Every part is then handed to a
+ * {@link FilePartTask} as a read only slice of its window, so its bytes are
+ * never copied onto the heap and a file smaller than 2GB costs a single
+ * mapping however finely it's split.
+ *
+ * Since a part can't span two windows, it can't be larger than
+ * {@link Integer#MAX_VALUE} bytes either. Mappings are released when their
+ * buffers are garbage collected, and a slice keeps its whole window mapped,
+ * so tasks shouldn't hold onto them.
+ */
+public class MappedFileReader {
+
+    private final ParallelRange parallelRange;
+    private final long windowSize;
+
+    /**
+     * Construct a new {@link MappedFileReader} reading parts on the given
+     * executor with the default parallelism of a {@link ParallelRange}.
+     *
+     * @param executor the executor to read parts on
+     */
+    public MappedFileReader(Executor executor) {
+        this(new ParallelRange(executor));
+    }
+
+    /**
+     * Construct a new {@link MappedFileReader} reading parts with the given
+     * {@link ParallelRange}.
+     *
+     * @param parallelRange runs the reads of the parts
+     */
+    public MappedFileReader(ParallelRange parallelRange) {
+        this(parallelRange, Integer.MAX_VALUE);
+    }
+
+    MappedFileReader(ParallelRange parallelRange, long windowSize) {
+        if (parallelRange == null) {
+            throw new NullPointerException();
+        }
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.parallelRange = parallelRange;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Split the given file into parts of about the given size that end on a
+     * newline, see {@link FileParts#byLines(Path, long)}, and run the given
+     * task on each of them, waiting for it to finish.
+     *
+     * @param file      the file to read
+     * @param chunkSize the number of bytes each part should hold
+     * @param task      the task to run on each part
+     * @throws IOException          if the file couldn't be opened or split up
+     * @throws ExecutionException   if processing a part threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void readLines(Path file, long chunkSize, FilePartTask task) throws IOException, ExecutionException, InterruptedException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            readAsync(channel, FileParts.byRecords(channel, chunkSize, FileParts.NEWLINE), task).get();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Run the given task on each of the given parts of the file and wait for
+     * it to finish.
+     *
+     * @param file  the file to read
+     * @param parts the byte offsets of each part of the file to read
+     * @param task  the task to run on each part
+     * @throws IOException          if the file couldn't be opened
+     * @throws ExecutionException   if processing a part threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void read(Path file, List<Part> parts, FilePartTask task) throws IOException, ExecutionException, InterruptedException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            readAsync(channel, parts, task).get();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Run the given task on each of the given parts of the channel's file,
+     * returning a {@link CompletableFuture} that completes when all of them
+     * are done. The channel must stay open until then.
+     *
+     * @param channel the file to read
+     * @param parts   the byte offsets of each part of the file to read
+     * @param task    the task to run on each part
+     * @throws IllegalArgumentException if a part is larger than
+     *                                  {@link Integer#MAX_VALUE} bytes
+     */
+    public CompletableFuture<Void> readAsync(final FileChannel channel, final List<Part> parts, final FilePartTask task) {
+        if (channel == null || parts == null || task == null) {
+            throw new NullPointerException();
+        }
+
+        final Window[] windows = windows(parts);
+
+        // hand out the parts by their index, one at a time
+        RangeDispenser dispenser = RangeDispenser.fixed(0, parts.size() - 1, 1);
+        return parallelRange.forEachAsync(dispenser, new RangeTask() {
+            @Override
+            public void run(long start, long end) throws Exception {
+                for (long i = start; i <= end; i++) {
+                    Part part = parts.get((int) i);
+                    task.process(part.start, windows[(int) i].slice(channel, part));
+                }
+            }
+        }, null);
+    }
+
+    /**
+     * Return the window each of the given parts is read from, grouping
+     * consecutive parts together for as long as they all fit in one window.
+     */
+    private Window[] windows(List<Part> parts) {
+        Window[] windows = new Window[parts.size()];
+        List<Part> group = new ArrayList<Part>();
+        long groupStart = 0;
+        long groupEnd = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            if (part.end - part.start >= windowSize) {
+                throw new IllegalArgumentException("Part at " + part.start + " is larger than " + windowSize + " bytes");
+            }
+            long start = group.isEmpty() ? part.start : Math.min(groupStart, part.start);
+            long end = group.isEmpty() ? part.end : Math.max(groupEnd, part.end);
+            if (end - start >= windowSize) {
+                assign(group, groupStart, groupEnd, windows, i);
+                group.clear();
+                start = part.start;
+                end = part.end;
+            }
+            group.add(part);
+            groupStart = start;
+            groupEnd = end;
+        }
+        assign(group, groupStart, groupEnd, windows, parts.size());
+        return windows;
+    }
+
+    private static void assign(List<Part> group, long start, long end, Window[] windows, int next) {
+        Window window = new Window(start, (end - start) + 1);
+        for (int i = next - group.size(); i < next; i++) {
+            windows[i] = window;
+        }
+    }
+
+    /**
+     * This is a span of the file that's mapped once, on first use, and shared
+     * by all of the parts within it.
+     */
+    private static class Window {
+
+        private final long start;
+        private final long size;
+        private volatile MappedByteBuffer buffer;
+
+        public Window(long start, long size) {
+            this.start = start;
+            this.size = size;
+        }
+
+        public ByteBuffer slice(FileChannel channel, Part part) throws IOException {
+            MappedByteBuffer mapped = buffer;
+            if (mapped == null) {
+                synchronized (this) {
+                    mapped = buffer;
+                    if (mapped == null) {
+                        mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                        buffer = mapped;
+                    }
+                }
+            }
+
+            // each part gets its own position and limit over the shared mapping
+            ByteBuffer view = mapped.duplicate();
+            int offset = (int) (part.start - start);
+            view.limit(offset + (int) (part.end - part.start) + 1);
+            view.position(offset);
+            return view.slice();
+        }
+    }
+}
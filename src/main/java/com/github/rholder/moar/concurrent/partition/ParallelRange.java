@@ -0,0 +1,382 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import com.github.rholder.moar.concurrent.thread.CpuBudgets;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * This runs a loop over a range of values in parallel on a given
+ * {@link Executor}, split into the same parts as
+ * {@link Parts#between(long, long, long)} or handed out by any other
+ * {@link RangeDispenser}.
+ *
+ * Rather than submitting a task for every part, a fixed number of workers are
+ * submitted that each keep claiming the next unprocessed part until none are
+ * left. This balances uneven parts across the workers on its own and keeps
+ * the memory used constant no matter how many parts there are. When the cost
+ * of each value varies a lot, a guided {@link RangeDispenser} shrinks the parts
+ * towards the end of the range so that no worker is left with a large part
+ * while the others sit idle. For a
+ * reduction, each worker folds its parts into its own accumulator and the
+ * accumulators are combined as the workers finish, in no particular order.
+ *
+ * The first exception thrown while processing a part stops the remaining parts
+ * from being started and is passed on to the caller, as is cancelling the
+ * {@link CompletableFuture} returned by the asynchronous variants. Parts that
+ * are already running are left to finish.
+ */
+public class ParallelRange {
+
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Construct a new {@link ParallelRange} running on the given executor with
+     * one worker for each thread of a {@link ForkJoinPool} or otherwise one
+     * for each CPU available to the process, see {@link CpuBudgets#container()}.
+     *
+     * @param executor the executor to run the workers on
+     */
+    public ParallelRange(Executor executor) {
+        this(executor, defaultParallelism(executor));
+    }
+
+    /**
+     * Construct a new {@link ParallelRange} running on the given executor with
+     * the given number of workers.
+     *
+     * @param executor    the executor to run the workers on
+     * @param parallelism the most workers to run a range with at once
+     */
+    public ParallelRange(Executor executor, int parallelism) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Return the most workers this runs a range with at once, which is also
+     * the number of workers to give a guided {@link RangeDispenser}.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private static int defaultParallelism(Executor executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        return Math.max(1, (int) Math.ceil(CpuBudgets.container().getAvailableCpus()));
+    }
+
+    /**
+     * Run the given task over every part of the range from start to end,
+     * inclusive, and wait for it to finish.
+     *
+     * @param start     starting value of the range
+     * @param end       ending value of the range
+     * @param chunkSize the size of each part, with the last part containing
+     *                  &lt;= this value
+     * @param task      the task to run for each part
+     * @throws ExecutionException   if processing a part threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void parallelFor(long start, long end, long chunkSize, RangeTask task) throws ExecutionException, InterruptedException {
+        forEachAsync(start, end, chunkSize, task, null).get();
+    }
+
+    /**
+     * Run the given task over every part handed out by the given
+     * {@link RangeDispenser} and wait for it to finish.
+     *
+     * @param dispenser hands out the parts of the range, which can't have been
+     *                  used before
+     * @param task      the task to run for each part
+     * @throws ExecutionException   if processing a part threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void parallelFor(RangeDispenser dispenser, RangeTask task) throws ExecutionException, InterruptedException {
+        forEachAsync(dispenser, task, null).get();
+    }
+
+    /**
+     * Run the given task over every part of the range from start to end,
+     * inclusive, returning a {@link CompletableFuture} that completes when all
+     * of them are done.
+     *
+     * @param start     starting value of the range
+     * @param end       ending value of the range
+     * @param chunkSize the size of each part, with the last part containing
+     *                  &lt;= this value
+     * @param task      the task to run for each part
+     * @param progress  told each time a part is done, may be null
+     */
+    public CompletableFuture<Void> forEachAsync(long start, long end, long chunkSize, RangeTask task, RangeProgressListener progress) {
+        return forEachAsync(fixed(start, end, chunkSize), task, progress);
+    }
+
+    /**
+     * Run the given task over every part handed out by the given
+     * {@link RangeDispenser}, returning a {@link CompletableFuture} that
+     * completes when all of them are done.
+     *
+     * @param dispenser hands out the parts of the range, which can't have been
+     *                  used before
+     * @param task      the task to run for each part
+     * @param progress  told each time a part is done, may be null
+     */
+    public CompletableFuture<Void> forEachAsync(RangeDispenser dispenser, final RangeTask task, RangeProgressListener progress) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        return reduceAsync(dispenser,
+                new Supplier<Void>() {
+                    @Override
+                    public Void get() {
+                        return null;
+                    }
+                },
+                new RangeAccumulator<Void>() {
+                    @Override
+                    public Void accumulate(Void accumulator, long start, long end) throws Exception {
+                        task.run(start, end);
+                        return null;
+                    }
+                },
+                new BinaryOperator<Void>() {
+                    @Override
+                    public Void apply(Void a, Void b) {
+                        return null;
+                    }
+                },
+                progress);
+    }
+
+    /**
+     * Fold every part of the range from start to end, inclusive, into a
+     * result and wait for it.
+     *
+     * @param start       starting value of the range
+     * @param end         ending value of the range
+     * @param chunkSize   the size of each part, with the last part containing
+     *                    &lt;= this value
+     * @param identity    creates the empty accumulator for each worker
+     * @param accumulator folds a part into a worker's accumulator
+     * @param combiner    combines the accumulators of two workers, which must
+     *                    be associative and commutative
+     * @param <A>         the type of the result
+     * @return the combined result of every part
+     * @throws ExecutionException   if processing a part threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <A> A parallelReduce(long start, long end, long chunkSize,
+                                Supplier<A> identity,
+                                RangeAccumulator<A> accumulator,
+                                BinaryOperator<A> combiner) throws ExecutionException, InterruptedException {
+        return reduceAsync(start, end, chunkSize, identity, accumulator, combiner, null).get();
+    }
+
+    /**
+     * Fold every part handed out by the given {@link RangeDispenser} into a
+     * result and wait for it.
+     *
+     * @param dispenser   hands out the parts of the range, which can't have
+     *                    been used before
+     * @param identity    creates the empty accumulator for each worker
+     * @param accumulator folds a part into a worker's accumulator
+     * @param combiner    combines the accumulators of two workers, which must
+     *                    be associative and commutative
+     * @param <A>         the type of the result
+     * @return the combined result of every part
+     * @throws ExecutionException   if processing a part threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public <A> A parallelReduce(RangeDispenser dispenser,
+                                Supplier<A> identity,
+                                RangeAccumulator<A> accumulator,
+                                BinaryOperator<A> combiner) throws ExecutionException, InterruptedException {
+        return reduceAsync(dispenser, identity, accumulator, combiner, null).get();
+    }
+
+    /**
+     * Fold every part of the range from start to end, inclusive, into a
+     * result, returning a {@link CompletableFuture} that completes with it.
+     *
+     * @param start       starting value of the range
+     * @param end         ending value of the range
+     * @param chunkSize   the size of each part, with the last part containing
+     *                    &lt;= this value
+     * @param identity    creates the empty accumulator for each worker
+     * @param accumulator folds a part into a worker's accumulator
+     * @param combiner    combines the accumulators of two workers, which must
+     *                    be associative and commutative
+     * @param progress    told each time a part is done, may be null
+     * @param <A>         the type of the result
+     */
+    public <A> CompletableFuture<A> reduceAsync(long start, long end, long chunkSize,
+                                                Supplier<A> identity,
+                                                RangeAccumulator<A> accumulator,
+                                                BinaryOperator<A> combiner,
+                                                RangeProgressListener progress) {
+        return reduceAsync(fixed(start, end, chunkSize), identity, accumulator, combiner, progress);
+    }
+
+    /**
+     * Fold every part handed out by the given {@link RangeDispenser} into a
+     * result, returning a {@link CompletableFuture} that completes with it.
+     *
+     * @param dispenser   hands out the parts of the range, which can't have
+     *                    been used before
+     * @param identity    creates the empty accumulator for each worker
+     * @param accumulator folds a part into a worker's accumulator
+     * @param combiner    combines the accumulators of two workers, which must
+     *                    be associative and commutative
+     * @param progress    told each time a part is done, may be null
+     * @param <A>         the type of the result
+     */
+    public <A> CompletableFuture<A> reduceAsync(RangeDispenser dispenser,
+                                                Supplier<A> identity,
+                                                RangeAccumulator<A> accumulator,
+                                                BinaryOperator<A> combiner,
+                                                RangeProgressListener progress) {
+        if (dispenser == null || identity == null || accumulator == null || combiner == null) {
+            throw new NullPointerException();
+        }
+
+        if (dispenser.getRemaining() == 0) {
+            // nothing to do for an empty range
+            return CompletableFuture.completedFuture(identity.get());
+        }
+
+        Run<A> run = new Run<A>(dispenser, identity, accumulator, combiner, progress);
+        run.start();
+        return run.result;
+    }
+
+    private static RangeDispenser fixed(long start, long end, long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        return RangeDispenser.fixed(start, end, chunkSize);
+    }
+
+    /**
+     * This is a single run over a range, shared by all of its workers.
+     */
+    private class Run<A> implements Runnable {
+
+        final RangeDispenser dispenser;
+        final Supplier<A> identity;
+        final RangeAccumulator<A> accumulator;
+        final BinaryOperator<A> combiner;
+        final RangeProgressListener progress;
+        final CompletableFuture<A> result;
+
+        final AtomicLong completedValues;
+        final AtomicInteger workers;
+
+        // guarded by this
+        A combined;
+        boolean anyCombined;
+
+        Run(RangeDispenser dispenser,
+            Supplier<A> identity, RangeAccumulator<A> accumulator, BinaryOperator<A> combiner,
+            RangeProgressListener progress) {
+            this.dispenser = dispenser;
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.progress = progress;
+            this.result = new CompletableFuture<A>();
+            this.completedValues = new AtomicLong(0);
+            this.workers = new AtomicInteger(0);
+        }
+
+        void start() {
+            int count = (int) Math.min(parallelism, dispenser.getRemaining());
+            workers.set(count);
+            for (int i = 0; i < count; i++) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(e);
+                    // the workers that never started won't finish either
+                    if (workers.addAndGet(-(count - i)) == 0) {
+                        complete();
+                    }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            A value = null;
+            boolean started = false;
+            try {
+                value = identity.get();
+                started = true;
+                long[] bounds = new long[2];
+                while (!result.isDone() && dispenser.next(bounds)) {
+                    value = accumulator.accumulate(value, bounds[0], bounds[1]);
+
+                    long done = completedValues.addAndGet((bounds[1] - bounds[0]) + 1);
+                    if (progress != null) {
+                        progress.progress(done, dispenser.getTotalLength());
+                    }
+                }
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                if (started) {
+                    combine(value);
+                }
+                if (workers.decrementAndGet() == 0) {
+                    complete();
+                }
+            }
+        }
+
+        private synchronized void combine(A value) {
+            try {
+                combined = anyCombined ? combiner.apply(combined, value) : value;
+                anyCombined = true;
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+
+        private synchronized void complete() {
+            result.complete(combined);
+        }
+    }
+}
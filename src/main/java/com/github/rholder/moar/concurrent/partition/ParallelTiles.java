@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * This runs a task over a list of tiles from {@link Tiles} in parallel on a
+ * {@link ParallelRange}, with each worker claiming the next run of consecutive
+ * tiles in the list until none are left. Claiming several tiles at a time in
+ * {@link TileOrder#Z_ORDER} keeps the tiles each worker processes close
+ * together, so they share more of the data left in cache.
+ */
+public class ParallelTiles {
+
+    private final ParallelRange parallelRange;
+
+    /**
+     * Construct a new {@link ParallelTiles} running on the given executor with
+     * the default parallelism of a {@link ParallelRange}.
+     *
+     * @param executor the executor to process tiles on
+     */
+    public ParallelTiles(Executor executor) {
+        this(new ParallelRange(executor));
+    }
+
+    /**
+     * Construct a new {@link ParallelTiles} processing tiles with the given
+     * {@link ParallelRange}.
+     *
+     * @param parallelRange runs the tasks for the tiles
+     */
+    public ParallelTiles(ParallelRange parallelRange) {
+        if (parallelRange == null) {
+            throw new NullPointerException();
+        }
+        this.parallelRange = parallelRange;
+    }
+
+    /**
+     * Run the given task over every one of the given tiles, one claimed at a
+     * time, and wait for it to finish.
+     *
+     * @param tiles the tiles to process
+     * @param task  the task to run for each tile
+     * @throws ExecutionException   if processing a tile threw an exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void forEach(List<Tile> tiles, TileTask task) throws ExecutionException, InterruptedException {
+        forEachAsync(tiles, 1, task, null).get();
+    }
+
+    /**
+     * Run the given task over every one of the given tiles, returning a
+     * {@link CompletableFuture} that completes when all of them are done.
+     *
+     * @param tiles         the tiles to process
+     * @param tilesPerClaim the number of consecutive tiles each worker claims
+     *                      at a time
+     * @param task          the task to run for each tile
+     * @param progress      told each time a run of tiles is done, counting
+     *                      tiles, may be null
+     */
+    public CompletableFuture<Void> forEachAsync(final List<Tile> tiles, long tilesPerClaim, final TileTask task, RangeProgressListener progress) {
+        if (tiles == null || task == null) {
+            throw new NullPointerException();
+        }
+
+        // hand out the tiles by their index
+        RangeDispenser dispenser = RangeDispenser.fixed(0, tiles.size() - 1, tilesPerClaim);
+        return parallelRange.forEachAsync(dispenser, new RangeTask() {
+            @Override
+            public void run(long start, long end) throws Exception {
+                for (long i = start; i <= end; i++) {
+                    Tile tile = tiles.get((int) i);
+                    task.run(tile.rowStart, tile.rowEnd, tile.colStart, tile.colEnd);
+                }
+            }
+        }, progress);
+    }
+}
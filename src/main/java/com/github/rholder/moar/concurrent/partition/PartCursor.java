@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * This is a cursor over the same partitions as
+ * {@link Parts#among(long, long, long)} that computes each one on demand and
+ * holds it in place instead of creating a {@link Part} for it, so walking any
+ * number of partitions takes a constant amount of memory.
+ *
+ * <pre>
+ * PartCursor cursor = Parts.cursor(0, totalLength, chunkSize);
+ * while (cursor.next()) {
+ *     process(cursor.getStart(), cursor.getEnd());
+ * }
+ * </pre>
+ *
+ * A cursor is meant to be used from a single thread.
+ */
+public class PartCursor {
+
+    private final long offset;
+    private final long totalLength;
+    private final long chunkSize;
+    private final long fence;
+
+    private long index;
+    private long start;
+    private long end;
+
+    PartCursor(long offset, long totalLength, long chunkSize, long index, long fence) {
+        this.offset = offset;
+        this.totalLength = totalLength;
+        this.chunkSize = chunkSize;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    /**
+     * Move to the next partition, returning false once there are none left.
+     */
+    public boolean next() {
+        if (index >= fence) {
+            return false;
+        }
+        long chunkStart = index * chunkSize;
+        start = chunkStart + offset;
+        end = Math.min(chunkStart + chunkSize, totalLength) - 1 + offset;
+        index++;
+        return true;
+    }
+
+    /**
+     * Return the starting value of the current partition.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Return the ending value of the current partition.
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Return the number of partitions left after the current one.
+     */
+    public long remaining() {
+        return fence - index;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * This is an immutable list of partitions packed into a single long[] of
+ * alternating start and end values, which takes 16 bytes per partition instead
+ * of a {@link Part} object and a reference to it.
+ *
+ * Use {@link #startAt(int)} and {@link #endAt(int)} to read partitions without
+ * creating any objects. As a {@link List} it creates a new {@link Part} every
+ * time one is asked for, so it can be handed to code expecting the lists
+ * returned by {@link Parts} without holding onto all of them at once. The bulk
+ * transformations such as {@link #offset(long)}, {@link #merge(int)} and
+ * {@link #split(long)} work directly on the packed values and return a new
+ * {@link PartList}.
+ */
+public class PartList extends AbstractList<Part> implements RandomAccess {
+
+    private static final PartList EMPTY = new PartList(new long[0]);
+
+    // start and end of partition i are at 2 * i and 2 * i + 1
+    private final long[] bounds;
+
+    private PartList(long[] bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * Return a {@link PartList} of the same partitions as
+     * {@link Parts#between(long, long, long)}.
+     *
+     * @param start     starting value of the range to partition
+     * @param end       ending value of the range to partition
+     * @param chunkSize partition the range in chunks of this size, with the
+     *                  last chunk containing &lt;= this value
+     * @return a {@link PartList} of the partitions
+     */
+    public static PartList between(long start, long end, long chunkSize) {
+        return among(start, (end - start) + 1, chunkSize);
+    }
+
+    /**
+     * Return a {@link PartList} of the same partitions as
+     * {@link Parts#among(long, long, long)}.
+     *
+     * @param offset      add this offset to the start and end of the calculated partitions
+     * @param totalLength the total length of the range to partition
+     * @param chunkSize   partition the range in chunks of this size, with the
+     *                    last chunk containing &lt;= this value
+     * @return a {@link PartList} of the partitions
+     */
+    public static PartList among(long offset, long totalLength, long chunkSize) {
+        PartCursor cursor = Parts.cursor(offset, totalLength, chunkSize);
+        long[] bounds = new long[checkedLength(cursor.remaining())];
+        for (int i = 0; cursor.next(); i += 2) {
+            bounds[i] = cursor.getStart();
+            bounds[i + 1] = cursor.getEnd();
+        }
+        return new PartList(bounds);
+    }
+
+    /**
+     * Return a {@link PartList} of the given {@link Part}'s.
+     *
+     * @param parts the partitions to copy
+     * @return a {@link PartList} of the partitions
+     */
+    public static PartList copyOf(List<Part> parts) {
+        if (parts instanceof PartList) {
+            return (PartList) parts;
+        }
+        long[] bounds = new long[checkedLength(parts.size())];
+        int i = 0;
+        for (Part p : parts) {
+            bounds[i++] = p.start;
+            bounds[i++] = p.end;
+        }
+        return new PartList(bounds);
+    }
+
+    /**
+     * Return a {@link PartList} of the partitions in the given array of
+     * alternating start and end values, which is copied.
+     *
+     * @param bounds the start and end of each partition in turn
+     * @return a {@link PartList} of the partitions
+     */
+    public static PartList of(long... bounds) {
+        if (bounds.length % 2 != 0) {
+            throw new IllegalArgumentException("There must be an end for every start");
+        }
+        return new PartList(Arrays.copyOf(bounds, bounds.length));
+    }
+
+    /**
+     * Return an empty {@link PartList}.
+     */
+    public static PartList empty() {
+        return EMPTY;
+    }
+
+    @Override
+    public int size() {
+        return bounds.length >> 1;
+    }
+
+    /**
+     * Return a new {@link Part} for the partition at the given index.
+     */
+    @Override
+    public Part get(int index) {
+        return new Part(startAt(index), endAt(index));
+    }
+
+    /**
+     * Return the starting value of the partition at the given index.
+     */
+    public long startAt(int index) {
+        checkIndex(index);
+        return bounds[index << 1];
+    }
+
+    /**
+     * Return the ending value of the partition at the given index.
+     */
+    public long endAt(int index) {
+        checkIndex(index);
+        return bounds[(index << 1) + 1];
+    }
+
+    /**
+     * Return the number of values in the partition at the given index.
+     */
+    public long lengthAt(int index) {
+        return (endAt(index) - startAt(index)) + 1;
+    }
+
+    /**
+     * Return a copy of the alternating start and end values of every
+     * partition.
+     */
+    public long[] toBounds() {
+        return Arrays.copyOf(bounds, bounds.length);
+    }
+
+    /**
+     * Return a new {@link PartList} with the given offset added to the start
+     * and end of every partition.
+     *
+     * @param offset the amount to move every partition by
+     * @return the moved partitions
+     */
+    public PartList offset(long offset) {
+        long[] moved = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            moved[i] = bounds[i] + offset;
+        }
+        return new PartList(moved);
+    }
+
+    /**
+     * Return a new {@link PartList} where each run of the given number of
+     * consecutive partitions is merged into one that starts where the first of
+     * them starts and ends where the last of them ends. The last partition may
+     * be merged from fewer of them.
+     *
+     * @param factor the number of partitions to merge into each one
+     * @return the merged partitions
+     */
+    public PartList merge(int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Must merge at least 1 partition at a time");
+        }
+        int size = size();
+        int merged = size / factor + (size % factor > 0 ? 1 : 0);
+        long[] result = new long[merged << 1];
+        for (int i = 0; i < merged; i++) {
+            int first = i * factor;
+            int last = Math.min(first + factor, size) - 1;
+            result[i << 1] = bounds[first << 1];
+            result[(i << 1) + 1] = bounds[(last << 1) + 1];
+        }
+        return new PartList(result);
+    }
+
+    /**
+     * Return a new {@link PartList} where each partition is split up like
+     * {@link Parts#between(long, long, long)} into chunks of the given size,
+     * with the last chunk of each one containing &lt;= that many values.
+     *
+     * @param chunkSize split each partition into chunks of this size
+     * @return the split partitions
+     */
+    public PartList split(long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        long total = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            total += Parts.count((bounds[i + 1] - bounds[i]) + 1, chunkSize);
+        }
+
+        long[] result = new long[checkedLength(total)];
+        int j = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            long start = bounds[i];
+            long end = bounds[i + 1];
+            do {
+                long chunkEnd = end - start < chunkSize ? end : start + chunkSize - 1;
+                result[j++] = start;
+                result[j++] = chunkEnd;
+                start = chunkEnd + 1;
+            } while (start <= end && start > bounds[i]);
+        }
+        return new PartList(result);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+
+    private static int checkedLength(long partitions) {
+        if (partitions > Integer.MAX_VALUE >> 1) {
+            throw new IllegalArgumentException("Too many partitions for a single PartList: " + partitions);
+        }
+        return (int) (partitions << 1);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * This {@link Spliterator} creates the same partitions as
+ * {@link Parts#among(long, long, long)} one at a time as they're consumed.
+ * Since the partitions are numbered, it splits by handing off the first half
+ * of the partitions it has left, which lets a parallel stream divide the range
+ * evenly without ever listing it.
+ */
+class PartSpliterator implements Spliterator<Part> {
+
+    private final long offset;
+    private final long totalLength;
+    private final long chunkSize;
+
+    // the partitions from index up to but not including fence are left
+    private long index;
+    private final long fence;
+
+    PartSpliterator(long offset, long totalLength, long chunkSize, long index, long fence) {
+        this.offset = offset;
+        this.totalLength = totalLength;
+        this.chunkSize = chunkSize;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    private Part part(long i) {
+        long start = i * chunkSize;
+        long end = Math.min(start + chunkSize, totalLength) - 1;
+        return new Part(start + offset, end + offset);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Part> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(part(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Part> action) {
+        long i = index;
+        index = fence;
+        for (; i < fence; i++) {
+            action.accept(part(i));
+        }
+    }
+
+    @Override
+    public Spliterator<Part> trySplit() {
+        long mid = index + (fence - index) / 2;
+        if (mid <= index) {
+            return null;
+        }
+        PartSpliterator prefix = new PartSpliterator(offset, totalLength, chunkSize, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
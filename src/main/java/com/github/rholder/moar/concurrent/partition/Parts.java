@@ -17,10 +17,28 @@
 package com.github.rholder.moar.concurrent.partition;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongToDoubleFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This is a a collection of numeric range partitioning utilities.
+ *
+ * The lists returned by {@link #among(long, long, long)} and friends hold a
+ * {@link Part} for every partition. For very large ranges split into small
+ * chunks, the lazy variants compute the same partitions on demand instead,
+ * either as an {@link Iterable}, a {@link Spliterator} or {@link Stream} that
+ * splits the range by partition number, or a {@link PartCursor} that reuses a
+ * single mutable holder, all of which take a constant amount of memory.
+ *
+ * When the cost of processing a range isn't proportional to its length,
+ * {@link #byCost(long, long, int, RangeCost)} and
+ * {@link #byElementCost(long, long, int, LongToDoubleFunction)} split it into
+ * a number of partitions of roughly equal cost instead.
  */
 public class Parts {
 
@@ -100,4 +118,271 @@ public class Parts {
         } while (start < totalLength);
         return parts;
     }
-}
\ No newline at end of file
+
+    /**
+     * Return an {@link Iterable} over the same {@link Part}'s as
+     * {@link #between(long, long, long)}, computed as they're iterated.
+     *
+     * @param start     starting value of the range to partition
+     * @param end       ending value of the range to partition
+     * @param chunkSize partition the range in chunks of this size, with the
+     *                  last chunk containing &lt;= this value
+     * @return an {@link Iterable} of {@link Part}'s
+     */
+    public static Iterable<Part> lazilyBetween(long start, long end, long chunkSize) {
+        return lazilyAmong(start, (end - start) + 1, chunkSize);
+    }
+
+    /**
+     * Return an {@link Iterable} over the same {@link Part}'s as
+     * {@link #among(long, long)}, computed as they're iterated.
+     *
+     * @param totalLength the total length of the range to partition
+     * @param chunkSize   partition the range in chunks of this size, with the
+     *                    last chunk containing &lt;= this value
+     * @return an {@link Iterable} of {@link Part}'s
+     */
+    public static Iterable<Part> lazilyAmong(long totalLength, long chunkSize) {
+        return lazilyAmong(0, totalLength, chunkSize);
+    }
+
+    /**
+     * Return an {@link Iterable} over the same {@link Part}'s as
+     * {@link #among(long, long, long)}, computed as they're iterated. Each
+     * iteration starts over from the first part.
+     *
+     * @param offset      add this offset to the start and end of the calculated {@link Part}'s
+     * @param totalLength the total length of the range to partition
+     * @param chunkSize   partition the range in chunks of this size, with the
+     *                    last chunk containing &lt;= this value
+     * @return an {@link Iterable} of {@link Part}'s
+     */
+    public static Iterable<Part> lazilyAmong(final long offset, final long totalLength, final long chunkSize) {
+        checkChunkSize(chunkSize);
+        return new Iterable<Part>() {
+            @Override
+            public Iterator<Part> iterator() {
+                return Spliterators.iterator(spliterator());
+            }
+
+            @Override
+            public Spliterator<Part> spliterator() {
+                return Parts.spliterator(offset, totalLength, chunkSize);
+            }
+        };
+    }
+
+    /**
+     * Return a {@link Spliterator} over the same {@link Part}'s as
+     * {@link #among(long, long, long)}, computed as they're consumed. It
+     * splits evenly by the number of parts, making it a good source for a
+     * parallel {@link Stream}.
+     *
+     * @param offset      add this offset to the start and end of the calculated {@link Part}'s
+     * @param totalLength the total length of the range to partition
+     * @param chunkSize   partition the range in chunks of this size, with the
+     *                    last chunk containing &lt;= this value
+     * @return a {@link Spliterator} of {@link Part}'s
+     */
+    public static Spliterator<Part> spliterator(long offset, long totalLength, long chunkSize) {
+        checkChunkSize(chunkSize);
+        return new PartSpliterator(offset, totalLength, chunkSize, 0, count(totalLength, chunkSize));
+    }
+
+    /**
+     * Return a sequential {@link Stream} of the same {@link Part}'s as
+     * {@link #among(long, long, long)}, computed as they're consumed. Call
+     * {@link Stream#parallel()} on it to have the range split up across
+     * threads.
+     *
+     * @param offset      add this offset to the start and end of the calculated {@link Part}'s
+     * @param totalLength the total length of the range to partition
+     * @param chunkSize   partition the range in chunks of this size, with the
+     *                    last chunk containing &lt;= this value
+     * @return a {@link Stream} of {@link Part}'s
+     */
+    public static Stream<Part> stream(long offset, long totalLength, long chunkSize) {
+        return StreamSupport.stream(spliterator(offset, totalLength, chunkSize), false);
+    }
+
+    /**
+     * Return a {@link PartCursor} over the same partitions as
+     * {@link #among(long, long, long)}, which holds each one in place as it
+     * moves along instead of creating a {@link Part} for it.
+     *
+     * @param offset      add this offset to the start and end of the calculated partitions
+     * @param totalLength the total length of the range to partition
+     * @param chunkSize   partition the range in chunks of this size, with the
+     *                    last chunk containing &lt;= this value
+     * @return a {@link PartCursor} positioned before the first partition
+     */
+    public static PartCursor cursor(long offset, long totalLength, long chunkSize) {
+        checkChunkSize(chunkSize);
+        return new PartCursor(offset, totalLength, chunkSize, 0, count(totalLength, chunkSize));
+    }
+
+    /**
+     * Return a list of {@link Part}'s between two values split up into the
+     * given number of partitions whose lengths differ by at most 1, with the
+     * longer ones first. There are fewer partitions when the range is shorter
+     * than that, and none when it's empty.
+     *
+     * For instance, a start of 23 and end of 43 split into 4 partitions would
+     * result in the following list of returned parts:
+     * <pre>
+     * [23, 28], [29, 33], [34, 38], [39, 43]
+     * </pre>
+     *
+     * @param start      starting value of the range to partition
+     * @param end        ending value of the range to partition
+     * @param partitions the number of partitions to split the range into
+     * @return a list of {@link Part}'s
+     */
+    public static List<Part> into(long start, long end, int partitions) {
+        checkPartitions(partitions);
+        List<Part> parts = new ArrayList<Part>();
+        long totalLength = (end - start) + 1;
+        if (totalLength <= 0) {
+            return parts;
+        }
+
+        int count = (int) Math.min(partitions, totalLength);
+        long length = totalLength / count;
+        long longer = totalLength % count;
+        long partStart = start;
+        for (int i = 0; i < count; i++) {
+            long partEnd = partStart + length - (i < longer ? 0 : 1);
+            parts.add(new Part(partStart, partEnd));
+            partStart = partEnd + 1;
+        }
+        return parts;
+    }
+
+    /**
+     * Return a list of {@link Part}'s between two values split up into the
+     * given number of partitions of roughly equal total cost instead of equal
+     * length, for workloads where some values are much more expensive to
+     * process than others. The end of each partition is found by a binary
+     * search over the cost of the range up to it, so this asks the
+     * {@link RangeCost} for O(partitions * log(length)) costs. There are fewer
+     * partitions when the range is shorter than that, and none when it's
+     * empty. When the whole range costs nothing it's split up by length.
+     *
+     * @param start      starting value of the range to partition
+     * @param end        ending value of the range to partition
+     * @param partitions the number of partitions to split the range into
+     * @param cost       the cost of processing any range of values
+     * @return a list of {@link Part}'s
+     */
+    public static List<Part> byCost(long start, long end, int partitions, RangeCost cost) {
+        checkPartitions(partitions);
+        if (cost == null) {
+            throw new NullPointerException();
+        }
+
+        long totalLength = (end - start) + 1;
+        double totalCost = totalLength > 0 ? cost.cost(start, end) : 0;
+        if (totalLength <= 0 || totalCost <= 0 || partitions == 1) {
+            return into(start, end, partitions);
+        }
+
+        int count = (int) Math.min(partitions, totalLength);
+        List<Part> parts = new ArrayList<Part>();
+        long partStart = start;
+        for (int i = 1; i < count; i++) {
+            double target = totalCost * i / count;
+
+            // find the first value the cost reaches the target at, leaving a value for each remaining part
+            long lo = partStart;
+            long hi = end - (count - i);
+            while (lo < hi) {
+                long mid = lo + ((hi - lo) >>> 1);
+                if (cost.cost(start, mid) < target) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            // stop just short of it when that lands closer to the target
+            if (lo > partStart && target - cost.cost(start, lo - 1) < cost.cost(start, lo) - target) {
+                lo--;
+            }
+            parts.add(new Part(partStart, lo));
+            partStart = lo + 1;
+        }
+        parts.add(new Part(partStart, end));
+        return parts;
+    }
+
+    /**
+     * Return a list of {@link Part}'s between two values split up into the
+     * given number of partitions of roughly equal total cost, where the cost
+     * of each value is given on its own. Unlike
+     * {@link #byCost(long, long, int, RangeCost)} this asks for the cost of
+     * every value in the range twice, once to total them up and once to place
+     * the partitions, so it's meant for ranges small enough to walk. A
+     * {@link CostHistogram} built from a sample of costs scales to any range.
+     *
+     * @param start      starting value of the range to partition
+     * @param end        ending value of the range to partition
+     * @param partitions the number of partitions to split the range into
+     * @param cost       the cost of processing each value
+     * @return a list of {@link Part}'s
+     */
+    public static List<Part> byElementCost(long start, long end, int partitions, LongToDoubleFunction cost) {
+        checkPartitions(partitions);
+        if (cost == null) {
+            throw new NullPointerException();
+        }
+
+        double totalCost = 0;
+        for (long value = start; value <= end && value >= start; value++) {
+            totalCost += cost.applyAsDouble(value);
+        }
+
+        long totalLength = (end - start) + 1;
+        if (totalLength <= 0 || totalCost <= 0 || partitions == 1) {
+            return into(start, end, partitions);
+        }
+
+        int count = (int) Math.min(partitions, totalLength);
+        List<Part> parts = new ArrayList<Part>();
+        long partStart = start;
+        double sum = 0;
+        int i = 1;
+        for (long value = start; i < count; value++) {
+            sum += cost.applyAsDouble(value);
+
+            // cut once the cost reaches the target or there's only a value left for each remaining part
+            if (sum >= totalCost * i / count || end - value == count - i) {
+                parts.add(new Part(partStart, value));
+                partStart = value + 1;
+                i++;
+            }
+        }
+        parts.add(new Part(partStart, end));
+        return parts;
+    }
+
+    /**
+     * Return the number of parts the given range is split into, which is always
+     * at least 1 to match {@link #among(long, long, long)}.
+     */
+    static long count(long totalLength, long chunkSize) {
+        long count = totalLength / chunkSize + (totalLength % chunkSize > 0 ? 1 : 0);
+        return Math.max(1, count);
+    }
+
+    private static void checkChunkSize(long chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+    }
+
+    private static void checkPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("There must be at least 1 partition");
+        }
+    }
+}
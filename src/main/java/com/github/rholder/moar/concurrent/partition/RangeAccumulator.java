@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * Implementations of this interface fold one part of a range at a time into an
+ * accumulated result for a {@link ParallelRange}. Each worker thread has its
+ * own accumulator, so implementations may freely mutate and return the one
+ * they're given.
+ *
+ * @param <A> the type of the accumulated result
+ */
+public interface RangeAccumulator<A> {
+
+    /**
+     * Fold the values from start to end, inclusive, into the given accumulator
+     * and return the result.
+     *
+     * @param accumulator the result accumulated so far by this worker
+     * @param start       starting value of the part
+     * @param end         ending value of the part
+     * @return the new accumulated result
+     * @throws Exception to stop processing the rest of the range
+     */
+    public A accumulate(A accumulator, long start, long end) throws Exception;
+}
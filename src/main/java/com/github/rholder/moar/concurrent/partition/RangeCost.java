@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * Implementations of this interface estimate how expensive it is to process a
+ * range of values, for splitting a range into parts of equal cost with
+ * {@link Parts#byCost(long, long, int, RangeCost)}. Costs must never be
+ * negative, and since parts are found by binary search this should be cheap
+ * to compute for any range, such as from a {@link CostHistogram}.
+ */
+public interface RangeCost {
+
+    /**
+     * Return the cost of processing the values from start to end, inclusive.
+     *
+     * @param start starting value of the range
+     * @param end   ending value of the range
+     */
+    public double cost(long start, long end);
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This hands out the parts of a range to any number of workers, each claiming
+ * the next unclaimed part with a single compare and swap whenever it's ready
+ * for more, so no worker ever waits on another.
+ *
+ * With fixed chunks every part but the last has the same size, which leaves
+ * most workers idle at the end of a job while the last few large parts finish
+ * when the cost per value varies. Guided self-scheduling instead sizes each
+ * part as the remaining values divided by the number of workers, so parts
+ * start large and shrink as the range runs out. Factoring divides by twice the
+ * number of workers, which starts with smaller parts and holds back more of
+ * the range for balancing at the end. Either way parts are never smaller than
+ * the given minimum, except for the very last one, which keeps the cost of
+ * claiming them down.
+ */
+public class RangeDispenser {
+
+    private final long start;
+    private final long totalLength;
+    private final long chunkSize;
+    private final long divisor;
+
+    // the offset from start of the next value to hand out
+    private final AtomicLong next;
+
+    RangeDispenser(long start, long end, long chunkSize, long divisor) {
+        if (chunkSize < 1 || divisor < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.start = start;
+        this.totalLength = Math.max(0, (end - start) + 1);
+        this.chunkSize = chunkSize;
+        this.divisor = divisor;
+        this.next = new AtomicLong(0);
+    }
+
+    /**
+     * Return a {@link RangeDispenser} handing out the same parts as
+     * {@link Parts#between(long, long, long)}, except that an empty range has
+     * none.
+     *
+     * @param start     starting value of the range
+     * @param end       ending value of the range
+     * @param chunkSize the size of each part, with the last part containing
+     *                  &lt;= this value
+     */
+    public static RangeDispenser fixed(long start, long end, long chunkSize) {
+        return new RangeDispenser(start, end, chunkSize, 0);
+    }
+
+    /**
+     * Return a {@link RangeDispenser} using guided self-scheduling, where each
+     * part is the remaining values divided by the number of workers.
+     *
+     * @param start        starting value of the range
+     * @param end          ending value of the range
+     * @param workers      the number of workers sharing the range
+     * @param minChunkSize the smallest part to hand out, except for the last
+     */
+    public static RangeDispenser guided(long start, long end, int workers, long minChunkSize) {
+        if (workers < 1) {
+            throw new IllegalArgumentException();
+        }
+        return new RangeDispenser(start, end, minChunkSize, workers);
+    }
+
+    /**
+     * Return a {@link RangeDispenser} using factoring, where each part is the
+     * remaining values divided by twice the number of workers.
+     *
+     * @param start        starting value of the range
+     * @param end          ending value of the range
+     * @param workers      the number of workers sharing the range
+     * @param minChunkSize the smallest part to hand out, except for the last
+     */
+    public static RangeDispenser factoring(long start, long end, int workers, long minChunkSize) {
+        if (workers < 1) {
+            throw new IllegalArgumentException();
+        }
+        return new RangeDispenser(start, end, minChunkSize, 2L * workers);
+    }
+
+    /**
+     * Claim the next part of the range, returning null once it has all been
+     * handed out.
+     */
+    public Part next() {
+        long[] bounds = new long[2];
+        return next(bounds) ? new Part(bounds[0], bounds[1]) : null;
+    }
+
+    /**
+     * Claim the next part of the range, storing its start and end in the
+     * first two elements of the given array, which lets a worker claim any
+     * number of parts without creating a {@link Part} for each of them.
+     * Returns false once the range has all been handed out.
+     */
+    boolean next(long[] bounds) {
+        for (;;) {
+            long claimed = next.get();
+            long remaining = totalLength - claimed;
+            if (remaining <= 0) {
+                return false;
+            }
+
+            long size = chunkSize;
+            if (divisor > 0) {
+                // round up so the division never hands out nothing
+                size = Math.max(chunkSize, remaining / divisor + (remaining % divisor > 0 ? 1 : 0));
+            }
+            size = Math.min(size, remaining);
+
+            if (next.compareAndSet(claimed, claimed + size)) {
+                bounds[0] = start + claimed;
+                bounds[1] = start + claimed + size - 1;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return the number of values in the whole range.
+     */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Return the number of values not handed out yet.
+     */
+    public long getRemaining() {
+        return Math.max(0, totalLength - next.get());
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * Implementations of this interface are told each time a {@link ParallelRange}
+ * finishes a part. They're called from the worker threads, often several at
+ * once, and should return quickly.
+ */
+public interface RangeProgressListener {
+
+    /**
+     * Called after a part has been processed. Progress is counted in values
+     * rather than parts, since parts may differ in size.
+     *
+     * @param completedValues the number of values processed so far
+     * @param totalValues     the number of values in the whole range
+     */
+    public void progress(long completedValues, long totalValues);
+}
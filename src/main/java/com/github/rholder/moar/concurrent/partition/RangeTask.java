@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * Implementations of this interface process one part of a range at a time for
+ * a {@link ParallelRange}.
+ */
+public interface RangeTask {
+
+    /**
+     * Process the values from start to end, inclusive.
+     *
+     * @param start starting value of the part
+     * @param end   ending value of the part
+     * @throws Exception to stop processing the rest of the range
+     */
+    public void run(long start, long end) throws Exception;
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * This is a simple immutable tuple to hold the start and end rows and columns
+ * of a two dimensional partition.
+ */
+public class Tile {
+
+    /**
+     * Create a new Tile.
+     *
+     * @param rowStart starting row for this tile
+     * @param rowEnd   ending row for this tile
+     * @param colStart starting column for this tile
+     * @param colEnd   ending column for this tile
+     */
+    public Tile(long rowStart, long rowEnd, long colStart, long colEnd) {
+        this.rowStart = rowStart;
+        this.rowEnd = rowEnd;
+        this.colStart = colStart;
+        this.colEnd = colEnd;
+    }
+
+    /**
+     * The starting row for this tile.
+     */
+    public final long rowStart;
+
+    /**
+     * The ending row for this tile.
+     */
+    public final long rowEnd;
+
+    /**
+     * The starting column for this tile.
+     */
+    public final long colStart;
+
+    /**
+     * The ending column for this tile.
+     */
+    public final long colEnd;
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * The order {@link Tiles} lists the tiles of a grid in.
+ */
+public enum TileOrder {
+
+    /**
+     * Every tile of the first row of tiles from left to right, then every tile
+     * of the next one, and so on.
+     */
+    ROW_MAJOR,
+
+    /**
+     * The tiles of each quadrant of the grid before those of the next, in the
+     * order top left, top right, bottom left, bottom right, and likewise
+     * within each quadrant. Tiles that are close together in this order are
+     * close together in both dimensions, so consecutive tiles tend to share
+     * rows or columns that are still in cache.
+     */
+    Z_ORDER
+}
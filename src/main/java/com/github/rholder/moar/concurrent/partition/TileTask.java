@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+/**
+ * Implementations of this interface process one tile at a time for a
+ * {@link ParallelTiles}.
+ */
+public interface TileTask {
+
+    /**
+     * Process the rows from rowStart to rowEnd and the columns from colStart
+     * to colEnd, inclusive.
+     *
+     * @param rowStart starting row of the tile
+     * @param rowEnd   ending row of the tile
+     * @param colStart starting column of the tile
+     * @param colEnd   ending column of the tile
+     * @throws Exception to stop processing the rest of the tiles
+     */
+    public void run(long rowStart, long rowEnd, long colStart, long colEnd) throws Exception;
+}
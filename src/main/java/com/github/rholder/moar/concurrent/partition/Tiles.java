@@ -0,0 +1,198 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a collection of two dimensional partitioning utilities, for work such
+ * as matrix and image processing that goes faster when it's split into tiles
+ * small enough for the data they touch to stay in cache.
+ *
+ * Like {@link Parts}, each dimension is split into chunks of the given size
+ * with the last chunk containing &lt;= that many rows or columns, and the
+ * resulting tiles are listed in the given {@link TileOrder}.
+ */
+public class Tiles {
+
+    /**
+     * A typical size in bytes of the L1 data cache of a single core.
+     */
+    public static final long L1_CACHE_BYTES = 32 * 1024;
+
+    /**
+     * A typical size in bytes of the L2 cache of a single core.
+     */
+    public static final long L2_CACHE_BYTES = 256 * 1024;
+
+    /**
+     * Return the length of the side of a square tile such that the given
+     * number of tiles of elements of the given size fit in the given number of
+     * bytes of cache together, such as 2 for the source and destination of a
+     * transpose or 3 for the blocks of a matrix multiplication.
+     *
+     * For instance, 3 tiles of 8 byte doubles fit in a 32 KiB L1 cache when
+     * each side is 36 long.
+     *
+     * @param elementSize the size in bytes of each element
+     * @param cacheBytes  the size in bytes of the cache to fit the tiles in
+     * @param tiles       the number of tiles that should fit at once
+     * @return the length of a side of a tile, which is at least 1
+     */
+    public static long tileSize(int elementSize, long cacheBytes, int tiles) {
+        if (elementSize < 1 || cacheBytes < 1 || tiles < 1) {
+            throw new IllegalArgumentException();
+        }
+        long elements = cacheBytes / ((long) elementSize * tiles);
+        return Math.max(1, (long) Math.sqrt(elements));
+    }
+
+    /**
+     * Return a list of {@link Tile}'s covering the given number of rows and
+     * columns starting from 0, split up into tiles of the given size.
+     *
+     * @param rows     the number of rows to partition
+     * @param cols     the number of columns to partition
+     * @param tileRows the number of rows in each tile, with the last row of
+     *                 tiles containing &lt;= this value
+     * @param tileCols the number of columns in each tile, with the last column
+     *                 of tiles containing &lt;= this value
+     * @param order    the order to list the tiles in
+     * @return a list of {@link Tile}'s
+     */
+    public static List<Tile> among(long rows, long cols, long tileRows, long tileCols, TileOrder order) {
+        return between(0, rows - 1, 0, cols - 1, tileRows, tileCols, order);
+    }
+
+    /**
+     * Return a list of {@link Tile}'s covering the given rows and columns,
+     * inclusive, split up into tiles of the given size. There are no tiles
+     * when either range is empty.
+     *
+     * For instance, rows 0 to 4 and columns 10 to 14 split into tiles of 3 by 3
+     * in {@link TileOrder#ROW_MAJOR} would result in the following list of
+     * returned tiles as rows then columns:
+     * <pre>
+     * [0, 2][10, 12], [0, 2][13, 14], [3, 4][10, 12], [3, 4][13, 14]
+     * </pre>
+     *
+     * @param rowStart starting row of the range to partition
+     * @param rowEnd   ending row of the range to partition
+     * @param colStart starting column of the range to partition
+     * @param colEnd   ending column of the range to partition
+     * @param tileRows the number of rows in each tile, with the last row of
+     *                 tiles containing &lt;= this value
+     * @param tileCols the number of columns in each tile, with the last column
+     *                 of tiles containing &lt;= this value
+     * @param order    the order to list the tiles in
+     * @return a list of {@link Tile}'s
+     */
+    public static List<Tile> between(long rowStart, long rowEnd, long colStart, long colEnd,
+                                     long tileRows, long tileCols, TileOrder order) {
+        if (tileRows < 1 || tileCols < 1) {
+            throw new IllegalArgumentException("Tile size must be at least 1");
+        }
+        if (order == null) {
+            throw new NullPointerException();
+        }
+
+        List<Tile> tiles = new ArrayList<Tile>();
+        long rows = (rowEnd - rowStart) + 1;
+        long cols = (colEnd - colStart) + 1;
+        if (rows <= 0 || cols <= 0) {
+            return tiles;
+        }
+
+        Grid grid = new Grid(rowStart, rowEnd, colStart, colEnd, tileRows, tileCols);
+        if (grid.tilesDown * grid.tilesAcross > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many tiles for a single list: " + grid.tilesDown * grid.tilesAcross);
+        }
+
+        switch (order) {
+            case ROW_MAJOR:
+                for (long r = 0; r < grid.tilesDown; r++) {
+                    for (long c = 0; c < grid.tilesAcross; c++) {
+                        tiles.add(grid.tile(r, c));
+                    }
+                }
+                break;
+            case Z_ORDER:
+                long side = Long.highestOneBit(Math.max(grid.tilesDown, grid.tilesAcross));
+                if (side < Math.max(grid.tilesDown, grid.tilesAcross)) {
+                    side <<= 1;
+                }
+                zOrder(grid, 0, 0, side, tiles);
+                break;
+        }
+        return tiles;
+    }
+
+    /**
+     * Add the tiles of the square of the grid with the given top left tile and
+     * side in Z-order, skipping the parts of it that fall outside the grid.
+     */
+    private static void zOrder(Grid grid, long r, long c, long side, List<Tile> tiles) {
+        if (r >= grid.tilesDown || c >= grid.tilesAcross) {
+            return;
+        }
+        if (side == 1) {
+            tiles.add(grid.tile(r, c));
+            return;
+        }
+        long half = side >> 1;
+        zOrder(grid, r, c, half, tiles);
+        zOrder(grid, r, c + half, half, tiles);
+        zOrder(grid, r + half, c, half, tiles);
+        zOrder(grid, r + half, c + half, half, tiles);
+    }
+
+    /**
+     * The bounds of the tile in each row and column of tiles.
+     */
+    private static class Grid {
+
+        final long rowStart;
+        final long rowEnd;
+        final long colStart;
+        final long colEnd;
+        final long tileRows;
+        final long tileCols;
+        final long tilesDown;
+        final long tilesAcross;
+
+        Grid(long rowStart, long rowEnd, long colStart, long colEnd, long tileRows, long tileCols) {
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+            this.tileRows = tileRows;
+            this.tileCols = tileCols;
+            this.tilesDown = Parts.count((rowEnd - rowStart) + 1, tileRows);
+            this.tilesAcross = Parts.count((colEnd - colStart) + 1, tileCols);
+        }
+
+        Tile tile(long r, long c) {
+            long top = rowStart + r * tileRows;
+            long left = colStart + c * tileCols;
+            return new Tile(top,
+                    rowEnd - top < tileRows ? rowEnd : top + tileRows - 1,
+                    left,
+                    colEnd - left < tileCols ? colEnd : left + tileCols - 1);
+        }
+    }
+}
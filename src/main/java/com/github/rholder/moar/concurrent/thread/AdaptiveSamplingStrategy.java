@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.Random;
+
+/**
+ * This SamplingStrategy adjusts how many tasks are skipped between samples so
+ * that each submitting thread produces roughly a fixed number of samples per
+ * second, regardless of how quickly it's submitting tasks. Slow task streams
+ * end up with every task sampled while extremely fast ones only pay for the
+ * profiling of a small fraction of their tasks. With a
+ * {@link ProfilingThreadPoolExecutor}, which samples from its worker threads,
+ * the rate is per worker instead.
+ */
+public class AdaptiveSamplingStrategy implements SamplingStrategy {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final long targetPeriod;
+    private final int maxInterval;
+    private final ThreadLocal<SamplerState> state;
+
+    /**
+     * Construct a new {@link AdaptiveSamplingStrategy} with the given
+     * parameters.
+     *
+     * @param samplesPerSecond the number of samples per second to aim for from
+     *                         each submitting thread
+     * @param maxInterval      never skip more than this many tasks on average
+     *                         between samples
+     */
+    public AdaptiveSamplingStrategy(long samplesPerSecond, int maxInterval) {
+        if (samplesPerSecond < 1 || samplesPerSecond > NANOS_PER_SECOND) {
+            throw new IllegalArgumentException("Samples per second must be between 1 and " + NANOS_PER_SECOND);
+        }
+        if (maxInterval < 1 || maxInterval > FixedRateSamplingStrategy.MAX_RATE) {
+            throw new IllegalArgumentException("Max interval must be between 1 and " + FixedRateSamplingStrategy.MAX_RATE);
+        }
+        this.targetPeriod = NANOS_PER_SECOND / samplesPerSecond;
+        this.maxInterval = maxInterval;
+        this.state = new ThreadLocal<SamplerState>() {
+            @Override
+            protected SamplerState initialValue() {
+                SamplerState s = new SamplerState();
+                s.interval = 1;
+                s.countdown = 1;
+                // start out as if exactly one task arrived in the last period
+                s.lastSample = System.nanoTime() - targetPeriod;
+                return s;
+            }
+        };
+    }
+
+    @Override
+    public int sample() {
+        SamplerState s = state.get();
+        if (--s.countdown > 0) {
+            return 0;
+        }
+
+        // the weight of this sample is the interval that was in effect when it was chosen
+        int weight = s.interval;
+
+        // estimate the current task rate from the tasks skipped since the last sample
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - s.lastSample);
+        double tasksPerNano = s.skipped / (double) elapsed;
+        long nextInterval = Math.round(tasksPerNano * targetPeriod);
+
+        // move halfway towards the new interval so a single stall or burst doesn't swing the rate
+        nextInterval = (s.interval + Math.max(1, Math.min(nextInterval, maxInterval)) + 1) / 2;
+        s.interval = (int) Math.max(1, nextInterval);
+        s.countdown = s.interval == 1 ? 1 : 1 + s.random.nextInt(2 * s.interval - 1);
+        s.skipped = s.countdown;
+        s.lastSample = now;
+        return weight;
+    }
+
+    /**
+     * Per submitting thread sampling state, this is never shared.
+     */
+    static class SamplerState {
+        final Random random = new Random();
+        int interval;
+        int countdown;
+        int skipped = 1;
+        long lastSample;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.ceil;
+
+/**
+ * This PoolSizingController wraps another controller and grows the pool past
+ * what it asks for whenever tasks are backing up, as seen by tasks waiting in
+ * the queue or taking noticeably longer to start than to run. Once tasks start
+ * immediately again, the wrapped controller's size is used as is, which lets
+ * the pool shrink back down.
+ *
+ * The growth follows from Little's law: if tasks wait D nanoseconds to start
+ * and take S nanoseconds to run, the current P threads are roughly P * D / S
+ * threads short of keeping up. At most the current size is added in a single
+ * balance, so the pool at most doubles each time.
+ *
+ * Since a few slow starts barely move the average, a target for the 99th
+ * percentile of the queue delay since the last balance may also be given, see
+ * {@link PoolSnapshot#queueDelay99thPercentile}. Whenever the tail is above
+ * it, the pool grows the same way by the amount the tail overshoots.
+ */
+public class BacklogAwarePoolSizingController implements PoolSizingController {
+
+    public static final double DEFAULT_TOLERANCE = 0.1;
+    public static final long DEFAULT_MIN_DELAY_MILLIS = 1;
+
+    private final PoolSizingController delegate;
+    private final double tolerance;
+    private final long minDelay;
+    private final long tailTarget;
+
+    /**
+     * Construct a new {@link BacklogAwarePoolSizingController} wrapping the
+     * given controller, using the default tolerance and minimum delay.
+     *
+     * @param delegate the controller to use when there is no backlog
+     */
+    public BacklogAwarePoolSizingController(PoolSizingController delegate) {
+        this(delegate, DEFAULT_TOLERANCE, DEFAULT_MIN_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Construct a new {@link BacklogAwarePoolSizingController} with the given
+     * parameters.
+     *
+     * @param delegate  the controller to use when there is no backlog
+     * @param tolerance the fraction of the time a task takes to run that it
+     *                  may spend waiting to start before it counts as backlog
+     * @param minDelay  waiting less than this to start never counts as backlog
+     * @param unit      the time unit of the minimum delay
+     */
+    public BacklogAwarePoolSizingController(PoolSizingController delegate,
+                                            double tolerance,
+                                            long minDelay,
+                                            TimeUnit unit) {
+        this(delegate, tolerance, minDelay, 0, unit);
+    }
+
+    /**
+     * Construct a new {@link BacklogAwarePoolSizingController} that also grows
+     * the pool whenever the 99th percentile of the queue delay is above the
+     * given target.
+     *
+     * @param delegate   the controller to use when there is no backlog
+     * @param tolerance  the fraction of the time a task takes to run that it
+     *                   may spend waiting to start before it counts as backlog
+     * @param minDelay   waiting less than this to start never counts as backlog
+     * @param tailTarget the 99th percentile of the time to start above which
+     *                   the pool grows, or 0 to ignore the tail
+     * @param unit       the time unit of the minimum delay and tail target
+     */
+    public BacklogAwarePoolSizingController(PoolSizingController delegate,
+                                            double tolerance,
+                                            long minDelay,
+                                            long tailTarget,
+                                            TimeUnit unit) {
+        if (delegate == null) {
+            throw new NullPointerException();
+        }
+        if (tolerance < 0.0 || minDelay < 0 || tailTarget < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.delegate = delegate;
+        this.tolerance = tolerance;
+        this.minDelay = unit.toNanos(minDelay);
+        this.tailTarget = unit.toNanos(tailTarget);
+    }
+
+    @Override
+    public int computePoolSize(PoolSnapshot snapshot) {
+        int size = delegate.computePoolSize(snapshot);
+
+        int current = Math.max(1, snapshot.corePoolSize);
+        long serviceTime = Math.max(1, snapshot.waitTime + snapshot.cpuTime);
+        boolean delayed = snapshot.queueDelay > Math.max(minDelay, (long) (tolerance * serviceTime));
+        long tailExcess = tailTarget == 0 ? 0 : snapshot.queueDelay99thPercentile - tailTarget;
+        if (!delayed && tailExcess <= 0 && snapshot.queueDepth == 0) {
+            return size;
+        }
+
+        // enough threads to make up for the delay, or to start everything that's queued
+        int extra = Math.max(1, snapshot.queueDepth);
+        if (delayed) {
+            extra = Math.max(extra, threadsShort(current, snapshot.queueDelay, serviceTime));
+        }
+        if (tailExcess > 0) {
+            extra = Math.max(extra, threadsShort(current, tailExcess, serviceTime));
+        }
+        extra = Math.min(extra, current);
+        return Math.max(size, current + extra);
+    }
+
+    private static int threadsShort(int current, long delay, long serviceTime) {
+        return (int) Math.min(ceil(current * (delay / (double) serviceTime)), Integer.MAX_VALUE);
+    }
+}
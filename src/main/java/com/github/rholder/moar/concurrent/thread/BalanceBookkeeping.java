@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keep the bookkeeping shared by the pools that balance themselves, such as
+ * the {@link BalanceListener}'s to notify, the last size asked for, how often
+ * the pool balances, and how many tasks it rejected, so that every
+ * {@link BalancingThreadPoolExecutorMXBean} reports them the same way.
+ */
+class BalanceBookkeeping {
+
+    private static final String MBEAN_DOMAIN = "com.github.rholder.moar.concurrent";
+
+    private final CopyOnWriteArrayList<BalanceListener> balanceListeners;
+    private final AtomicLong rejectedTasks;
+    private final AtomicLong balanceCount;
+    private volatile int targetPoolSize;
+
+    // guarded by this
+    private long lastBalance;
+    private volatile long balanceInterval;
+
+    BalanceBookkeeping() {
+        this.balanceListeners = new CopyOnWriteArrayList<BalanceListener>();
+        this.rejectedTasks = new AtomicLong(0);
+        this.balanceCount = new AtomicLong(0);
+    }
+
+    void addBalanceListener(BalanceListener listener) {
+        if (listener == null) {
+            throw new NullPointerException();
+        }
+        balanceListeners.add(listener);
+    }
+
+    void removeBalanceListener(BalanceListener listener) {
+        balanceListeners.remove(listener);
+    }
+
+    /**
+     * Fold the time of a balance into the average interval between balances,
+     * returning the nanoseconds since the previous balance, or 0 for the first
+     * one.
+     */
+    synchronized long recordInterval(long timestamp) {
+        long interval = 0;
+        if(lastBalance != 0) {
+            interval = timestamp - lastBalance;
+            balanceInterval = balanceInterval == 0 ? interval : (balanceInterval + interval) / 2;
+        }
+        lastBalance = timestamp;
+        return interval;
+    }
+
+    /**
+     * Record a sizing decision that has just been applied and pass it along to
+     * every {@link BalanceListener}.
+     */
+    void balanced(PoolSnapshot snapshot, int target, int size) {
+        targetPoolSize = target;
+        balanceCount.incrementAndGet();
+        for (BalanceListener listener : balanceListeners) {
+            listener.balanced(snapshot, target, size);
+        }
+    }
+
+    /**
+     * Return a {@link RejectedExecutionHandler} that counts each rejected task
+     * before handing it to the given one.
+     */
+    RejectedExecutionHandler countRejections(RejectedExecutionHandler delegate) {
+        return new CountingPolicy(delegate);
+    }
+
+    /**
+     * Return the handler that was given to {@link #countRejections}, or the
+     * given handler if it doesn't count rejections.
+     */
+    static RejectedExecutionHandler uncounted(RejectedExecutionHandler handler) {
+        return handler instanceof CountingPolicy ? ((CountingPolicy) handler).delegate : handler;
+    }
+
+    int getTargetPoolSize() {
+        return targetPoolSize;
+    }
+
+    long getRejectedTaskCount() {
+        return rejectedTasks.get();
+    }
+
+    long getBalanceCount() {
+        return balanceCount.get();
+    }
+
+    long getBalanceIntervalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(balanceInterval);
+    }
+
+    /**
+     * Register the given pool with the platform MBean server under
+     * com.github.rholder.moar.concurrent:type= followed by the given type and
+     * ,name= followed by the given name, returning the name it was registered
+     * with.
+     */
+    static ObjectName registerMBean(BalancingThreadPoolExecutorMXBean pool, String type, String name) throws JMException {
+        ObjectName objectName = new ObjectName(MBEAN_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(pool, objectName);
+        return objectName;
+    }
+
+    /**
+     * Count each rejected task before handing it to the original
+     * {@link RejectedExecutionHandler}.
+     */
+    private class CountingPolicy implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        CountingPolicy(RejectedExecutionHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejectedTasks.incrementAndGet();
+            delegate.rejectedExecution(r, executor);
+        }
+    }
+}
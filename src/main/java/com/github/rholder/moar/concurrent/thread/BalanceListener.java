@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Implementations of this interface are notified every time a
+ * {@link BalancingThreadPoolExecutor} balances, with the measurements that went
+ * into the decision and the size that came out of it. This can be used to log
+ * sizing decisions or to record them with whatever event or tracing system is
+ * available so they can be lined up against latency later.
+ */
+public interface BalanceListener {
+
+    /**
+     * Called from the worker thread that triggered the balance, after the new
+     * core pool size has been set. The core pool size in the snapshot is the
+     * size the pool had before balancing. This may be called concurrently by
+     * several worker threads and should return quickly.
+     *
+     * @param snapshot       the measurements given to the
+     *                       {@link PoolSizingController}
+     * @param targetPoolSize the size the {@link PoolSizingController} asked for
+     * @param corePoolSize   the core pool size that was set, which is the
+     *                       target clamped to the bounds of the pool
+     */
+    public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize);
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.ceil;
+
+/**
+ * This is a balancing executor built on a work stealing {@link ForkJoinPool}
+ * instead of a {@link java.util.concurrent.ThreadPoolExecutor}, which avoids
+ * funneling every task through a single queue.
+ *
+ * The parallelism of the pool is fixed at N * U, the number of threads needed
+ * to keep the target share of the CPU busy when nothing blocks. Tasks are
+ * profiled just like in a {@link BalancingThreadPoolExecutor} and every
+ * balanceAfter sampled tasks the {@link PoolSizingController} decides how many
+ * threads the pool should really have given how much time tasks spend waiting.
+ * Since a {@link ForkJoinPool} can't be resized, the difference is made up by
+ * running up to that many tasks at a time inside
+ * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}, which lets the
+ * pool start a spare thread to stand in for each of them.
+ *
+ * Tasks that know exactly when they block can instead wrap those calls with
+ * {@link #blocking(Callable)} to have the pool compensate for them directly.
+ */
+public class BalancingForkJoinExecutor extends AbstractExecutorService {
+
+    private final ForkJoinPool forkJoinPool;
+    private final int maxThreads;
+    private final ThreadProfiler threadProfiler;
+    private final PoolSizingController poolSizingController;
+    private final SamplingStrategy samplingStrategy;
+    private final int balanceAfter;
+    private final LiveThreads liveThreads;
+    private final AtomicInteger tasksSampled;
+    private final AtomicLong tasksCompleted;
+
+    // the number of tasks currently running compensated and how many are allowed to
+    private final AtomicInteger compensated;
+    private volatile int compensationLimit;
+
+    public BalancingForkJoinExecutor(int maxThreads,
+                                     ThreadProfiler threadProfiler,
+                                     float targetUtilization,
+                                     float smoothingWeight,
+                                     int balanceAfter,
+                                     SamplingStrategy samplingStrategy) {
+        this(maxThreads,
+                Math.min((int) ceil(CpuBudgets.container().getAvailableCpus() * targetUtilization), maxThreads),
+                threadProfiler,
+                new BacklogAwarePoolSizingController(new UtilizationPoolSizingController(targetUtilization)),
+                smoothingWeight,
+                balanceAfter,
+                samplingStrategy);
+    }
+
+    public BalancingForkJoinExecutor(int maxThreads,
+                                     int parallelism,
+                                     ThreadProfiler threadProfiler,
+                                     PoolSizingController poolSizingController,
+                                     float smoothingWeight,
+                                     int balanceAfter,
+                                     SamplingStrategy samplingStrategy) {
+
+        if (parallelism < 1 || maxThreads < parallelism) {
+            throw new IllegalArgumentException();
+        }
+
+        if (threadProfiler == null || poolSizingController == null || samplingStrategy == null) {
+            throw new NullPointerException();
+        }
+
+        this.forkJoinPool = new ForkJoinPool(parallelism);
+        this.maxThreads = maxThreads;
+        this.threadProfiler = threadProfiler;
+        this.poolSizingController = poolSizingController;
+        this.samplingStrategy = samplingStrategy;
+        this.balanceAfter = balanceAfter;
+        this.liveThreads = new LiveThreads(smoothingWeight);
+        this.tasksSampled = new AtomicInteger(0);
+        this.tasksCompleted = new AtomicLong(0);
+        this.compensated = new AtomicInteger(0);
+    }
+
+    @Override
+    public void shutdown() {
+        forkJoinPool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return forkJoinPool.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return forkJoinPool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return forkJoinPool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return forkJoinPool.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        final int weight = samplingStrategy.sample();
+        if (weight == 0 && compensationLimit == 0) {
+            // unsampled tasks skip the profiling entirely
+            forkJoinPool.execute(command);
+            return;
+        }
+
+        final long submitTime = weight == 0 ? 0 : System.nanoTime();
+        forkJoinPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (weight == 0) {
+                    runCompensated(command);
+                    return;
+                }
+
+                long queueDelay = System.nanoTime() - submitTime;
+                Thread thisThread = Thread.currentThread();
+                long threadId = thisThread.getId();
+                long startTime = threadProfiler.getThreadWaitTime(threadId);
+                long startCpu = threadProfiler.getThreadCpuTime(threadId);
+                try {
+                    runCompensated(command);
+                } finally {
+                    long totalCpuTime = threadProfiler.getThreadCpuTime(threadId) - startCpu;
+                    long totalTime = threadProfiler.getThreadWaitTime(threadId) - startTime;
+                    liveThreads.track(thisThread, weight, totalTime, totalCpuTime, queueDelay);
+
+                    // unsampled tasks aren't counted, so estimate the total from the weights
+                    tasksCompleted.addAndGet(weight);
+
+                    int count = tasksSampled.getAndIncrement();
+                    if(count % balanceAfter == 0) {
+                        balance();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the given command, letting the pool start a spare thread for the
+     * duration if the profile says there should be more threads running than
+     * the pool's parallelism.
+     */
+    private void runCompensated(Runnable command) {
+        if (!tryCompensate()) {
+            command.run();
+            return;
+        }
+
+        try {
+            blocking(command);
+        } finally {
+            compensated.decrementAndGet();
+        }
+    }
+
+    private boolean tryCompensate() {
+        for (;;) {
+            int current = compensated.get();
+            if (current >= compensationLimit) {
+                return false;
+            }
+            if (compensated.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Run the given blocking {@link Callable} such that, when called from a
+     * thread in a {@link ForkJoinPool}, the pool may start a spare thread to
+     * keep its parallelism up while the call blocks. Exceptions thrown by the
+     * call are wrapped in an {@link ExecutionException}.
+     *
+     * @param callable the blocking call to make
+     * @param <V>      the result type of the call
+     * @return the result of the call
+     * @throws ExecutionException   if the call threw an exception
+     * @throws InterruptedException if interrupted while blocking
+     */
+    public static <V> V blocking(Callable<V> callable) throws ExecutionException, InterruptedException {
+        CallableBlocker<V> blocker = new CallableBlocker<V>(callable);
+        ForkJoinPool.managedBlock(blocker);
+        if (blocker.exception != null) {
+            throw new ExecutionException(blocker.exception);
+        }
+        return blocker.result;
+    }
+
+    private static void blocking(Runnable runnable) {
+        RunnableBlocker blocker = new RunnableBlocker(runnable);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Return a snapshot of the current measurements for this pool, averaged
+     * across all of its live threads. The core pool size is the parallelism
+     * plus however many tasks may currently run compensated, and the number of
+     * completed tasks is estimated from the sampled ones.
+     */
+    public PoolSnapshot snapshot() {
+        Tracking average = liveThreads.average();
+        long queued = forkJoinPool.getQueuedSubmissionCount() + forkJoinPool.getQueuedTaskCount();
+        return new PoolSnapshot(System.nanoTime(),
+                forkJoinPool.getParallelism() + compensationLimit,
+                forkJoinPool.getPoolSize(),
+                maxThreads,
+                tasksCompleted.get(),
+                average.avgTotalTime,
+                average.avgCpuTime,
+                (int) Math.min(queued, Integer.MAX_VALUE),
+                average.avgQueueDelay);
+    }
+
+    /**
+     * Compute the optimal number of threads to use in this pool and allow as
+     * many tasks to run compensated as it takes to make up the difference.
+     */
+    private void balance() {
+        // only try to balance when we're not terminating
+        if(!isTerminated()) {
+            PoolSnapshot snapshot = snapshot();
+            int size = poolSizingController.computePoolSize(snapshot);
+            size = Math.max(1, Math.min(size, maxThreads));
+            compensationLimit = Math.max(0, size - forkJoinPool.getParallelism());
+        }
+    }
+
+    /**
+     * Run a {@link Runnable} as a {@link ForkJoinPool.ManagedBlocker}.
+     */
+    private static class RunnableBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private final Runnable runnable;
+        private boolean done;
+
+        RunnableBlocker(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                runnable.run();
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+
+    /**
+     * Run a {@link Callable} as a {@link ForkJoinPool.ManagedBlocker},
+     * remembering its result or exception.
+     */
+    private static class CallableBlocker<V> implements ForkJoinPool.ManagedBlocker {
+
+        private final Callable<V> callable;
+        private boolean done;
+        V result;
+        Exception exception;
+
+        CallableBlocker(Callable<V> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                result = callable.call();
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                exception = e;
+            } finally {
+                done = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This is a {@link ScheduledExecutorService} that keeps track of when tasks are
+ * due on a single timer thread, but runs them on a
+ * {@link BalancingThreadPoolExecutor}. Scheduled tasks are profiled like any
+ * other task, so the pool is sized for the polling, compaction, and flushing
+ * jobs that actually run on it rather than fixed up front.
+ *
+ * Periodic tasks that share a period would otherwise all fire at the same
+ * moment and hit the pool in bursts. To spread them out, the initial delay of
+ * each periodic task is pushed back by a random amount of up to the given
+ * jitter times its period. This only shifts the phase of a task, so fixed rate
+ * tasks still run at exactly their rate afterwards.
+ *
+ * As with a {@link ScheduledThreadPoolExecutor}, runs of the same periodic task
+ * never overlap. A fixed rate task that's still running when it comes due again
+ * runs once more as soon as it finishes, and an exception thrown by a periodic
+ * task cancels the rest of its runs. On shutdown, periodic tasks are cancelled
+ * while delayed tasks still run when they come due, after which the pool is
+ * shut down too. Cancelling a task that's already running doesn't interrupt it.
+ */
+public class BalancingScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    public static final float DEFAULT_JITTER = 0.1f;
+
+    private final BalancingThreadPoolExecutor executor;
+    private final float jitter;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Set<ScheduledTask<?>> periodicTasks;
+
+    /**
+     * Construct a new {@link BalancingScheduledExecutor} running tasks on the
+     * given executor with the default jitter.
+     *
+     * @param executor the executor to run tasks on once they're due
+     */
+    public BalancingScheduledExecutor(BalancingThreadPoolExecutor executor) {
+        this(executor, DEFAULT_JITTER);
+    }
+
+    /**
+     * Construct a new {@link BalancingScheduledExecutor} running tasks on the
+     * given executor.
+     *
+     * @param executor the executor to run tasks on once they're due
+     * @param jitter   a float between 0.0 and 1.0, the most the start of each
+     *                 periodic task is randomly delayed by as a fraction of its
+     *                 period
+     */
+    public BalancingScheduledExecutor(final BalancingThreadPoolExecutor executor, float jitter) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        if (jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.executor = executor;
+        this.jitter = jitter;
+        this.periodicTasks = ConcurrentHashMap.newKeySet();
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "BalancingScheduledExecutor-timer");
+            }
+        }) {
+            @Override
+            protected void terminated() {
+                // nothing else can come due, let the pool finish what it has
+                executor.shutdown();
+            }
+        };
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Return the executor that runs the tasks once they're due.
+     */
+    public BalancingThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        executor.execute(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        if (callable == null || unit == null) {
+            throw new NullPointerException();
+        }
+        ScheduledTask<V> task = new ScheduledTask<V>(callable, 0);
+        task.scheduleNext(unit.toNanos(delay));
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return schedulePeriodic(command, initialDelay, period, unit, true);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return schedulePeriodic(command, initialDelay, delay, unit, false);
+    }
+
+    private ScheduledFuture<?> schedulePeriodic(Runnable command, long initialDelay, long period, TimeUnit unit, boolean fixedRate) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        long periodNanos = unit.toNanos(period);
+        long offset = (long) (ThreadLocalRandom.current().nextDouble() * jitter * periodNanos);
+        ScheduledTask<Object> task = new ScheduledTask<Object>(Executors.callable(command), fixedRate ? periodNanos : -periodNanos);
+        periodicTasks.add(task);
+        if (isShutdown()) {
+            // shutdown() might have missed it, don't leave it hanging
+            task.cancel(false);
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        long initialNanos = unit.toNanos(initialDelay) + offset;
+        if (fixedRate) {
+            task.timerFuture = timer.scheduleAtFixedRate(task.trigger, initialNanos, periodNanos, TimeUnit.NANOSECONDS);
+            if (task.isDone()) {
+                // the first run failed before there was a timer to cancel
+                task.finish();
+            }
+        } else {
+            task.scheduleNext(initialNanos);
+        }
+        return task;
+    }
+
+    @Override
+    public void shutdown() {
+        timer.shutdown();
+        cancelPeriodicTasks();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        timer.shutdownNow();
+        cancelPeriodicTasks();
+        return executor.shutdownNow();
+    }
+
+    private void cancelPeriodicTasks() {
+        for (ScheduledTask<?> task : periodicTasks) {
+            task.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return timer.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return timer.isTerminated() && executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!timer.awaitTermination(timeout, unit)) {
+            return false;
+        }
+        return executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * This is a task waiting on the timer. When it's due, its trigger runs on
+     * the timer thread and hands the task itself to the executor, where it
+     * runs the actual work.
+     */
+    private class ScheduledTask<V> implements ScheduledFuture<V>, Runnable {
+
+        private final Callable<V> callable;
+
+        // positive for a fixed rate, negative for a fixed delay, and 0 to only run once
+        private final long period;
+        private final CompletableFuture<V> result;
+        private volatile ScheduledFuture<?> timerFuture;
+
+        // the following are guarded by this
+        private boolean running;
+        private boolean missed;
+
+        final Runnable trigger = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ScheduledTask.this) {
+                    if (running) {
+                        // the last run is still going, it'll run again right after
+                        missed = true;
+                        return;
+                    }
+                    running = true;
+                }
+                submit();
+            }
+        };
+
+        ScheduledTask(Callable<V> callable, long period) {
+            this.callable = callable;
+            this.period = period;
+            this.result = new CompletableFuture<V>();
+        }
+
+        void scheduleNext(long delayNanos) {
+            try {
+                timerFuture = timer.schedule(trigger, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                if (period == 0) {
+                    throw e;
+                }
+                // shut down between runs of a fixed delay task
+                finish();
+                result.cancel(false);
+            }
+        }
+
+        private void submit() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                finish();
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+
+            V value;
+            try {
+                value = callable.call();
+            } catch (Throwable t) {
+                finish();
+                result.completeExceptionally(t);
+                return;
+            }
+
+            if (period == 0) {
+                result.complete(value);
+            } else if (period < 0) {
+                synchronized (this) {
+                    running = false;
+                }
+                if (!result.isDone()) {
+                    scheduleNext(-period);
+                }
+            } else {
+                synchronized (this) {
+                    if (!missed) {
+                        running = false;
+                        return;
+                    }
+                    missed = false;
+                }
+                submit();
+            }
+        }
+
+        /**
+         * Stop the timer from triggering this task again.
+         */
+        void finish() {
+            ScheduledFuture<?> current = timerFuture;
+            if (current != null) {
+                current.cancel(false);
+            }
+            periodicTasks.remove(this);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            ScheduledFuture<?> current = timerFuture;
+            return current == null ? 0 : current.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = result.cancel(mayInterruptIfRunning);
+            finish();
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return result.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return result.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            return result.get();
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return result.get(timeout, unit);
+        }
+    }
+}
@@ -16,57 +16,142 @@
 
 package com.github.rholder.moar.concurrent.thread;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-
-import static java.lang.Math.ceil;
+import java.util.function.Supplier;
 
 /**
  * This is a rough implementation of an auto-balancing thread pool to optimize
  * for the following condition: optimal pool size = N * U * (1 + (W/C)) where N
  * is the number of CPU's, U is the desired utilization, W is the time each
  * thread spends waiting, and C is the time each thread spends using the CPU.
+ * The formula itself is applied by a {@link UtilizationPoolSizingController},
+ * which may be swapped out for any other {@link PoolSizingController}.
+ *
+ * Profiling a task costs a few calls into the {@link ThreadProfiler}, which can
+ * easily outweigh very small tasks. A {@link SamplingStrategy} may be given to
+ * only profile a subset of the submitted tasks, in which case the remaining
+ * tasks are handed to the underlying executor untouched and the balancing
+ * happens after every balanceAfter sampled tasks.
+ *
+ * Besides the time tasks spend running, sampled tasks also measure how long
+ * they waited between being submitted and starting to run. Together with the
+ * depth of the underlying queue this shows when tasks are backing up, which by
+ * default is used to grow the pool beyond what the CPU profile alone calls for,
+ * see {@link BacklogAwarePoolSizingController}.
+ *
+ * Averaging the profile across all threads works poorly when very different
+ * kinds of tasks share the pool. When a {@link TaskClassifier} is given, a
+ * separate profile is kept for each class of task and W and C are instead
+ * computed as the average over the classes weighted by how many of their tasks
+ * ran recently. To give each class its own pool entirely, see
+ * {@link TaskClassBalancingExecutor}.
+ *
+ * Each executor is also a {@link BalancingThreadPoolExecutorMXBean} that can be
+ * registered with {@link #registerMBean(String)} to watch its current and
+ * target size, measurements, rejections, and how often it balances. Every
+ * sizing decision is also passed along with its inputs to any registered
+ * {@link BalanceListener}.
+ *
+ * The time sampled tasks wait to start and then take to run are also recorded
+ * in a pair of {@link LatencyHistogram}s, taken from the same measurements
+ * used for balancing, so that the tail latency of the pool can be watched and
+ * not just its averages. Those cover the whole life of the pool and are only
+ * for monitoring. A second pair covering just the tasks since the last balance
+ * is cleared every time the pool balances, and their 99th percentiles are part
+ * of every {@link PoolSnapshot}, so a {@link PoolSizingController} such as
+ * {@link BacklogAwarePoolSizingController} can size the pool for the recent
+ * tail as well. Tasks may be submitted with {@link #supplyAsync(Supplier)}
+ * and {@link #runAsync(Runnable)} to get a {@link CompletableFuture} back.
  */
-public class BalancingThreadPoolExecutor extends AbstractExecutorService {
-
-    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+public class BalancingThreadPoolExecutor extends AbstractExecutorService implements BalancingThreadPoolExecutorMXBean {
 
-    private final float targetUtilization;
-
-    private final ConcurrentHashMap<Thread, Tracking> liveThreads;
+    private final LiveThreads liveThreads;
     private final ThreadPoolExecutor threadPoolExecutor;
     private final ThreadProfiler threadProfiler;
-    private final AtomicInteger tasksRun;
-    private final float smoothingWeight;
+    private final AtomicInteger tasksSampled;
     private final int balanceAfter;
+    private final SamplingStrategy samplingStrategy;
+    private final PoolSizingController poolSizingController;
+    private final TaskClassifier taskClassifier;
+    private final ConcurrentHashMap<Object, TaskClassProfile> taskClassProfiles;
+    private final BalanceBookkeeping bookkeeping;
+    private final LatencyHistogram queueDelayHistogram;
+    private final LatencyHistogram runTimeHistogram;
+    private final LatencyHistogram recentQueueDelays;
+    private final LatencyHistogram recentRunTimes;
 
     public BalancingThreadPoolExecutor(ThreadPoolExecutor threadPoolExecutor,
                                        ThreadProfiler threadProfiler,
                                        float targetUtilization,
                                        float smoothingWeight,
                                        int balanceAfter) {
+        this(threadPoolExecutor, threadProfiler, targetUtilization, smoothingWeight, balanceAfter, SamplingStrategies.everyTask());
+    }
 
-        if (targetUtilization <= 0.0 || targetUtilization > 1.0) {
-            throw new IllegalArgumentException();
-        }
+    public BalancingThreadPoolExecutor(ThreadPoolExecutor threadPoolExecutor,
+                                       ThreadProfiler threadProfiler,
+                                       float targetUtilization,
+                                       float smoothingWeight,
+                                       int balanceAfter,
+                                       SamplingStrategy samplingStrategy) {
+        this(threadPoolExecutor,
+                threadProfiler,
+                new BacklogAwarePoolSizingController(new UtilizationPoolSizingController(targetUtilization)),
+                smoothingWeight,
+                balanceAfter,
+                samplingStrategy);
+    }
 
-        if (threadPoolExecutor == null) {
+    public BalancingThreadPoolExecutor(ThreadPoolExecutor threadPoolExecutor,
+                                       ThreadProfiler threadProfiler,
+                                       PoolSizingController poolSizingController,
+                                       float smoothingWeight,
+                                       int balanceAfter,
+                                       SamplingStrategy samplingStrategy) {
+        this(threadPoolExecutor, threadProfiler, poolSizingController, smoothingWeight, balanceAfter, samplingStrategy, null);
+    }
+
+    public BalancingThreadPoolExecutor(ThreadPoolExecutor threadPoolExecutor,
+                                       ThreadProfiler threadProfiler,
+                                       PoolSizingController poolSizingController,
+                                       float smoothingWeight,
+                                       int balanceAfter,
+                                       SamplingStrategy samplingStrategy,
+                                       TaskClassifier taskClassifier) {
+
+        if (threadPoolExecutor == null || poolSizingController == null || samplingStrategy == null) {
             throw new NullPointerException();
         }
 
         this.threadPoolExecutor = threadPoolExecutor;
         this.threadProfiler = threadProfiler;
-        this.targetUtilization = targetUtilization;
-        this.liveThreads = new ConcurrentHashMap<Thread, Tracking>();
-        this.tasksRun = new AtomicInteger(0);
-        this.smoothingWeight = smoothingWeight;
+        this.poolSizingController = poolSizingController;
+        this.liveThreads = new LiveThreads(smoothingWeight);
+        this.tasksSampled = new AtomicInteger(0);
         this.balanceAfter = balanceAfter;
+        this.samplingStrategy = samplingStrategy;
+        this.taskClassifier = taskClassifier;
+        this.taskClassProfiles = new ConcurrentHashMap<Object, TaskClassProfile>();
+        this.bookkeeping = new BalanceBookkeeping();
+        this.queueDelayHistogram = new LatencyHistogram();
+        this.runTimeHistogram = new LatencyHistogram();
+        this.recentQueueDelays = new LatencyHistogram();
+        this.recentRunTimes = new LatencyHistogram();
+
+        // count rejections on the way through to whatever policy was already set
+        threadPoolExecutor.setRejectedExecutionHandler(bookkeeping.countRejections(threadPoolExecutor.getRejectedExecutionHandler()));
     }
 
     @Override
@@ -96,10 +181,21 @@ public class BalancingThreadPoolExecutor extends AbstractExecutorService {
 
     @Override
     public void execute(final Runnable command) {
+        final int weight = samplingStrategy.sample();
+        if (weight == 0) {
+            // unsampled tasks skip the profiling entirely
+            threadPoolExecutor.execute(command);
+            return;
+        }
+
         // wrap the Runnable such that we can collect profiling on the given tasks
+        final TaskClassProfile profile = taskClassifier == null ? null : taskClassProfile(TaskFuture.unwrap(command));
+        final long submitTime = nanoTime();
         threadPoolExecutor.execute(new Runnable() {
             @Override
             public void run() {
+                long started = nanoTime();
+                long queueDelay = started - submitTime;
                 Thread thisThread = Thread.currentThread();
                 long threadId = thisThread.getId();
                 long startTime = threadProfiler.getThreadWaitTime(threadId);
@@ -107,23 +203,24 @@ public class BalancingThreadPoolExecutor extends AbstractExecutorService {
                 try {
                     command.run();
                 } finally {
-                    Tracking tracking = liveThreads.get(thisThread);
                     long totalCpuTime = threadProfiler.getThreadCpuTime(threadId) - startCpu;
                     long totalTime = threadProfiler.getThreadWaitTime(threadId) - startTime;
-                    if(tracking == null) {
-                        // this is an untracked thread, add tracking
-                        tracking = new Tracking();
-                        tracking.avgTotalTime = totalTime;
-                        tracking.avgCpuTime = totalCpuTime;
-                        liveThreads.put(thisThread, tracking);
-                    } else {
-                        // TODO determine exponential smoothing coefficient to specify weight of each task over time
-                        // compute exponential moving averages, see http://en.wikipedia.org/wiki/Exponential_smoothing
-                        tracking.avgTotalTime += smoothingWeight * (totalTime - tracking.avgTotalTime);
-                        tracking.avgCpuTime += smoothingWeight * (totalCpuTime - tracking.avgCpuTime);
+                    liveThreads.track(thisThread, weight, totalTime, totalCpuTime, queueDelay);
+                    long runTime = nanoTime() - started;
+                    queueDelayHistogram.record(queueDelay, weight);
+                    runTimeHistogram.record(runTime, weight);
+                    recentQueueDelays.record(queueDelay, weight);
+                    recentRunTimes.record(runTime, weight);
+
+                    if(profile != null) {
+                        // several threads can run tasks of the same class at once
+                        synchronized (profile) {
+                            liveThreads.track(profile, weight, totalTime, totalCpuTime, queueDelay);
+                        }
+                        profile.tasks.addAndGet(weight);
                     }
 
-                    int count = tasksRun.getAndIncrement();
+                    int count = tasksSampled.getAndIncrement();
                     if(count % balanceAfter == 0) {
                         balance();
                     }
@@ -132,45 +229,261 @@ public class BalancingThreadPoolExecutor extends AbstractExecutorService {
         });
     }
 
+    /**
+     * Run the given {@link Supplier} in this pool, returning a
+     * {@link CompletableFuture} that completes with its result.
+     *
+     * @param supplier the task to run
+     * @param <T>      the result type of the task
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, this);
+    }
+
+    /**
+     * Run the given {@link Runnable} in this pool, returning a
+     * {@link CompletableFuture} that completes once it has run.
+     *
+     * @param runnable the task to run
+     */
+    public CompletableFuture<Void> runAsync(Runnable runnable) {
+        return CompletableFuture.runAsync(runnable, this);
+    }
+
+    /**
+     * Return the histogram of the time sampled tasks waited between being
+     * submitted and starting to run, weighted by the number of tasks each
+     * sample stands for, over the whole life of the pool.
+     */
+    public LatencyHistogram getQueueDelayHistogram() {
+        return queueDelayHistogram;
+    }
+
+    /**
+     * Return the histogram of the wall clock time sampled tasks took to run,
+     * weighted by the number of tasks each sample stands for, over the whole
+     * life of the pool.
+     */
+    public LatencyHistogram getRunTimeHistogram() {
+        return runTimeHistogram;
+    }
+
+    private TaskClassProfile taskClassProfile(Object task) {
+        Object key = taskClassifier.classify(task);
+        TaskClassProfile profile = taskClassProfiles.get(key);
+        if(profile == null) {
+            TaskClassProfile newProfile = new TaskClassProfile();
+            profile = taskClassProfiles.putIfAbsent(key, newProfile);
+            if(profile == null) {
+                profile = newProfile;
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Return the profiles kept for each class of task, keyed by the value
+     * returned from the {@link TaskClassifier}. This is empty unless a
+     * classifier was given.
+     */
+    public Map<Object, TaskClassProfile> getTaskClassProfiles() {
+        return Collections.unmodifiableMap(taskClassProfiles);
+    }
+
+    /**
+     * Add a {@link BalanceListener} to be notified of every sizing decision
+     * made from now on.
+     *
+     * @param listener the listener to add
+     */
+    public void addBalanceListener(BalanceListener listener) {
+        bookkeeping.addBalanceListener(listener);
+    }
+
+    /**
+     * Remove a previously added {@link BalanceListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeBalanceListener(BalanceListener listener) {
+        bookkeeping.removeBalanceListener(listener);
+    }
+
+    /**
+     * Register this executor with the platform MBean server under
+     * com.github.rholder.moar.concurrent:type=BalancingThreadPoolExecutor,name=
+     * followed by the given name, returning the name it was registered with.
+     *
+     * @param name a name unique among the registered executors
+     * @throws JMException if the executor could not be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        return BalanceBookkeeping.registerMBean(this, "BalancingThreadPoolExecutor", name);
+    }
+
+    @Override
+    public int getCorePoolSize() {
+        return threadPoolExecutor.getCorePoolSize();
+    }
+
+    @Override
+    public int getTargetPoolSize() {
+        return bookkeeping.getTargetPoolSize();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return threadPoolExecutor.getPoolSize();
+    }
+
+    @Override
+    public int getMaximumPoolSize() {
+        return threadPoolExecutor.getMaximumPoolSize();
+    }
+
+    @Override
+    public long getAverageWaitTime() {
+        return snapshot().waitTime;
+    }
+
+    @Override
+    public long getAverageCpuTime() {
+        return snapshot().cpuTime;
+    }
+
+    @Override
+    public long getAverageQueueDelay() {
+        return liveThreads.average().avgQueueDelay;
+    }
+
+    @Override
+    public long getQueueDelay99thPercentile() {
+        return queueDelayHistogram.getPercentile(99.0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getRunTime99thPercentile() {
+        return runTimeHistogram.getPercentile(99.0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return threadPoolExecutor.getQueue().size();
+    }
+
+    @Override
+    public long getCompletedTaskCount() {
+        return threadPoolExecutor.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getSampledTaskCount() {
+        return tasksSampled.get();
+    }
+
+    @Override
+    public long getRejectedTaskCount() {
+        return bookkeeping.getRejectedTaskCount();
+    }
+
+    @Override
+    public long getBalanceCount() {
+        return bookkeeping.getBalanceCount();
+    }
+
+    @Override
+    public long getBalanceIntervalMillis() {
+        return bookkeeping.getBalanceIntervalMillis();
+    }
+
+    /**
+     * Return the current time in nanoseconds, used for every queue delay, run
+     * time, and snapshot timestamp. This may be overridden to run the pool in
+     * virtual time, such as in a simulation.
+     */
+    protected long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new TaskFuture<T>(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new TaskFuture<T>(callable);
+    }
+
+    /**
+     * Return a snapshot of the current measurements for this pool, averaged
+     * across all of its live threads. This includes the smoothed wait and CPU
+     * time of each task, how long tasks have been waiting to start after being
+     * submitted, and how many tasks are sitting in the underlying queue. The
+     * 99th percentiles only cover the tasks that finished since the last
+     * balance.
+     */
+    public PoolSnapshot snapshot() {
+        Tracking average = liveThreads.average();
+        long waitTime = average.avgTotalTime;
+        long cpuTime = average.avgCpuTime;
+        long queueDelay = average.avgQueueDelay;
+
+        if(!taskClassProfiles.isEmpty()) {
+            // weight each class by how many of its tasks ran between the last two balances
+            double classTasks = 0;
+            double classTimeTotal = 0;
+            double classCpuTotal = 0;
+            for (TaskClassProfile profile : taskClassProfiles.values()) {
+                long tasks = profile.recentTasks;
+                classTasks += tasks;
+                classTimeTotal += tasks * (double) profile.avgTotalTime;
+                classCpuTotal += tasks * (double) profile.avgCpuTime;
+            }
+            if(classTasks > 0) {
+                waitTime = (long) (classTimeTotal / classTasks);
+                cpuTime = (long) (classCpuTotal / classTasks);
+            }
+        }
+
+        return new PoolSnapshot(nanoTime(),
+                threadPoolExecutor.getCorePoolSize(),
+                threadPoolExecutor.getPoolSize(),
+                threadPoolExecutor.getMaximumPoolSize(),
+                threadPoolExecutor.getCompletedTaskCount(),
+                waitTime,
+                cpuTime,
+                threadPoolExecutor.getQueue().size(),
+                queueDelay,
+                recentQueueDelays.getPercentile(99.0, TimeUnit.NANOSECONDS),
+                recentRunTimes.getPercentile(99.0, TimeUnit.NANOSECONDS));
+    }
+
     /**
      * Compute and set the optimal number of threads to use in this pool.
      */
     private void balance() {
         // only try to balance when we're not terminating
         if(!isTerminated()) {
-            Set<Map.Entry<Thread, Tracking>> threads = liveThreads.entrySet();
-            long liveAvgTimeTotal = 0;
-            long liveAvgCpuTotal = 0;
-            long liveCount = 0;
-            for (Map.Entry<Thread, Tracking> e : threads) {
-                if (!e.getKey().isAlive()) {
-                    // thread is dead or otherwise hosed
-                    threads.remove(e);
-                } else {
-                    liveAvgTimeTotal += e.getValue().avgTotalTime;
-                    liveAvgCpuTotal += e.getValue().avgCpuTime;
-                    liveCount++;
+            for (TaskClassProfile profile : taskClassProfiles.values()) {
+                synchronized (profile) {
+                    long tasks = profile.tasks.get();
+                    profile.recentTasks = tasks - profile.lastTasks;
+                    profile.lastTasks = tasks;
                 }
             }
-            long waitTime = 1;
-            long cpuTime = 1;
-            if(liveCount > 0) {
-                waitTime = liveAvgTimeTotal / liveCount;
-                cpuTime = liveAvgCpuTotal / liveCount;
-            }
-
-            int size = 1;
-            if(cpuTime > 0) {
-                size = (int) ceil((CPUS * targetUtilization * (1 + (waitTime / cpuTime))));
-            }
-            size = Math.min(size, threadPoolExecutor.getMaximumPoolSize());
 
-            // TODO remove debugging
-            //System.out.println(waitTime / 1000000 + " ms");
-            //System.out.println(cpuTime / 1000000 + " ms");
-            //System.out.println(size);
+            PoolSnapshot snapshot = snapshot();
+            // start the next interval, losing at most the few tasks recorded in between
+            recentQueueDelays.reset();
+            recentRunTimes.reset();
+            int target = poolSizingController.computePoolSize(snapshot);
+            int size = Math.max(1, Math.min(target, snapshot.maximumPoolSize));
 
             threadPoolExecutor.setCorePoolSize(size);
+
+            bookkeeping.recordInterval(snapshot.timestamp);
+            bookkeeping.balanced(snapshot, target, size);
         }
     }
 }
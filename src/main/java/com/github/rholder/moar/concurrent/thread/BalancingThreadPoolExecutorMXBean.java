@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * This is the management interface exposed over JMX by each
+ * {@link BalancingThreadPoolExecutor}. All times are in nanoseconds unless
+ * stated otherwise.
+ */
+public interface BalancingThreadPoolExecutorMXBean {
+
+    /**
+     * Return the current core pool size of the underlying executor.
+     */
+    public int getCorePoolSize();
+
+    /**
+     * Return the core pool size last asked for by the
+     * {@link PoolSizingController}, before being clamped to the bounds of the
+     * pool, or 0 if the pool hasn't balanced yet.
+     */
+    public int getTargetPoolSize();
+
+    /**
+     * Return the current number of threads in the underlying executor.
+     */
+    public int getPoolSize();
+
+    /**
+     * Return the maximum pool size of the underlying executor.
+     */
+    public int getMaximumPoolSize();
+
+    /**
+     * Return the smoothed time each task spends waiting, which is the W used
+     * when sizing the pool. This is measured by the {@link ThreadProfiler},
+     * which by default only counts the time threads spent waiting to be
+     * notified, see {@link java.lang.management.ThreadInfo#getWaitedTime()},
+     * and doesn't include the CPU time.
+     */
+    public long getAverageWaitTime();
+
+    /**
+     * Return the smoothed CPU time each task uses, which is the C used when
+     * sizing the pool.
+     */
+    public long getAverageCpuTime();
+
+    /**
+     * Return the smoothed time sampled tasks waited between being submitted and
+     * starting to run.
+     */
+    public long getAverageQueueDelay();
+
+    /**
+     * Return the 99th percentile of the time sampled tasks waited between being
+     * submitted and starting to run, or the best estimate the executor has
+     * when it can't measure this for each task.
+     */
+    public long getQueueDelay99thPercentile();
+
+    /**
+     * Return the 99th percentile of the wall clock time sampled tasks took to
+     * run.
+     */
+    public long getRunTime99thPercentile();
+
+    /**
+     * Return the number of tasks currently sitting in the underlying queue.
+     */
+    public int getQueueDepth();
+
+    /**
+     * Return the number of tasks the underlying executor has completed.
+     */
+    public long getCompletedTaskCount();
+
+    /**
+     * Return the number of tasks that were profiled.
+     */
+    public long getSampledTaskCount();
+
+    /**
+     * Return the number of tasks the underlying executor has handed to its
+     * {@link java.util.concurrent.RejectedExecutionHandler}.
+     */
+    public long getRejectedTaskCount();
+
+    /**
+     * Return the number of times the pool has been balanced.
+     */
+    public long getBalanceCount();
+
+    /**
+     * Return the smoothed time in milliseconds between balances.
+     */
+    public long getBalanceIntervalMillis();
+}
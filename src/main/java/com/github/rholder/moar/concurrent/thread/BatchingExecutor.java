@@ -0,0 +1,280 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This executor coalesces very small tasks into batches that are handed to the
+ * underlying executor as a single task, so the cost of each handoff, and of
+ * profiling in a {@link BalancingThreadPoolExecutor}, is paid once per batch
+ * instead of once per task. A balancing executor sees each batch as one task
+ * whose wait and CPU time are the sums of its tasks, which leaves the ratio of
+ * the two that it sizes the pool by unchanged.
+ *
+ * Each submitting thread fills its own buffer, so submitters don't contend
+ * with each other. A buffer is handed off as soon as it holds maxBatch tasks,
+ * and every linger period any partially filled buffers are handed off too, so
+ * no task waits much longer than that to be started. Tasks in a batch run one
+ * after another in the order they were submitted. A task throwing an exception
+ * doesn't stop the rest of its batch from running, but the first exception is
+ * rethrown once the batch is done.
+ *
+ * When the underlying executor rejects a full batch, the rejection is thrown
+ * to the thread submitting the task that filled it. A partially filled batch
+ * rejected while flushing is put back at the front of its buffer instead, to
+ * be tried again on the next flush, and is returned by {@link #shutdownNow()}
+ * if it never gets through.
+ */
+public class BatchingExecutor extends AbstractExecutorService {
+
+    private final ExecutorService executor;
+    private final int maxBatch;
+    private final ScheduledExecutorService lingerTimer;
+    private final CopyOnWriteArrayList<Buffer> buffers;
+    private final ThreadLocal<Buffer> localBuffer;
+    private final AtomicLong tasks;
+    private final AtomicLong batches;
+    private volatile boolean shutdown;
+
+    /**
+     * Construct a new {@link BatchingExecutor}.
+     *
+     * @param executor the underlying executor to run the batches on
+     * @param maxBatch hand off a batch as soon as it holds this many tasks
+     * @param linger   hand off partially filled batches this often
+     * @param unit     the unit of the linger period
+     */
+    public BatchingExecutor(ExecutorService executor, int maxBatch, long linger, TimeUnit unit) {
+        if (maxBatch < 1 || linger <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+
+        this.executor = executor;
+        this.maxBatch = maxBatch;
+        this.buffers = new CopyOnWriteArrayList<Buffer>();
+        this.localBuffer = new ThreadLocal<Buffer>();
+        this.tasks = new AtomicLong(0);
+        this.batches = new AtomicLong(0);
+        this.lingerTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BatchingExecutor-linger");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        lingerTimer.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, linger, linger, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+
+        Buffer buffer = localBuffer.get();
+        if (buffer == null) {
+            buffer = new Buffer(Thread.currentThread());
+            buffers.add(buffer);
+            localBuffer.set(buffer);
+        }
+
+        List<Runnable> full = null;
+        synchronized (buffer) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            buffer.tasks.add(command);
+            if (buffer.tasks.size() >= maxBatch) {
+                full = buffer.take();
+            }
+        }
+        if (full != null) {
+            handOff(full);
+        }
+    }
+
+    /**
+     * Hand off every partially filled batch to the underlying executor right
+     * away. This is called every linger period.
+     */
+    public void flush() {
+        // flushing is guarded by buffers so shutting down waits for a flush in progress
+        synchronized (buffers) {
+            for (Buffer buffer : buffers) {
+                List<Runnable> batch;
+                synchronized (buffer) {
+                    batch = buffer.tasks.isEmpty() ? null : buffer.take();
+                }
+                if (batch != null) {
+                    try {
+                        handOff(batch);
+                    } catch (RejectedExecutionException e) {
+                        // keep the tasks and their order for the next flush
+                        synchronized (buffer) {
+                            batch.addAll(buffer.tasks);
+                            buffer.tasks = batch;
+                        }
+                    }
+                } else if (!buffer.owner.isAlive()) {
+                    // nothing left to hand off from a thread that won't submit again
+                    buffers.remove(buffer);
+                }
+            }
+        }
+    }
+
+    private void handOff(List<Runnable> batch) {
+        executor.execute(new Batch(batch));
+        tasks.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    @Override
+    public void shutdown() {
+        lingerTimer.shutdown();
+        synchronized (buffers) {
+            shutdown = true;
+            flush();
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        lingerTimer.shutdownNow();
+
+        List<Runnable> pending = new ArrayList<Runnable>();
+        for (Buffer buffer : buffers) {
+            synchronized (buffer) {
+                pending.addAll(buffer.take());
+            }
+        }
+        for (Runnable r : executor.shutdownNow()) {
+            if (r instanceof Batch) {
+                pending.addAll(((Batch) r).tasks);
+            } else {
+                pending.add(r);
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Return the number of tasks that have been handed off in batches.
+     */
+    public long getTaskCount() {
+        return tasks.get();
+    }
+
+    /**
+     * Return the number of batches that have been handed off.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * This is the buffer of tasks submitted by a single thread.
+     */
+    private class Buffer {
+
+        final Thread owner;
+
+        // guarded by this
+        List<Runnable> tasks;
+
+        Buffer(Thread owner) {
+            this.owner = owner;
+            this.tasks = new ArrayList<Runnable>(maxBatch);
+        }
+
+        /**
+         * Take all of the buffered tasks, leaving the buffer empty. This must
+         * be called while holding this.
+         */
+        List<Runnable> take() {
+            List<Runnable> taken = tasks;
+            tasks = new ArrayList<Runnable>(maxBatch);
+            return taken;
+        }
+    }
+
+    /**
+     * This runs a batch of tasks as a single task.
+     */
+    private static class Batch implements Runnable {
+
+        final List<Runnable> tasks;
+
+        Batch(List<Runnable> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        public void run() {
+            RuntimeException failure = null;
+            for (Runnable task : tasks) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
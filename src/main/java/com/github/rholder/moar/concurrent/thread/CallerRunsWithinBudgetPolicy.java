@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This {@link SheddingPolicy} runs rejected tasks in the submitting thread,
+ * like a {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy}, as
+ * long as the tasks run this way have used less than the given CPU budget in
+ * the current period. Once the budget is used up, rejected tasks are shed
+ * until the next period starts. This keeps the submitting threads, which are
+ * often the ones handling incoming requests, from spending all of their time
+ * doing the pool's work.
+ *
+ * The budget is shared by all of the submitting threads and is checked before
+ * a task starts, so a single long task may overrun it.
+ */
+public class CallerRunsWithinBudgetPolicy extends SheddingPolicy {
+
+    private final ThreadProfiler threadProfiler;
+    private final long budget;
+    private final long period;
+
+    // guarded by this
+    private long periodStart;
+    private long spent;
+
+    /**
+     * Construct a new {@link CallerRunsWithinBudgetPolicy} that lets rejected
+     * tasks use up to the given amount of CPU time in the submitting threads
+     * every period.
+     *
+     * @param threadProfiler measures the CPU time used by each task
+     * @param budget         the CPU time rejected tasks may use every period
+     * @param period         the length of each period
+     * @param unit           the unit of the budget and period
+     */
+    public CallerRunsWithinBudgetPolicy(ThreadProfiler threadProfiler, long budget, long period, TimeUnit unit) {
+        if (budget < 0 || period <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (threadProfiler == null) {
+            throw new NullPointerException();
+        }
+        this.threadProfiler = threadProfiler;
+        this.budget = unit.toNanos(budget);
+        this.period = unit.toNanos(period);
+        this.periodStart = System.nanoTime();
+    }
+
+    @Override
+    protected void handle(Runnable r, ThreadPoolExecutor executor) {
+        if (!withinBudget()) {
+            shed("The CPU budget for running tasks in the caller has been used up");
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long startCpu = threadProfiler.getThreadCpuTime(threadId);
+        try {
+            r.run();
+        } finally {
+            charge(threadProfiler.getThreadCpuTime(threadId) - startCpu);
+        }
+    }
+
+    private synchronized boolean withinBudget() {
+        long now = System.nanoTime();
+        if (now - periodStart >= period) {
+            periodStart = now;
+            spent = 0;
+        }
+        return spent < budget;
+    }
+
+    private synchronized void charge(long cpuTime) {
+        spent += cpuTime;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This {@link CpuBudget} limits the number of available processors reported by
+ * the JVM to the CPU quota of the Linux control group the process runs in,
+ * which is how container runtimes enforce CPU limits. Both the cpu.max file of
+ * cgroup v2 and the cpu.cfs_quota_us and cpu.cfs_period_us files of cgroup v1
+ * are understood. When there is no quota, or no control group at all, this is
+ * just the number of available processors.
+ *
+ * The group of the process is looked up in /proc/self/cgroup and found below
+ * where the hierarchy is mounted, so this works on a host or under systemd
+ * slices as well as in a container with its own cgroup namespace, where the
+ * group is the root of the mount. Since a group can't use more than any of
+ * the groups it's nested in, the smallest quota from the group up to the root
+ * of the mount is used.
+ *
+ * The quota is read again at most once every refresh interval, so a pool picks
+ * up a changed limit the next time it balances after that.
+ */
+public class ContainerCpuBudget implements CpuBudget {
+
+    public static final File DEFAULT_CGROUP_ROOT = new File("/sys/fs/cgroup");
+    public static final File DEFAULT_PROC_CGROUP = new File("/proc/self/cgroup");
+    public static final long DEFAULT_REFRESH_SECONDS = 5;
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private final File cgroupRoot;
+    private final File procCgroup;
+    private final long refreshNanos;
+
+    private volatile double availableCpus;
+    private volatile long nextRefresh;
+
+    /**
+     * Construct a new {@link ContainerCpuBudget} reading the control group of
+     * the process from the hierarchy mounted at /sys/fs/cgroup every 5
+     * seconds.
+     */
+    public ContainerCpuBudget() {
+        this(DEFAULT_CGROUP_ROOT, DEFAULT_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Construct a new {@link ContainerCpuBudget} finding the control group of
+     * the process in /proc/self/cgroup.
+     *
+     * @param cgroupRoot where the control group hierarchy is mounted
+     * @param refresh    read the quota again at most this often
+     * @param unit       the unit of the refresh interval
+     */
+    public ContainerCpuBudget(File cgroupRoot, long refresh, TimeUnit unit) {
+        this(cgroupRoot, DEFAULT_PROC_CGROUP, refresh, unit);
+    }
+
+    /**
+     * Construct a new {@link ContainerCpuBudget}.
+     *
+     * @param cgroupRoot where the control group hierarchy is mounted
+     * @param procCgroup lists the control groups of the process, in the
+     *                   format of /proc/self/cgroup
+     * @param refresh    read the quota again at most this often
+     * @param unit       the unit of the refresh interval
+     */
+    public ContainerCpuBudget(File cgroupRoot, File procCgroup, long refresh, TimeUnit unit) {
+        if (refresh < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (cgroupRoot == null || procCgroup == null) {
+            throw new NullPointerException();
+        }
+        this.cgroupRoot = cgroupRoot;
+        this.procCgroup = procCgroup;
+        this.refreshNanos = unit.toNanos(refresh);
+        refresh(System.nanoTime());
+    }
+
+    @Override
+    public double getAvailableCpus() {
+        long now = System.nanoTime();
+        if (now - nextRefresh >= 0) {
+            // several threads may refresh at once, which is harmless
+            refresh(now);
+        }
+        return availableCpus;
+    }
+
+    private void refresh(long now) {
+        double cpus = getAvailableProcessors();
+        double quota = readQuota();
+        if (quota > 0 && quota < cpus) {
+            cpus = quota;
+        }
+        availableCpus = cpus;
+        nextRefresh = now + refreshNanos;
+    }
+
+    /**
+     * Return the number of processors the JVM reports as available.
+     */
+    protected int getAvailableProcessors() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Return the CPU quota as a number of CPU's, or -1 if there is none.
+     */
+    double readQuota() {
+        Double quota = lowestQuota(cgroupRoot, groupPath(null), true);
+        if (quota != null) {
+            return quota;
+        }
+
+        String[] controllers = {"cpu", "cpu,cpuacct", "cpuacct,cpu"};
+        for (String controller : controllers) {
+            quota = lowestQuota(new File(cgroupRoot, controller), groupPath("cpu"), false);
+            if (quota != null) {
+                return quota;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the path of the group of the process in the hierarchy with the
+     * given controller, or in the cgroup v2 hierarchy when null, or / when it
+     * can't be found.
+     */
+    String groupPath(String controller) {
+        List<String> lines = readLines(procCgroup);
+        if (lines != null) {
+            // each line is hierarchy-ID:controller-list:path, with an empty list for cgroup v2
+            for (String line : lines) {
+                int first = line.indexOf(':');
+                int second = line.indexOf(':', first + 1);
+                if (first < 0 || second < 0) {
+                    continue;
+                }
+                String controllers = line.substring(first + 1, second);
+                boolean matches = controller == null
+                        ? controllers.isEmpty()
+                        : Arrays.asList(controllers.split(",")).contains(controller);
+                if (matches) {
+                    return line.substring(second + 1).trim();
+                }
+            }
+        }
+        return "/";
+    }
+
+    /**
+     * Return the smallest quota from the group at the given path up to the
+     * root of the given hierarchy, -1 if none of them have a quota, or null if
+     * none of them have the files at all. Groups the mount doesn't show, such
+     * as those outside of a cgroup namespace, are skipped.
+     */
+    private static Double lowestQuota(File hierarchy, String path, boolean v2) {
+        Double lowest = null;
+        String p = path;
+        for (;;) {
+            File dir = new File(hierarchy, p);
+            Double quota = v2 ? readCpuMax(dir) : readCfsQuota(dir);
+            if (quota != null) {
+                if (lowest == null || lowest < 0 || (quota > 0 && quota < lowest)) {
+                    lowest = quota;
+                }
+            }
+            if (p.isEmpty() || "/".equals(p)) {
+                return lowest;
+            }
+            p = p.substring(0, p.lastIndexOf('/'));
+        }
+    }
+
+    private static Double readCpuMax(File dir) {
+        // cgroup v2 has both values in a single file, "max 100000" when there's no quota
+        List<String> max = readLines(new File(dir, "cpu.max"));
+        if (max == null || max.isEmpty()) {
+            return null;
+        }
+        String[] fields = max.get(0).trim().split("\\s+");
+        if (fields.length == 2 && !"max".equals(fields[0])) {
+            return quota(fields[0], fields[1]);
+        }
+        return -1.0;
+    }
+
+    private static Double readCfsQuota(File dir) {
+        List<String> quota = readLines(new File(dir, "cpu.cfs_quota_us"));
+        List<String> period = readLines(new File(dir, "cpu.cfs_period_us"));
+        if (quota == null || period == null || quota.isEmpty() || period.isEmpty()) {
+            return null;
+        }
+        return quota(quota.get(0).trim(), period.get(0).trim());
+    }
+
+    private static double quota(String quota, String period) {
+        try {
+            long q = Long.parseLong(quota);
+            long p = Long.parseLong(period);
+            return q > 0 && p > 0 ? q / (double) p : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static List<String> readLines(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return Files.readAllLines(file.toPath(), US_ASCII);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Implementations of this interface decide how many CPU's a pool may keep
+ * busy, which is N in N * U * (1 + (W/C)). This is asked for every time a pool
+ * balances, so implementations should be cheap to call and may change their
+ * answer over time, such as when the CPU quota of a container changes.
+ */
+public interface CpuBudget {
+
+    /**
+     * Return the number of CPU's currently available, which may be fractional
+     * when limited by a quota.
+     */
+    public double getAvailableCpus();
+}
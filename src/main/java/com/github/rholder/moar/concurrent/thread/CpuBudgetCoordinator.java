@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This divides a single {@link CpuBudget} among several pools in the same JVM
+ * so that together they don't size themselves for more CPU's than there are.
+ * Each pool registers with a priority weight and is given a {@link Share}, a
+ * {@link CpuBudget} to size itself with that is also a {@link BalanceListener}
+ * to add to the pool so the coordinator can follow its measurements.
+ *
+ * Every time a pool balances, the number of CPU's its tasks kept busy since it
+ * last balanced is measured from its throughput and CPU time per task, scaled
+ * up when its tasks had to wait to start since a pool can't use more than its
+ * share. The budget is then split in proportion to that demand times the
+ * weight of each pool, so shares follow the pools as their W/C profiles and
+ * load change.
+ * Pools that haven't measured anything yet count as having the average demand
+ * of the others, and pools that haven't balanced in a while don't count at
+ * all.
+ */
+public class CpuBudgetCoordinator {
+
+    private static final CpuBudgetCoordinator JVM_WIDE = new CpuBudgetCoordinator(CpuBudgets.container());
+
+    private final CpuBudget budget;
+
+    // guarded by this
+    private final List<Share> shares;
+
+    /**
+     * Construct a new {@link CpuBudgetCoordinator} dividing the given budget.
+     *
+     * @param budget the CPU budget to divide among the registered pools
+     */
+    public CpuBudgetCoordinator(CpuBudget budget) {
+        if (budget == null) {
+            throw new NullPointerException();
+        }
+        this.budget = budget;
+        this.shares = new ArrayList<Share>();
+    }
+
+    /**
+     * Return the coordinator shared by the whole JVM, which divides the
+     * available processors limited to the CPU quota of the container.
+     */
+    public static CpuBudgetCoordinator jvmWide() {
+        return JVM_WIDE;
+    }
+
+    /**
+     * Register a new pool with the given priority weight, returning the share
+     * of the budget it should size itself with. The share must also be added
+     * to the pool as a {@link BalanceListener}.
+     *
+     * @param weight how much more CPU this pool should get than others with
+     *               the same demand
+     */
+    public synchronized Share register(double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Share share = new Share(weight);
+        shares.add(share);
+        return share;
+    }
+
+    /**
+     * Stop counting the given share when dividing the budget.
+     *
+     * @param share a share returned by {@link #register(double)}
+     */
+    public synchronized void unregister(Share share) {
+        shares.remove(share);
+    }
+
+    /**
+     * Return the number of shares currently registered.
+     */
+    public synchronized int getShareCount() {
+        return shares.size();
+    }
+
+    /**
+     * Return the number of CPU's the given share gets right now.
+     */
+    private synchronized double allot(Share share) {
+        long now = System.nanoTime();
+        double measured = 0;
+        int measuredCount = 0;
+        List<Share> active = new ArrayList<Share>();
+        for (Share s : shares) {
+            if (s == share || !s.demand.hasBalanced() || s.demand.isActive(now)) {
+                active.add(s);
+                if (s.demand.getCpus() > 0) {
+                    measured += s.demand.getCpus();
+                    measuredCount++;
+                }
+            }
+        }
+
+        // pools without a measurement yet get the average demand, or all the same when none have one
+        double assumed = measuredCount == 0 ? 1.0 : measured / measuredCount;
+        double total = 0;
+        for (Share s : active) {
+            total += s.weight * demand(s, assumed);
+        }
+        double cpus = budget.getAvailableCpus();
+        return total > 0 ? cpus * share.weight * demand(share, assumed) / total : cpus;
+    }
+
+    private static double demand(Share share, double assumed) {
+        return share.demand.getCpus() > 0 ? share.demand.getCpus() : assumed;
+    }
+
+    /**
+     * This is the share of the budget given to a single pool.
+     */
+    public class Share implements CpuBudget, BalanceListener {
+
+        final double weight;
+
+        // guarded by the coordinator
+        final CpuDemand demand = new CpuDemand();
+
+        Share(double weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public double getAvailableCpus() {
+            return allot(this);
+        }
+
+        @Override
+        public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+            synchronized (CpuBudgetCoordinator.this) {
+                demand.update(snapshot);
+            }
+        }
+
+        /**
+         * Return the priority weight this share was registered with.
+         */
+        public double getWeight() {
+            return weight;
+        }
+
+        /**
+         * Return the number of CPU's this pool was last measured to need.
+         */
+        public double getCpuDemand() {
+            synchronized (CpuBudgetCoordinator.this) {
+                return demand.getCpus();
+            }
+        }
+
+        /**
+         * Stop counting this share when dividing the budget.
+         */
+        public void unregister() {
+            CpuBudgetCoordinator.this.unregister(this);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * This is a helper class for instantiating available CpuBudget's.
+ */
+public class CpuBudgets {
+
+    private static final CpuBudget AVAILABLE_PROCESSORS = new CpuBudget() {
+        @Override
+        public double getAvailableCpus() {
+            return Runtime.getRuntime().availableProcessors();
+        }
+    };
+
+    private static final CpuBudget CONTAINER = new ContainerCpuBudget();
+
+    /**
+     * Return a {@link CpuBudget} of the number of processors the JVM reports
+     * as available, read again every time.
+     */
+    public static CpuBudget availableProcessors() {
+        return AVAILABLE_PROCESSORS;
+    }
+
+    /**
+     * Return a shared {@link ContainerCpuBudget} that limits the available
+     * processors to the CPU quota of the container the process runs in. This
+     * is the default budget of a {@link UtilizationPoolSizingController}.
+     */
+    public static CpuBudget container() {
+        return CONTAINER;
+    }
+
+    /**
+     * Return a {@link CpuBudget} of a single fixed number of CPU's.
+     *
+     * @param cpus the number of CPU's to always return
+     */
+    public static CpuBudget fixed(final double cpus) {
+        if (cpus <= 0) {
+            throw new IllegalArgumentException();
+        }
+        return new CpuBudget() {
+            @Override
+            public double getAvailableCpus() {
+                return cpus;
+            }
+        };
+    }
+
+    /**
+     * Return a {@link LoadAwareCpuBudget} that takes the CPU's used by other
+     * processes on the machine away from the given budget.
+     *
+     * @param delegate the budget to take the CPU's used by other processes from
+     */
+    public static CpuBudget loadAware(CpuBudget delegate) {
+        return new LoadAwareCpuBudget(delegate);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This measures how many CPU's a pool would keep busy, for dividing CPU's
+ * between pools in proportion to what they need. Each time the pool balances,
+ * the number of CPU's its tasks kept busy since it last balanced is measured
+ * from how many tasks it completed and the CPU time each of them used.
+ *
+ * A pool that was given too few CPU's can only use what it was given, so
+ * measuring only that would keep its share from ever growing. When its tasks
+ * wait to start, the measurement is scaled up by how long they waited
+ * relative to how long they ran, at most doubling it each time, like a
+ * {@link BacklogAwarePoolSizingController} does to the pool size. A pool held
+ * back without its tasks waiting, such as one whose tasks are only submitted
+ * as earlier ones finish, still isn't noticed.
+ *
+ * This isn't thread safe, so its users must guard it themselves.
+ */
+class CpuDemand {
+
+    // pools that haven't balanced in this long no longer count towards the demand
+    static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private double cpus;
+    private long lastTimestamp;
+    private long lastCompleted;
+
+    /**
+     * Measure the demand since the last snapshot of the pool.
+     */
+    void update(PoolSnapshot snapshot) {
+        if (lastTimestamp != 0 && snapshot.timestamp > lastTimestamp) {
+            double tasksPerNano = (snapshot.completedTasks - lastCompleted) / (double) (snapshot.timestamp - lastTimestamp);
+            long serviceTime = Math.max(1, snapshot.waitTime + snapshot.cpuTime);
+            double backlog = Math.min(2.0, 1 + snapshot.queueDelay / (double) serviceTime);
+            cpus = tasksPerNano * snapshot.cpuTime * backlog;
+        }
+        lastTimestamp = snapshot.timestamp;
+        lastCompleted = snapshot.completedTasks;
+    }
+
+    /**
+     * Return the number of CPU's the pool was last measured to need, or 0 if
+     * it hasn't been measured yet.
+     */
+    double getCpus() {
+        return cpus;
+    }
+
+    /**
+     * Return true if the pool has balanced at least once.
+     */
+    boolean hasBalanced() {
+        return lastTimestamp != 0;
+    }
+
+    /**
+     * Return true if the pool has balanced recently enough as of the given
+     * time for its demand to count.
+     */
+    boolean isActive(long now) {
+        return lastTimestamp != 0 && now - lastTimestamp < IDLE_NANOS;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This {@link SheddingPolicy} blocks the current thread until the backing
+ * queue for a {@link ThreadPoolExecutor} can accept another task, just like a
+ * {@link CallerBlocksPolicy}, but only up to the given timeout. When the queue
+ * still can't accept the task by then, it is shed.
+ */
+public class DeadlineBlocksPolicy extends SheddingPolicy {
+
+    private final long timeoutNanos;
+
+    /**
+     * Construct a new {@link DeadlineBlocksPolicy} that blocks for at most the
+     * given timeout.
+     *
+     * @param timeout the longest time to block a submitting thread
+     * @param unit    the unit of the timeout
+     */
+    public DeadlineBlocksPolicy(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    protected void handle(Runnable r, ThreadPoolExecutor executor) {
+        try {
+            if (!executor.getQueue().offer(r, timeoutNanos, TimeUnit.NANOSECONDS)) {
+                shed("Timed out waiting for the executor to accept the task");
+            }
+        } catch (InterruptedException e) {
+            throw new RejectedExecutionException("Unexpected InterruptedException", e);
+        }
+    }
+}
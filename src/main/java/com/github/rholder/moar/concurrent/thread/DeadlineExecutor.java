@@ -0,0 +1,404 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This executor runs tasks earliest deadline first instead of in the order
+ * they were submitted, so that under load urgent tasks don't wait behind tasks
+ * that can afford to. Tasks with the same deadline run in the order they were
+ * submitted, and tasks submitted without a deadline only run when no task with
+ * a deadline is waiting.
+ *
+ * Tasks wait in a {@link PriorityBlockingQueue} ordered by deadline. For every
+ * submitted task a small runnable is handed to the underlying executor, such
+ * as a {@link BalancingThreadPoolExecutor}, that takes whichever task is most
+ * urgent when it gets a thread. The underlying executor therefore sees one
+ * task per submitted task, and its queue shows the backlog to its sizing just
+ * as it would without the deadlines. A task whose deadline has already passed
+ * by the time it is taken is not run but handed to an
+ * {@link ExpiredTaskHandler} instead, which can discard it or reroute it to
+ * another executor.
+ *
+ * Since a runnable takes the most urgent task rather than the one it was
+ * submitted for, another one may already have run a task by the time the
+ * underlying executor rejects the runnable submitted for it. The task isn't
+ * rejected then, and the runnable is owed instead for whichever task is left
+ * without one. Owed runnables are handed to the underlying executor as soon as
+ * it accepts another one, or the task left without one is abandoned like an
+ * expired task that's discarded if it has already been shut down.
+ */
+public class DeadlineExecutor extends AbstractExecutorService {
+
+    // far enough out to never pass, near enough that comparing deadlines can't overflow
+    private static final long NO_DEADLINE = Long.MAX_VALUE >> 1;
+
+    private static final ExpiredTaskHandler DISCARD = new ExpiredTaskHandler() {
+        @Override
+        public void expired(Runnable task, long lateness) {
+            if (task instanceof Future) {
+                // don't leave anyone waiting on the result forever
+                ((Future<?>) task).cancel(false);
+            }
+        }
+    };
+
+    private final ExecutorService executor;
+    private final ExpiredTaskHandler expiredTaskHandler;
+    private final PriorityBlockingQueue<DeadlineTask> queue;
+    private final AtomicLong sequence;
+
+    // the number of queued tasks without a Pull to run them, because one was rejected
+    private final AtomicInteger owedPulls;
+
+    private final AtomicLong completedTasks;
+    private final AtomicLong lateTasks;
+    private final AtomicLong expiredTasks;
+
+    /**
+     * Construct a new {@link DeadlineExecutor} that discards expired tasks.
+     *
+     * @param executor the underlying executor to run the tasks on
+     */
+    public DeadlineExecutor(ExecutorService executor) {
+        this(executor, DISCARD);
+    }
+
+    /**
+     * Construct a new {@link DeadlineExecutor}.
+     *
+     * @param executor           the underlying executor to run the tasks on
+     * @param expiredTaskHandler decides what to do with tasks whose deadline
+     *                           passed before they could start
+     */
+    public DeadlineExecutor(ExecutorService executor, ExpiredTaskHandler expiredTaskHandler) {
+        if (executor == null || expiredTaskHandler == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.expiredTaskHandler = expiredTaskHandler;
+        this.queue = new PriorityBlockingQueue<DeadlineTask>();
+        this.sequence = new AtomicLong(0);
+        this.owedPulls = new AtomicInteger(0);
+        this.completedTasks = new AtomicLong(0);
+        this.lateTasks = new AtomicLong(0);
+        this.expiredTasks = new AtomicLong(0);
+    }
+
+    /**
+     * Return an {@link ExpiredTaskHandler} that drops expired tasks, cancelling
+     * the ones that were submitted for a {@link Future}.
+     */
+    public static ExpiredTaskHandler discard() {
+        return DISCARD;
+    }
+
+    /**
+     * Return an {@link ExpiredTaskHandler} that runs expired tasks on the given
+     * executor instead, such as one that fails them quickly or runs them at a
+     * lower priority.
+     *
+     * @param executor the executor to hand expired tasks to
+     */
+    public static ExpiredTaskHandler rerouteTo(final Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        return new ExpiredTaskHandler() {
+            @Override
+            public void expired(Runnable task, long lateness) {
+                executor.execute(task);
+            }
+        };
+    }
+
+    /**
+     * Run the given task without a deadline, after all of the waiting tasks
+     * that have one.
+     *
+     * @param command the task to run
+     */
+    @Override
+    public void execute(Runnable command) {
+        enqueue(command, System.nanoTime() + NO_DEADLINE);
+    }
+
+    /**
+     * Run the given task, earliest deadline first, as long as it can start
+     * within the given timeout.
+     *
+     * @param command the task to run
+     * @param timeout the time from now by which the task must have started
+     * @param unit    the unit of the timeout
+     */
+    public void execute(Runnable command, long timeout, TimeUnit unit) {
+        enqueue(command, System.nanoTime() + Math.min(unit.toNanos(timeout), NO_DEADLINE));
+    }
+
+    /**
+     * Submit the given task to run, earliest deadline first, as long as it can
+     * start within the given timeout. The returned {@link Future} is cancelled
+     * if it doesn't and expired tasks are discarded.
+     *
+     * @param task    the task to run
+     * @param timeout the time from now by which the task must have started
+     * @param unit    the unit of the timeout
+     * @param <T>     the result type of the task
+     */
+    public <T> Future<T> submit(Callable<T> task, long timeout, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        RunnableFuture<T> future = newTaskFor(task);
+        execute(future, timeout, unit);
+        return future;
+    }
+
+    /**
+     * Submit the given task to run, earliest deadline first, as long as it can
+     * start within the given timeout. The returned {@link Future} is cancelled
+     * if it doesn't and expired tasks are discarded.
+     *
+     * @param task    the task to run
+     * @param timeout the time from now by which the task must have started
+     * @param unit    the unit of the timeout
+     */
+    public Future<?> submit(Runnable task, long timeout, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        RunnableFuture<Void> future = newTaskFor(task, null);
+        execute(future, timeout, unit);
+        return future;
+    }
+
+    private void enqueue(Runnable command, long deadline) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        DeadlineTask task = new DeadlineTask(command, deadline, sequence.getAndIncrement());
+        queue.add(task);
+        try {
+            executor.execute(new Pull());
+        } catch (RejectedExecutionException e) {
+            if (queue.remove(task)) {
+                throw e;
+            }
+
+            // another Pull already ran this task, leaving a different one without a Pull
+            owePull();
+        }
+        repayPulls();
+    }
+
+    /**
+     * Remember that a queued task has no {@link Pull} to run it, or abandon the
+     * most urgent task if the underlying executor won't ever accept one.
+     */
+    private void owePull() {
+        if (executor.isShutdown()) {
+            DeadlineTask orphan = queue.poll();
+            if (orphan != null) {
+                DISCARD.expired(orphan.command, 0);
+            }
+            return;
+        }
+        owedPulls.incrementAndGet();
+    }
+
+    /**
+     * Hand any owed {@link Pull}'s to the underlying executor, stopping at the
+     * first one it rejects.
+     */
+    private void repayPulls() {
+        int owed;
+        while ((owed = owedPulls.get()) > 0) {
+            if (!owedPulls.compareAndSet(owed, owed - 1)) {
+                continue;
+            }
+            try {
+                executor.execute(new Pull());
+            } catch (RejectedExecutionException e) {
+                owePull();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+
+        // owed Pulls can't be handed over anymore
+        int owed;
+        while ((owed = owedPulls.get()) > 0) {
+            if (owedPulls.compareAndSet(owed, owed - 1)) {
+                owePull();
+            }
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        executor.shutdownNow();
+        List<Runnable> pending = new ArrayList<Runnable>();
+        DeadlineTask task;
+        while ((task = queue.poll()) != null) {
+            pending.add(task.command);
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Return the number of tasks waiting to start.
+     */
+    public int getQueuedTaskCount() {
+        return queue.size();
+    }
+
+    /**
+     * Return the number of tasks that started before their deadline and have
+     * finished running, including the late ones.
+     */
+    public long getCompletedTaskCount() {
+        return completedTasks.get();
+    }
+
+    /**
+     * Return the number of tasks that started before their deadline but
+     * finished after it.
+     */
+    public long getLateTaskCount() {
+        return lateTasks.get();
+    }
+
+    /**
+     * Return the number of tasks whose deadline passed before they could
+     * start and were handed to the {@link ExpiredTaskHandler}.
+     */
+    public long getExpiredTaskCount() {
+        return expiredTasks.get();
+    }
+
+    /**
+     * Return the fraction of tasks between 0.0 and 1.0 that either expired or
+     * finished late, out of all the tasks that have been taken off the queue.
+     */
+    public double getDeadlineMissRate() {
+        long expired = expiredTasks.get();
+        long total = completedTasks.get() + expired;
+        return total == 0 ? 0.0 : (lateTasks.get() + expired) / (double) total;
+    }
+
+    /**
+     * This is a task waiting in the queue, ordered by its deadline and then by
+     * the order it was submitted in.
+     */
+    private static class DeadlineTask implements Comparable<DeadlineTask> {
+
+        final Runnable command;
+        final long deadline;
+        final long sequence;
+
+        DeadlineTask(Runnable command, long deadline, long sequence) {
+            this.command = command;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(DeadlineTask other) {
+            long diff = deadline - other.deadline;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * This runs whichever waiting task is most urgent once the underlying
+     * executor gives it a thread.
+     */
+    private class Pull implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                runNext();
+            } finally {
+                repayPulls();
+            }
+        }
+
+        private void runNext() {
+            DeadlineTask task = queue.poll();
+            if (task == null) {
+                // taken by shutdownNow()
+                return;
+            }
+
+            long lateness = System.nanoTime() - task.deadline;
+            if (lateness > 0) {
+                expiredTasks.incrementAndGet();
+                expiredTaskHandler.expired(task.command, lateness);
+                return;
+            }
+
+            try {
+                task.command.run();
+            } finally {
+                completedTasks.incrementAndGet();
+                if (System.nanoTime() - task.deadline > 0) {
+                    lateTasks.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Implementations of this interface decide what happens to a task taken off
+ * the queue of a {@link DeadlineExecutor} after its deadline has already
+ * passed, instead of running it. See {@link DeadlineExecutor#discard()} and
+ * {@link DeadlineExecutor#rerouteTo(java.util.concurrent.Executor)}.
+ */
+public interface ExpiredTaskHandler {
+
+    /**
+     * Handle the given task, which was not run because its deadline passed.
+     * This is called from a thread of the underlying executor.
+     *
+     * @param task     the task that missed its deadline
+     * @param lateness how many nanoseconds past its deadline the task is
+     */
+    public void expired(Runnable task, long lateness);
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.Random;
+
+/**
+ * This SamplingStrategy selects, on average, 1 out of every N submitted tasks.
+ * Rather than picking exactly every Nth task, the distance to the next sample
+ * is drawn uniformly from [1, 2N - 1] so that tasks submitted in a repeating
+ * pattern can't line up with the sampling interval and skew the averages.
+ */
+public class FixedRateSamplingStrategy implements SamplingStrategy {
+
+    static final int MAX_RATE = 1 << 30;
+
+    private final int rate;
+    private final ThreadLocal<SamplerState> state;
+
+    /**
+     * Construct a new {@link FixedRateSamplingStrategy} with the given rate.
+     *
+     * @param rate sample 1 out of every this many tasks on average, where 1
+     *             samples every task
+     */
+    public FixedRateSamplingStrategy(int rate) {
+        if (rate < 1 || rate > MAX_RATE) {
+            throw new IllegalArgumentException("Sampling rate must be between 1 and " + MAX_RATE);
+        }
+        this.rate = rate;
+        this.state = new ThreadLocal<SamplerState>() {
+            @Override
+            protected SamplerState initialValue() {
+                SamplerState s = new SamplerState();
+                s.countdown = nextCountdown(s.random);
+                return s;
+            }
+        };
+    }
+
+    @Override
+    public int sample() {
+        if (rate == 1) {
+            return 1;
+        }
+
+        SamplerState s = state.get();
+        if (--s.countdown > 0) {
+            return 0;
+        }
+        s.countdown = nextCountdown(s.random);
+        return rate;
+    }
+
+    private int nextCountdown(Random random) {
+        return 1 + random.nextInt(2 * rate - 1);
+    }
+
+    /**
+     * Per submitting thread sampling state, this is never shared.
+     */
+    static class SamplerState {
+        final Random random = new Random();
+        int countdown;
+    }
+}
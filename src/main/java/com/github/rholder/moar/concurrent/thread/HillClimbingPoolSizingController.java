@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This PoolSizingController searches for the pool size that maximizes the
+ * number of completed tasks per second, similar to the hill climbing used by
+ * the .NET thread pool. Rather than trusting a model of how wait time relates
+ * to the number of threads, it probes a change in the pool size, measures the
+ * throughput over the next interval, and keeps moving in the same direction as
+ * long as throughput improves, doubling the step each time. When a move makes
+ * things worse the direction is reversed and the step is halved, and when the
+ * difference is lost in the noise it drifts towards fewer threads, so the size
+ * settles around the smallest pool that achieves the best throughput.
+ *
+ * To damp oscillation, each reversal also halves the largest step that may be
+ * taken, which only grows back by one thread for every improving move. The
+ * throughput is smoothed over successive intervals and the interval
+ * immediately following a change is discarded, since it contains the
+ * transition between the two sizes.
+ */
+public class HillClimbingPoolSizingController implements PoolSizingController {
+
+    public static final long DEFAULT_SAMPLE_INTERVAL_MILLIS = 500;
+    public static final double DEFAULT_THRESHOLD = 0.05;
+    public static final int DEFAULT_MAX_STEP = 8;
+
+    private final int minThreads;
+    private final long sampleInterval;
+    private final double threshold;
+    private final int maxStep;
+
+    // all of the following are guarded by this
+    private int size;
+    private int direction;
+    private int step;
+    private int stepLimit;
+    private boolean settling;
+    private long lastTimestamp;
+    private long lastCompleted;
+    private double smoothedThroughput;
+    private double previousThroughput;
+
+    /**
+     * Construct a new {@link HillClimbingPoolSizingController} with the
+     * default sample interval, threshold, and maximum step.
+     *
+     * @param minThreads never shrink the pool below this many threads
+     */
+    public HillClimbingPoolSizingController(int minThreads) {
+        this(minThreads, DEFAULT_SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_THRESHOLD, DEFAULT_MAX_STEP);
+    }
+
+    /**
+     * Construct a new {@link HillClimbingPoolSizingController} with the given
+     * parameters.
+     *
+     * @param minThreads     never shrink the pool below this many threads
+     * @param sampleInterval measure throughput over at least this long before
+     *                       deciding on a move
+     * @param unit           the time unit of the sample interval
+     * @param threshold      the relative change in throughput, such as 0.05
+     *                       for 5%, below which two measurements are
+     *                       considered the same
+     * @param maxStep        the most threads to add or remove in a single move
+     */
+    public HillClimbingPoolSizingController(int minThreads,
+                                            long sampleInterval,
+                                            TimeUnit unit,
+                                            double threshold,
+                                            int maxStep) {
+        if (minThreads < 1 || maxStep < 1 || sampleInterval <= 0 || threshold < 0.0) {
+            throw new IllegalArgumentException();
+        }
+        this.minThreads = minThreads;
+        this.sampleInterval = unit.toNanos(sampleInterval);
+        this.threshold = threshold;
+        this.maxStep = maxStep;
+        this.direction = 1;
+        this.step = 1;
+        this.stepLimit = maxStep;
+        this.previousThroughput = -1;
+    }
+
+    @Override
+    public synchronized int computePoolSize(PoolSnapshot snapshot) {
+        if (size == 0) {
+            // first call, start climbing from wherever the pool is now
+            size = clamp(snapshot.corePoolSize, snapshot.maximumPoolSize);
+            lastTimestamp = snapshot.timestamp;
+            lastCompleted = snapshot.completedTasks;
+            return size;
+        }
+
+        long elapsed = snapshot.timestamp - lastTimestamp;
+        if (elapsed < sampleInterval) {
+            return size;
+        }
+
+        double throughput = (snapshot.completedTasks - lastCompleted) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        lastTimestamp = snapshot.timestamp;
+        lastCompleted = snapshot.completedTasks;
+
+        if (settling) {
+            // this interval straddled the last move, start measuring the new size from scratch
+            settling = false;
+            smoothedThroughput = throughput;
+            return size;
+        }
+        smoothedThroughput += 0.5 * (throughput - smoothedThroughput);
+
+        if (previousThroughput >= 0) {
+            double change = (smoothedThroughput - previousThroughput) / Math.max(previousThroughput, 1.0);
+            if (change > threshold) {
+                // the last move helped, keep going and pick up the pace
+                stepLimit = Math.min(stepLimit + 1, maxStep);
+                step = Math.min(step * 2, stepLimit);
+            } else if (change < -threshold) {
+                // the last move hurt, turn around and slow down
+                direction = -direction;
+                stepLimit = Math.max(step / 2, 1);
+                step = stepLimit;
+            } else {
+                // no measurable difference, prefer the smaller pool
+                direction = -1;
+                step = 1;
+            }
+        }
+
+        int next = clamp(size + direction * step, snapshot.maximumPoolSize);
+        if (next == size) {
+            // pinned against a bound, probe the other way next time
+            direction = -direction;
+            step = 1;
+            previousThroughput = -1;
+            return size;
+        }
+
+        previousThroughput = smoothedThroughput;
+        size = next;
+        settling = true;
+        return size;
+    }
+
+    private int clamp(int value, int maximumPoolSize) {
+        return Math.max(minThreads, Math.min(value, maximumPoolSize));
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This {@link Executor} runs the tasks for each key one at a time in the order
+ * they were submitted, while tasks for different keys run in parallel on the
+ * underlying executor, such as a {@link BalancingThreadPoolExecutor}.
+ *
+ * Each key with pending tasks has a small queue, and at most one drain of that
+ * queue is submitted to the underlying executor at a time. No thread is held
+ * by a key while it has nothing to run and the queue of a key is dropped as
+ * soon as it drains, so memory only grows with the number of keys that have
+ * pending tasks. A drain runs at most maxBatch tasks before resubmitting
+ * itself so that a busy key can't keep a thread to itself. Since drains are
+ * resubmitted from the threads of the underlying executor, it should queue
+ * tasks rather than block the submitter when all of its threads are busy, as
+ * it would with a {@link CallerBlocksPolicy} and no queue. If the underlying
+ * executor rejects a drain anyway, such as once it's shut down, the key's
+ * remaining tasks are abandoned, cancelling the ones submitted for a
+ * {@link Future}, and the key starts over with the next task submitted for it.
+ * This includes tasks other threads added while the first drain of a key was
+ * being submitted, while the task that submitted it is rejected outright.
+ *
+ * Tasks passed to {@link #execute(Runnable)} that the {@link TaskClassifier}
+ * gives no key, which by default are those that don't implement
+ * {@link TaggedTask}, aren't ordered at all and go straight to the underlying
+ * executor without being counted.
+ *
+ * The underlying executor sees each drain as a single task. When it is a
+ * {@link BalancingThreadPoolExecutor} the ratio of wait to CPU time it measures
+ * is unaffected, but its completed task count is the number of batches, see
+ * {@link #getAverageBatchSize()}.
+ */
+public class KeyedSerialExecutor implements Executor {
+
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    private final Executor executor;
+    private final TaskClassifier taskClassifier;
+    private final int maxBatch;
+    private final ConcurrentHashMap<Object, SerialQueue> queues;
+
+    private final AtomicLong submittedTasks;
+    private final AtomicLong completedTasks;
+    private final AtomicLong batches;
+    private final AtomicLong abandonedTasks;
+
+    /**
+     * Construct a new {@link KeyedSerialExecutor} that keys tasks by their
+     * {@link TaggedTask} tag and runs them on the given executor. Tasks
+     * without a tag aren't ordered, see {@link TaskClassifiers#byTagOnly()}.
+     *
+     * @param executor the underlying executor to run the tasks on
+     */
+    public KeyedSerialExecutor(Executor executor) {
+        this(executor, TaskClassifiers.byTagOnly(), DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Construct a new {@link KeyedSerialExecutor}.
+     *
+     * @param executor       the underlying executor to run the tasks on
+     * @param taskClassifier decides the key of tasks passed to
+     *                       {@link #execute(Runnable)}, where null runs a
+     *                       task without ordering it
+     * @param maxBatch       run at most this many tasks of a key before giving
+     *                       the thread back to the underlying executor
+     */
+    public KeyedSerialExecutor(Executor executor, TaskClassifier taskClassifier, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException();
+        }
+        if (executor == null || taskClassifier == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.taskClassifier = taskClassifier;
+        this.maxBatch = maxBatch;
+        this.queues = new ConcurrentHashMap<Object, SerialQueue>();
+        this.submittedTasks = new AtomicLong(0);
+        this.completedTasks = new AtomicLong(0);
+        this.batches = new AtomicLong(0);
+        this.abandonedTasks = new AtomicLong(0);
+    }
+
+    /**
+     * Run the given task after all of the previously submitted tasks with the
+     * same key, as decided by the {@link TaskClassifier}, or right away on the
+     * underlying executor if it has no key.
+     *
+     * @param command the task to run
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        Object key = taskClassifier.classify(TaskFuture.unwrap(command));
+        if (key == null) {
+            executor.execute(command);
+            return;
+        }
+        execute(key, command);
+    }
+
+    /**
+     * Run the given task after all of the previously submitted tasks with the
+     * given key.
+     *
+     * @param key     the key to serialize the task on
+     * @param command the task to run
+     */
+    public void execute(Object key, Runnable command) {
+        if (key == null || command == null) {
+            throw new NullPointerException();
+        }
+
+        for (;;) {
+            SerialQueue queue = queues.get(key);
+            if (queue == null) {
+                SerialQueue newQueue = new SerialQueue(key);
+                queue = queues.putIfAbsent(key, newQueue);
+                if (queue == null) {
+                    queue = newQueue;
+                }
+            }
+
+            synchronized (queue) {
+                if (queue.retired) {
+                    // drained and removed since we looked it up, try again with a new one
+                    continue;
+                }
+                queue.tasks.add(command);
+                submittedTasks.incrementAndGet();
+                if (queue.scheduled) {
+                    return;
+                }
+                queue.scheduled = true;
+            }
+
+            try {
+                executor.execute(queue);
+            } catch (RejectedExecutionException e) {
+                synchronized (queue) {
+                    queue.tasks.removeLastOccurrence(command);
+                    submittedTasks.decrementAndGet();
+                    // tasks added for the key since then were accepted but have no drain to run them
+                    queue.abandon();
+                }
+                throw e;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Return the underlying executor the tasks run on, which is also what
+     * should be shut down once no more tasks will be submitted.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Return the number of tasks that have been submitted.
+     */
+    public long getSubmittedTaskCount() {
+        return submittedTasks.get();
+    }
+
+    /**
+     * Return the number of tasks that have finished running.
+     */
+    public long getCompletedTaskCount() {
+        return completedTasks.get();
+    }
+
+    /**
+     * Return the number of tasks that were abandoned because the underlying
+     * executor rejected the drain that would have run them.
+     */
+    public long getAbandonedTaskCount() {
+        return abandonedTasks.get();
+    }
+
+    /**
+     * Return the number of tasks submitted but not yet finished or abandoned.
+     */
+    public long getPendingTaskCount() {
+        return submittedTasks.get() - completedTasks.get() - abandonedTasks.get();
+    }
+
+    /**
+     * Return the number of batches handed to the underlying executor.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Return the average number of tasks run by each batch, which is how many
+     * of this executor's tasks each task of the underlying executor stands
+     * for.
+     */
+    public double getAverageBatchSize() {
+        long b = batches.get();
+        return b == 0 ? 0 : completedTasks.get() / (double) b;
+    }
+
+    /**
+     * Return the number of keys that currently have tasks pending.
+     */
+    public int getActiveKeyCount() {
+        return queues.size();
+    }
+
+    /**
+     * This is the queue of pending tasks for a single key, which drains itself
+     * when run on the underlying executor.
+     */
+    private class SerialQueue implements Runnable {
+
+        final Object key;
+
+        // the following are guarded by this
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+        boolean scheduled;
+        boolean retired;
+
+        SerialQueue(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            batches.incrementAndGet();
+            for (int i = 0; i < maxBatch; i++) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        scheduled = false;
+                        retireIfEmpty();
+                        return;
+                    }
+                }
+
+                boolean finished = false;
+                try {
+                    task.run();
+                    finished = true;
+                } finally {
+                    completedTasks.incrementAndGet();
+                    if (!finished) {
+                        // keep going with the rest of the key's tasks after the failure propagates
+                        resubmit();
+                    }
+                }
+            }
+            resubmit();
+        }
+
+        private void resubmit() {
+            synchronized (this) {
+                if (tasks.isEmpty()) {
+                    scheduled = false;
+                    retireIfEmpty();
+                    return;
+                }
+            }
+
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // nothing is left to run the rest, and the task's own exception may be propagating
+                abandon();
+            }
+        }
+
+        /**
+         * Drop the pending tasks after a drain was rejected, cancelling the
+         * ones submitted for a {@link Future}, so the key isn't left waiting
+         * on a drain that will never run.
+         */
+        void abandon() {
+            List<Runnable> abandoned;
+            synchronized (this) {
+                abandoned = new ArrayList<Runnable>(tasks);
+                tasks.clear();
+                scheduled = false;
+                retireIfEmpty();
+            }
+            abandonedTasks.addAndGet(abandoned.size());
+            for (Runnable task : abandoned) {
+                if (task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+        }
+
+        /**
+         * Drop this queue once it has no pending tasks and no drain scheduled.
+         * This must be called while holding this.
+         */
+        void retireIfEmpty() {
+            if (!scheduled && tasks.isEmpty()) {
+                retired = true;
+                queues.remove(key, this);
+            }
+        }
+    }
+}
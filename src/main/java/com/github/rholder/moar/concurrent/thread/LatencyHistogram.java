@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This is a fixed size histogram of latencies in nanoseconds that may be
+ * recorded into from many threads at once without locking.
+ *
+ * Values are counted in buckets that double in width every 8 buckets, so each
+ * recorded value is known to within 12.5% no matter how large it is. Values up
+ * to 2^41 nanoseconds, about 36 minutes, fit in the buckets and anything longer
+ * is counted in the last one as if it took exactly that long. Reading a
+ * percentile while values are still being recorded returns a result somewhere
+ * between the histogram before and after those values.
+ */
+public class LatencyHistogram {
+
+    // buckets per power of 2, as a power of 2 itself
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    static final int MAX_EXPONENT = 41;
+
+    private final AtomicLongArray counts;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+    }
+
+    /**
+     * Record a single latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /**
+     * Record the same latency the given number of times, such as when a
+     * sampled task stands in for several others.
+     *
+     * @param nanos the latency in nanoseconds, negative values count as 0
+     * @param count the number of times to count it
+     */
+    public void record(long nanos, long count) {
+        counts.addAndGet(bucket(Math.max(0, nanos)), count);
+    }
+
+    /**
+     * Return the number of latencies recorded so far.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Return the latency at or below which the given percentage of the
+     * recorded latencies fall, rounded up to the top of its bucket, or 0 when
+     * nothing has been recorded.
+     *
+     * @param percentile a number between 0.0 and 100.0
+     * @param unit       the unit to return the latency in
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException();
+        }
+
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return unit.convert(highestValue(i), TimeUnit.NANOSECONDS);
+            }
+        }
+        return unit.convert(highestValue(snapshot.length - 1), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return the average of the recorded latencies, each taken as the middle
+     * of its bucket, or 0 when nothing has been recorded.
+     *
+     * @param unit the unit to return the latency in
+     */
+    public long getMean(TimeUnit unit) {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.get(i);
+            total += count;
+            sum += count * (lowestValue(i) / 2.0 + highestValue(i) / 2.0);
+        }
+        return total == 0 ? 0 : unit.convert((long) (sum / total), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Return the bucket for the given non-negative value. The first
+     * SUB_BUCKETS values each get their own bucket, after which every power of
+     * 2 is split into SUB_BUCKETS buckets of equal width.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT) {
+            // everything this large or larger shares the last bucket
+            return (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Return the smallest value counted in the given bucket.
+     */
+    static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (1L << exponent) + ((long) sub << (exponent - SUB_BITS));
+    }
+
+    /**
+     * Return the largest value counted in the given bucket.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS) {
+            return lowestValue(bucket);
+        }
+        return lowestValue(bucket + 1) - 1;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keep the {@link Tracking} of each live worker thread in a pool, folding the
+ * measurements of sampled tasks into exponential moving averages.
+ */
+class LiveThreads {
+
+    private final ConcurrentHashMap<Thread, Tracking> liveThreads;
+    private final float smoothingWeight;
+
+    LiveThreads(float smoothingWeight) {
+        this.liveThreads = new ConcurrentHashMap<Thread, Tracking>();
+        this.smoothingWeight = smoothingWeight;
+    }
+
+    /**
+     * Fold the measurements of a single sampled task into the tracking for the
+     * given thread, which must be the thread the task ran on.
+     */
+    void track(Thread thread, int weight, long totalTime, long totalCpuTime, long queueDelay) {
+        track(tracking(thread), weight, totalTime, totalCpuTime, queueDelay);
+    }
+
+    /**
+     * Return the tracking for the given thread, adding it if the thread isn't
+     * tracked yet. Only the given thread may update the returned tracking.
+     */
+    Tracking tracking(Thread thread) {
+        Tracking tracking = liveThreads.get(thread);
+        if(tracking == null) {
+            // this is an untracked thread, add tracking
+            tracking = new Tracking();
+            liveThreads.put(thread, tracking);
+        }
+        return tracking;
+    }
+
+    /**
+     * Fold the measurements of a single sampled task into the given tracking.
+     */
+    void track(Tracking tracking, int weight, long totalTime, long totalCpuTime, long queueDelay) {
+        if(tracking.avgWeight == 0) {
+            tracking.avgTotalTime = totalTime;
+            tracking.avgCpuTime = totalCpuTime;
+            tracking.avgQueueDelay = queueDelay;
+            tracking.avgWeight = weight;
+        } else {
+            // TODO determine exponential smoothing coefficient to specify weight of each task over time
+            // compute exponential moving averages, see http://en.wikipedia.org/wiki/Exponential_smoothing
+            // each sample counts in proportion to the number of tasks it stands for, which reduces to
+            // the plain smoothing weight whenever the sampling rate holds steady
+            tracking.avgWeight += smoothingWeight * (weight - tracking.avgWeight);
+            float k = smoothingWeight * weight / tracking.avgWeight;
+            tracking.avgTotalTime += k * (totalTime - tracking.avgTotalTime);
+            tracking.avgCpuTime += k * (totalCpuTime - tracking.avgCpuTime);
+            tracking.avgQueueDelay += k * (queueDelay - tracking.avgQueueDelay);
+        }
+    }
+
+    /**
+     * Return the average of the tracking across all of the live threads,
+     * dropping any threads that have died along the way. When nothing has been
+     * tracked yet, the wait and CPU times are both 1.
+     */
+    Tracking average() {
+        Set<Map.Entry<Thread, Tracking>> threads = liveThreads.entrySet();
+        long liveAvgTimeTotal = 0;
+        long liveAvgCpuTotal = 0;
+        long liveAvgQueueDelayTotal = 0;
+        long liveCount = 0;
+        for (Map.Entry<Thread, Tracking> e : threads) {
+            if (!e.getKey().isAlive()) {
+                // thread is dead or otherwise hosed
+                threads.remove(e);
+            } else {
+                liveAvgTimeTotal += e.getValue().avgTotalTime;
+                liveAvgCpuTotal += e.getValue().avgCpuTime;
+                liveAvgQueueDelayTotal += e.getValue().avgQueueDelay;
+                liveCount++;
+            }
+        }
+
+        Tracking average = new Tracking();
+        average.avgTotalTime = 1;
+        average.avgCpuTime = 1;
+        if(liveCount > 0) {
+            average.avgTotalTime = liveAvgTimeTotal / liveCount;
+            average.avgCpuTime = liveAvgCpuTotal / liveCount;
+            average.avgQueueDelay = liveAvgQueueDelayTotal / liveCount;
+        }
+        return average;
+    }
+}
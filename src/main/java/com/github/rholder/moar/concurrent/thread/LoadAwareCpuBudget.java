@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This {@link CpuBudget} takes the CPU's that other processes on the same
+ * machine are observed to be using away from the budget of a delegate, so that
+ * a pool backs off instead of competing with noisy neighbours for processors
+ * it won't get. The CPU load of the whole system and of this process are read
+ * from the {@link OperatingSystemMXBean} at most once every refresh interval
+ * and the difference between them is what the other processes are using. The
+ * budget never drops below a single CPU, or the delegate's budget if that is
+ * smaller.
+ *
+ * The CPU loads are only available from the com.sun.management extension of
+ * the {@link OperatingSystemMXBean}, which is looked up reflectively once so
+ * that this class still works on JVM's without it. On those, or before the
+ * first load has been measured, the delegate's budget is used unchanged.
+ */
+public class LoadAwareCpuBudget implements CpuBudget {
+
+    public static final long DEFAULT_REFRESH_SECONDS = 1;
+
+    // null when the com.sun.management extension isn't available
+    private static final Method SYSTEM_CPU_LOAD;
+    private static final Method PROCESS_CPU_LOAD;
+
+    static {
+        Method systemCpuLoad = null;
+        Method processCpuLoad = null;
+        try {
+            Class<?> extension = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (extension.isInstance(ManagementFactory.getOperatingSystemMXBean())) {
+                systemCpuLoad = extension.getMethod("getSystemCpuLoad");
+                processCpuLoad = extension.getMethod("getProcessCpuLoad");
+            }
+        } catch (Throwable t) {
+            // not available on this JVM, fall back to the delegate's budget
+            systemCpuLoad = null;
+            processCpuLoad = null;
+        }
+        SYSTEM_CPU_LOAD = systemCpuLoad;
+        PROCESS_CPU_LOAD = processCpuLoad;
+    }
+
+    private final CpuBudget delegate;
+    private final long refreshNanos;
+    private final OperatingSystemMXBean operatingSystem;
+
+    private volatile double otherCpus;
+    private volatile long nextRefresh;
+
+    /**
+     * Construct a new {@link LoadAwareCpuBudget} on top of the given delegate,
+     * reading the CPU load every second.
+     *
+     * @param delegate the budget to take the CPU's used by other processes from
+     */
+    public LoadAwareCpuBudget(CpuBudget delegate) {
+        this(delegate, DEFAULT_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Construct a new {@link LoadAwareCpuBudget}.
+     *
+     * @param delegate the budget to take the CPU's used by other processes from
+     * @param refresh  read the CPU load again at most this often
+     * @param unit     the unit of the refresh interval
+     */
+    public LoadAwareCpuBudget(CpuBudget delegate, long refresh, TimeUnit unit) {
+        if (refresh < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (delegate == null) {
+            throw new NullPointerException();
+        }
+        this.delegate = delegate;
+        this.refreshNanos = unit.toNanos(refresh);
+        this.operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        this.nextRefresh = System.nanoTime();
+    }
+
+    @Override
+    public double getAvailableCpus() {
+        long now = System.nanoTime();
+        if (now - nextRefresh >= 0) {
+            double systemLoad = getSystemCpuLoad();
+            double processLoad = getProcessCpuLoad();
+            if (systemLoad >= 0 && processLoad >= 0) {
+                otherCpus = Math.max(0, systemLoad - processLoad) * getAvailableProcessors();
+            }
+            nextRefresh = now + refreshNanos;
+        }
+
+        double budget = delegate.getAvailableCpus();
+        double free = getAvailableProcessors() - otherCpus;
+        return Math.max(Math.min(1.0, budget), Math.min(budget, free));
+    }
+
+    /**
+     * Return the number of processors on the machine.
+     */
+    protected int getAvailableProcessors() {
+        return operatingSystem.getAvailableProcessors();
+    }
+
+    /**
+     * Return the recent CPU usage of the whole system between 0.0 and 1.0, or
+     * a negative value if it isn't available.
+     */
+    protected double getSystemCpuLoad() {
+        return load(SYSTEM_CPU_LOAD);
+    }
+
+    /**
+     * Return the recent CPU usage of this process between 0.0 and 1.0 of the
+     * whole system, or a negative value if it isn't available.
+     */
+    protected double getProcessCpuLoad() {
+        return load(PROCESS_CPU_LOAD);
+    }
+
+    private double load(Method method) {
+        if (method == null) {
+            return -1;
+        }
+        try {
+            return ((Number) method.invoke(operatingSystem)).doubleValue();
+        } catch (Throwable t) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Implementations of this interface decide how many core threads a
+ * {@link BalancingThreadPoolExecutor} should be using based on the
+ * measurements it has collected.
+ */
+public interface PoolSizingController {
+
+    /**
+     * Return the core pool size to use next. The result is clamped to be at
+     * least 1 and at most the maximum pool size of the executor. This may be
+     * called concurrently by several worker threads, so stateful
+     * implementations must handle their own synchronization.
+     *
+     * @param snapshot the latest measurements from the executor
+     */
+    public int computePoolSize(PoolSnapshot snapshot);
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a helper class for instantiating available PoolSizingController's.
+ */
+public class PoolSizingControllers {
+
+    /**
+     * Return a {@link UtilizationPoolSizingController} that sizes the pool as
+     * N * U * (1 + (W/C)) for the given target utilization. Wrapped by
+     * {@link #backlogAware(PoolSizingController)}, this is the default used by
+     * a {@link BalancingThreadPoolExecutor}.
+     *
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          the pool
+     */
+    public static PoolSizingController targetUtilization(float targetUtilization) {
+        return new UtilizationPoolSizingController(targetUtilization);
+    }
+
+    /**
+     * Return a {@link UtilizationPoolSizingController} that sizes the pool as
+     * N * U * (1 + (W/C)) for the given target utilization, with N taken from
+     * the given {@link CpuBudget}.
+     *
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          the pool
+     * @param cpuBudget         decides how many CPU's the pool may use, see
+     *                          {@link CpuBudgets}
+     */
+    public static PoolSizingController targetUtilization(float targetUtilization, CpuBudget cpuBudget) {
+        return new UtilizationPoolSizingController(targetUtilization, cpuBudget);
+    }
+
+    /**
+     * Return a {@link HillClimbingPoolSizingController} that searches for the
+     * pool size with the highest throughput using the default parameters.
+     *
+     * @param minThreads never shrink the pool below this many threads
+     */
+    public static PoolSizingController hillClimbing(int minThreads) {
+        return new HillClimbingPoolSizingController(minThreads);
+    }
+
+    /**
+     * Return a {@link BacklogAwarePoolSizingController} that grows the pool
+     * beyond the size chosen by the given controller whenever tasks are
+     * waiting to start, using the default tolerance and minimum delay.
+     *
+     * @param delegate the controller to use when there is no backlog
+     */
+    public static PoolSizingController backlogAware(PoolSizingController delegate) {
+        return new BacklogAwarePoolSizingController(delegate);
+    }
+
+    /**
+     * Return a {@link BacklogAwarePoolSizingController} that grows the pool
+     * beyond the size chosen by the given controller whenever tasks are
+     * waiting to start, or whenever the 99th percentile of the time tasks
+     * waited to start since the last balance is above the given target.
+     *
+     * @param delegate   the controller to use when there is no backlog
+     * @param tailTarget the 99th percentile of the time to start above which
+     *                   the pool grows
+     * @param unit       the time unit of the tail target
+     */
+    public static PoolSizingController backlogAware(PoolSizingController delegate, long tailTarget, TimeUnit unit) {
+        return new BacklogAwarePoolSizingController(delegate,
+                BacklogAwarePoolSizingController.DEFAULT_TOLERANCE,
+                TimeUnit.MILLISECONDS.toNanos(BacklogAwarePoolSizingController.DEFAULT_MIN_DELAY_MILLIS),
+                unit.toNanos(tailTarget),
+                TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * This is a simple immutable holder for the measurements taken from a
+ * {@link BalancingThreadPoolExecutor} each time it balances, which are handed
+ * to a {@link PoolSizingController} to decide on the next pool size.
+ */
+public class PoolSnapshot {
+
+    /**
+     * Create a new PoolSnapshot.
+     *
+     * @param timestamp       value of {@link System#nanoTime()} when taken
+     * @param corePoolSize    current core size of the pool
+     * @param poolSize        current number of threads in the pool
+     * @param maximumPoolSize maximum number of threads allowed in the pool
+     * @param completedTasks  total number of tasks completed by the pool
+     * @param waitTime        average nanoseconds each task spends waiting
+     * @param cpuTime         average nanoseconds each task spends on the CPU
+     * @param queueDepth      number of tasks waiting in the pool's queue
+     * @param queueDelay      average nanoseconds between a task being
+     *                        submitted and starting to run
+     */
+    public PoolSnapshot(long timestamp,
+                        int corePoolSize,
+                        int poolSize,
+                        int maximumPoolSize,
+                        long completedTasks,
+                        long waitTime,
+                        long cpuTime,
+                        int queueDepth,
+                        long queueDelay) {
+        this(timestamp, corePoolSize, poolSize, maximumPoolSize, completedTasks, waitTime, cpuTime, queueDepth, queueDelay, queueDelay, 0);
+    }
+
+    /**
+     * Create a new PoolSnapshot including the tail latencies of the pool.
+     *
+     * @param timestamp                value of {@link System#nanoTime()} when taken
+     * @param corePoolSize             current core size of the pool
+     * @param poolSize                 current number of threads in the pool
+     * @param maximumPoolSize          maximum number of threads allowed in the pool
+     * @param completedTasks           total number of tasks completed by the pool
+     * @param waitTime                 average nanoseconds each task spends waiting
+     * @param cpuTime                  average nanoseconds each task spends on the CPU
+     * @param queueDepth               number of tasks waiting in the pool's queue
+     * @param queueDelay               average nanoseconds between a task being
+     *                                 submitted and starting to run
+     * @param queueDelay99thPercentile 99th percentile of the nanoseconds between
+     *                                 a task being submitted and starting to run,
+     *                                 since the last balance
+     * @param runTime99thPercentile    99th percentile of the wall clock
+     *                                 nanoseconds each task takes to run since
+     *                                 the last balance, or 0 if it isn't measured
+     */
+    public PoolSnapshot(long timestamp,
+                        int corePoolSize,
+                        int poolSize,
+                        int maximumPoolSize,
+                        long completedTasks,
+                        long waitTime,
+                        long cpuTime,
+                        int queueDepth,
+                        long queueDelay,
+                        long queueDelay99thPercentile,
+                        long runTime99thPercentile) {
+        this.timestamp = timestamp;
+        this.corePoolSize = corePoolSize;
+        this.poolSize = poolSize;
+        this.maximumPoolSize = maximumPoolSize;
+        this.completedTasks = completedTasks;
+        this.waitTime = waitTime;
+        this.cpuTime = cpuTime;
+        this.queueDepth = queueDepth;
+        this.queueDelay = queueDelay;
+        this.queueDelay99thPercentile = queueDelay99thPercentile;
+        this.runTime99thPercentile = runTime99thPercentile;
+    }
+
+    /**
+     * The value of {@link System#nanoTime()} when this snapshot was taken.
+     */
+    public final long timestamp;
+
+    /**
+     * The core size of the pool when this snapshot was taken.
+     */
+    public final int corePoolSize;
+
+    /**
+     * The number of threads in the pool when this snapshot was taken.
+     */
+    public final int poolSize;
+
+    /**
+     * The maximum number of threads allowed in the pool.
+     */
+    public final int maximumPoolSize;
+
+    /**
+     * The total number of tasks the pool has completed so far.
+     */
+    public final long completedTasks;
+
+    /**
+     * The smoothed average number of nanoseconds each task spends waiting.
+     */
+    public final long waitTime;
+
+    /**
+     * The smoothed average number of nanoseconds each task spends on the CPU.
+     */
+    public final long cpuTime;
+
+    /**
+     * The number of tasks waiting in the pool's queue when this snapshot was
+     * taken.
+     */
+    public final int queueDepth;
+
+    /**
+     * The smoothed average number of nanoseconds between a task being
+     * submitted and starting to run, including any time the submitter spent
+     * blocked waiting for the pool to accept it.
+     */
+    public final long queueDelay;
+
+    /**
+     * The 99th percentile of the nanoseconds between a task being submitted
+     * and starting to run, among the tasks that finished since the pool last
+     * balanced, or the average when the pool doesn't measure it per task.
+     */
+    public final long queueDelay99thPercentile;
+
+    /**
+     * The 99th percentile of the wall clock nanoseconds each task takes to
+     * run, among the tasks that finished since the pool last balanced, or 0
+     * when the pool doesn't measure it.
+     */
+    public final long runTime99thPercentile;
+}
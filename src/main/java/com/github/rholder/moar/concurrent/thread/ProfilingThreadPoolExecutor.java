@@ -0,0 +1,338 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is an auto-balancing thread pool that sizes itself the same way as a
+ * {@link BalancingThreadPoolExecutor}, but is itself a
+ * {@link ThreadPoolExecutor} that profiles tasks in
+ * {@link #beforeExecute(Thread, Runnable)} and
+ * {@link #afterExecute(Runnable, Throwable)} instead of wrapping each of them
+ * in another {@link Runnable}. The measurements in progress are kept in state
+ * belonging to each worker thread, so running a task allocates nothing beyond
+ * what the {@link ThreadPoolExecutor} itself does and whatever the
+ * {@link ThreadProfiler} needs for sampled tasks. For the same reason the
+ * {@link SamplingStrategy} is asked about each task from the worker thread
+ * about to run it rather than from the thread submitting it, so only tasks
+ * that actually run are sampled.
+ *
+ * Since tasks aren't wrapped, the time between submitting a task and it
+ * starting to run can't be measured directly. Instead, each balance estimates
+ * it from Little's law as the depth of the queue times the average time between
+ * completed tasks since the last balance. This is only meaningful with a queue
+ * that actually holds tasks, which is why the pool is best paired with a
+ * {@link java.util.concurrent.LinkedBlockingQueue} and left to grow by raising
+ * its core size. For the same reason only the time sampled tasks take to run
+ * is recorded in a {@link LatencyHistogram}, both over the whole life of the
+ * pool for monitoring and since the last balance for the {@link PoolSnapshot}.
+ * Subclasses overriding either hook must call through to this implementation.
+ */
+public class ProfilingThreadPoolExecutor extends ThreadPoolExecutor implements BalancingThreadPoolExecutorMXBean {
+
+    private final LiveThreads liveThreads;
+    private final ThreadProfiler threadProfiler;
+    private final PoolSizingController poolSizingController;
+    private final SamplingStrategy samplingStrategy;
+    private final int balanceAfter;
+    private final ThreadLocal<Worker> workers;
+    private final AtomicInteger tasksSampled;
+    private final AtomicLong tasksCompleted;
+    private final BalanceBookkeeping bookkeeping;
+    private final LatencyHistogram runTimeHistogram;
+    private final LatencyHistogram recentRunTimes;
+    private volatile long queueDelay;
+
+    // guarded by this
+    private long lastCompleted;
+
+    public ProfilingThreadPoolExecutor(int corePoolSize,
+                                       int maximumPoolSize,
+                                       long keepAliveTime,
+                                       TimeUnit unit,
+                                       BlockingQueue<Runnable> workQueue,
+                                       RejectedExecutionHandler handler,
+                                       ThreadProfiler threadProfiler,
+                                       PoolSizingController poolSizingController,
+                                       float smoothingWeight,
+                                       int balanceAfter,
+                                       SamplingStrategy samplingStrategy) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, handler);
+
+        if (threadProfiler == null || poolSizingController == null || samplingStrategy == null) {
+            throw new NullPointerException();
+        }
+
+        if (balanceAfter < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.liveThreads = new LiveThreads(smoothingWeight);
+        this.threadProfiler = threadProfiler;
+        this.poolSizingController = poolSizingController;
+        this.samplingStrategy = samplingStrategy;
+        this.balanceAfter = balanceAfter;
+        this.workers = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker(liveThreads.tracking(Thread.currentThread()));
+            }
+        };
+        this.tasksSampled = new AtomicInteger(0);
+        this.tasksCompleted = new AtomicLong(0);
+        this.bookkeeping = new BalanceBookkeeping();
+        this.runTimeHistogram = new LatencyHistogram();
+        this.recentRunTimes = new LatencyHistogram();
+
+        // count rejections on the way through to the given policy
+        super.setRejectedExecutionHandler(bookkeeping.countRejections(handler));
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(RejectedExecutionHandler handler) {
+        if (handler == null) {
+            throw new NullPointerException();
+        }
+        super.setRejectedExecutionHandler(bookkeeping.countRejections(handler));
+    }
+
+    @Override
+    public RejectedExecutionHandler getRejectedExecutionHandler() {
+        return BalanceBookkeeping.uncounted(super.getRejectedExecutionHandler());
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        // this runs on the worker thread that's about to run the task
+        Worker worker = workers.get();
+        int weight = samplingStrategy.sample();
+        worker.weight = weight;
+        if (weight != 0) {
+            long threadId = t.getId();
+            worker.startTime = threadProfiler.getThreadWaitTime(threadId);
+            worker.startCpu = threadProfiler.getThreadCpuTime(threadId);
+            worker.started = System.nanoTime();
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        Worker worker = workers.get();
+        int weight = worker.weight;
+        if (weight == 0) {
+            return;
+        }
+        worker.weight = 0;
+
+        long threadId = Thread.currentThread().getId();
+        long totalCpuTime = threadProfiler.getThreadCpuTime(threadId) - worker.startCpu;
+        long totalTime = threadProfiler.getThreadWaitTime(threadId) - worker.startTime;
+        liveThreads.track(worker.tracking, weight, totalTime, totalCpuTime, 0);
+        long runTime = System.nanoTime() - worker.started;
+        runTimeHistogram.record(runTime, weight);
+        recentRunTimes.record(runTime, weight);
+
+        // unsampled tasks aren't counted, so estimate the total from the weights
+        tasksCompleted.addAndGet(weight);
+
+        int count = tasksSampled.getAndIncrement();
+        if(count % balanceAfter == 0) {
+            balance();
+        }
+    }
+
+    /**
+     * Add a {@link BalanceListener} to be notified of every sizing decision
+     * made from now on.
+     *
+     * @param listener the listener to add
+     */
+    public void addBalanceListener(BalanceListener listener) {
+        bookkeeping.addBalanceListener(listener);
+    }
+
+    /**
+     * Remove a previously added {@link BalanceListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeBalanceListener(BalanceListener listener) {
+        bookkeeping.removeBalanceListener(listener);
+    }
+
+    /**
+     * Register this executor with the platform MBean server under
+     * com.github.rholder.moar.concurrent:type=ProfilingThreadPoolExecutor,name=
+     * followed by the given name, returning the name it was registered with.
+     *
+     * @param name a name unique among the registered executors
+     * @throws JMException if the executor could not be registered
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        return BalanceBookkeeping.registerMBean(this, "ProfilingThreadPoolExecutor", name);
+    }
+
+    @Override
+    public int getTargetPoolSize() {
+        return bookkeeping.getTargetPoolSize();
+    }
+
+    @Override
+    public long getAverageWaitTime() {
+        return liveThreads.average().avgTotalTime;
+    }
+
+    @Override
+    public long getAverageCpuTime() {
+        return liveThreads.average().avgCpuTime;
+    }
+
+    @Override
+    public long getAverageQueueDelay() {
+        return queueDelay;
+    }
+
+    /**
+     * Return the estimated queue delay, since it isn't measured for each task.
+     */
+    @Override
+    public long getQueueDelay99thPercentile() {
+        return queueDelay;
+    }
+
+    @Override
+    public long getRunTime99thPercentile() {
+        return runTimeHistogram.getPercentile(99.0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    @Override
+    public long getSampledTaskCount() {
+        return tasksSampled.get();
+    }
+
+    @Override
+    public long getRejectedTaskCount() {
+        return bookkeeping.getRejectedTaskCount();
+    }
+
+    @Override
+    public long getBalanceCount() {
+        return bookkeeping.getBalanceCount();
+    }
+
+    @Override
+    public long getBalanceIntervalMillis() {
+        return bookkeeping.getBalanceIntervalMillis();
+    }
+
+    /**
+     * Return the histogram of the wall clock time sampled tasks took to run,
+     * weighted by the number of tasks each sample stands for, over the whole
+     * life of the pool.
+     */
+    public LatencyHistogram getRunTimeHistogram() {
+        return runTimeHistogram;
+    }
+
+    /**
+     * Return a snapshot of the current measurements for this pool, averaged
+     * across all of its live threads. The number of completed tasks is
+     * estimated from the sampled ones, the queue delay is the estimate made
+     * at the last balance and stands in for its 99th percentile too, and the
+     * 99th percentile of the run time only covers the tasks that finished since
+     * the last balance.
+     */
+    public PoolSnapshot snapshot() {
+        Tracking average = liveThreads.average();
+        return new PoolSnapshot(System.nanoTime(),
+                getCorePoolSize(),
+                getPoolSize(),
+                getMaximumPoolSize(),
+                tasksCompleted.get(),
+                average.avgTotalTime,
+                average.avgCpuTime,
+                getQueue().size(),
+                queueDelay,
+                queueDelay,
+                recentRunTimes.getPercentile(99.0, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Compute and set the optimal number of threads to use in this pool.
+     */
+    private void balance() {
+        // only try to balance when we're not terminating
+        if(!isTerminated()) {
+            recordBalance(System.nanoTime());
+
+            PoolSnapshot snapshot = snapshot();
+            // start the next interval, losing at most the few tasks recorded in between
+            recentRunTimes.reset();
+            int target = poolSizingController.computePoolSize(snapshot);
+            int size = Math.max(1, Math.min(target, snapshot.maximumPoolSize));
+
+            setCorePoolSize(size);
+
+            bookkeeping.balanced(snapshot, target, size);
+        }
+    }
+
+    /**
+     * Update the balance interval and estimate the queue delay from the
+     * number of tasks completed since the last balance.
+     */
+    private synchronized void recordBalance(long timestamp) {
+        long completed = tasksCompleted.get();
+        long interval = bookkeeping.recordInterval(timestamp);
+        long tasks = completed - lastCompleted;
+        if(interval > 0 && tasks > 0) {
+            // Little's law, the time to wait is the number ahead times the time to finish each one
+            queueDelay = getQueue().size() * (interval / tasks);
+        }
+        lastCompleted = completed;
+    }
+
+    /**
+     * This is the state of a single worker thread, holding the profile of the
+     * task it is running.
+     */
+    private static class Worker {
+
+        final Tracking tracking;
+        int weight;
+        long startTime;
+        long startCpu;
+        long started;
+
+        Worker(Tracking tracking) {
+            this.tracking = tracking;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This {@link SheddingPolicy} sheds tasks based on how long tasks have
+ * recently been waiting to start, as measured by a
+ * {@link BalancingThreadPoolExecutor} this policy is listening to. While the
+ * measured queue delay is under the given maximum, a rejected task blocks the
+ * current thread until the backing queue can accept it, for no longer than the
+ * maximum delay itself. Once tasks are measured to wait longer than that,
+ * rejected tasks are shed right away instead of adding to the wait.
+ *
+ * This policy only sheds on measurements after it has been added to the
+ * executor with {@link BalancingThreadPoolExecutor#addBalanceListener(BalanceListener)},
+ * which the methods in {@link com.github.rholder.moar.concurrent.StrategicExecutors}
+ * take care of.
+ */
+public class QueueDelaySheddingPolicy extends SheddingPolicy implements BalanceListener {
+
+    private final long maxQueueDelay;
+    private volatile long queueDelay;
+
+    /**
+     * Construct a new {@link QueueDelaySheddingPolicy} with the given maximum
+     * queue delay.
+     *
+     * @param maxQueueDelay shed tasks when tasks have been waiting longer than
+     *                      this to start, and never block for longer than this
+     * @param unit          the unit of the maximum queue delay
+     */
+    public QueueDelaySheddingPolicy(long maxQueueDelay, TimeUnit unit) {
+        if (maxQueueDelay < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.maxQueueDelay = unit.toNanos(maxQueueDelay);
+    }
+
+    @Override
+    public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+        queueDelay = snapshot.queueDelay;
+    }
+
+    @Override
+    protected void handle(Runnable r, ThreadPoolExecutor executor) {
+        if (queueDelay > maxQueueDelay) {
+            shed("Tasks are waiting " + queueDelay + " ns to start, over the limit of " + maxQueueDelay + " ns");
+        }
+        try {
+            if (!executor.getQueue().offer(r, maxQueueDelay, TimeUnit.NANOSECONDS)) {
+                shed("Timed out waiting for the executor to accept the task");
+            }
+        } catch (InterruptedException e) {
+            throw new RejectedExecutionException("Unexpected InterruptedException", e);
+        }
+    }
+
+    /**
+     * Return the queue delay last measured by the executor, in nanoseconds.
+     */
+    public long getQueueDelay() {
+        return queueDelay;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a helper class for instantiating the available
+ * {@link RejectedExecutionHandler}'s for the underlying executor of a
+ * {@link BalancingThreadPoolExecutor}.
+ */
+public class RejectionPolicies {
+
+    /**
+     * Return a {@link CallerBlocksPolicy} that blocks the submitting thread for
+     * as long as it takes the executor to accept the task.
+     */
+    public static RejectedExecutionHandler callerBlocks() {
+        return new CallerBlocksPolicy();
+    }
+
+    /**
+     * Return a {@link DeadlineBlocksPolicy} that blocks the submitting thread
+     * for up to the given timeout before shedding the task.
+     *
+     * @param timeout the longest time to block a submitting thread
+     * @param unit    the unit of the timeout
+     */
+    public static DeadlineBlocksPolicy deadlineBlocks(long timeout, TimeUnit unit) {
+        return new DeadlineBlocksPolicy(timeout, unit);
+    }
+
+    /**
+     * Return a {@link QueueDelaySheddingPolicy} that sheds tasks while tasks
+     * are measured to wait longer than the given maximum to start.
+     *
+     * @param maxQueueDelay shed tasks when tasks have been waiting longer than
+     *                      this to start, and never block for longer than this
+     * @param unit          the unit of the maximum queue delay
+     */
+    public static QueueDelaySheddingPolicy shedOnQueueDelay(long maxQueueDelay, TimeUnit unit) {
+        return new QueueDelaySheddingPolicy(maxQueueDelay, unit);
+    }
+
+    /**
+     * Return a {@link CallerRunsWithinBudgetPolicy} that runs rejected tasks in
+     * the submitting thread until they have used the given CPU budget in the
+     * current period, measured with an {@link MXBeanThreadProfiler}.
+     *
+     * @param budget the CPU time rejected tasks may use every period
+     * @param period the length of each period
+     * @param unit   the unit of the budget and period
+     */
+    public static CallerRunsWithinBudgetPolicy callerRunsWithinBudget(long budget, long period, TimeUnit unit) {
+        return new CallerRunsWithinBudgetPolicy(new MXBeanThreadProfiler(), budget, period, unit);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * This is a helper class for instantiating available SamplingStrategy's.
+ */
+public class SamplingStrategies {
+
+    private static final SamplingStrategy EVERY_TASK = new SamplingStrategy() {
+        @Override
+        public int sample() {
+            return 1;
+        }
+    };
+
+    /**
+     * Return a {@link SamplingStrategy} that profiles every task.
+     */
+    public static SamplingStrategy everyTask() {
+        return EVERY_TASK;
+    }
+
+    /**
+     * Return a {@link FixedRateSamplingStrategy} that profiles 1 out of every
+     * given number of tasks on average.
+     *
+     * @param rate sample 1 out of every this many tasks on average
+     */
+    public static SamplingStrategy fixedRate(int rate) {
+        return new FixedRateSamplingStrategy(rate);
+    }
+
+    /**
+     * Return an {@link AdaptiveSamplingStrategy} that aims to profile the given
+     * number of tasks per second from each submitting thread, never skipping
+     * more than the given maximum interval of tasks on average.
+     *
+     * @param samplesPerSecond the number of samples per second to aim for from
+     *                         each submitting thread
+     * @param maxInterval      never skip more than this many tasks on average
+     *                         between samples
+     */
+    public static SamplingStrategy adaptive(long samplesPerSecond, int maxInterval) {
+        return new AdaptiveSamplingStrategy(samplesPerSecond, maxInterval);
+    }
+}
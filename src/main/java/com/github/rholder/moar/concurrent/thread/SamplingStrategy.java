@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Implementations of this interface decide which task executions are profiled
+ * by a {@link BalancingThreadPoolExecutor}. Tasks that aren't sampled are
+ * handed directly to the underlying executor without any profiling overhead.
+ *
+ * A {@link ProfilingThreadPoolExecutor} never wraps its tasks, so it has
+ * nowhere to carry a weight from submission to execution. It instead samples
+ * each task on the worker thread right before running it, which means per
+ * thread state follows the workers rather than the submitters there, and tasks
+ * that are rejected or removed from the queue are never sampled.
+ */
+public interface SamplingStrategy {
+
+    /**
+     * Return the number of submitted tasks the task currently being submitted
+     * stands in for if it should be profiled, or 0 if it should be skipped. The
+     * returned weight is the inverse of the probability the task was chosen and
+     * keeps the profiled averages representative of all tasks even as the
+     * sampling rate changes. This is called once per submitted task from the
+     * submitting thread, or once per task run from the worker thread by a
+     * {@link ProfilingThreadPoolExecutor}, so implementations must be thread
+     * safe and as cheap as possible.
+     */
+    public int sample();
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is the base class for the {@link RejectedExecutionHandler}'s that
+ * eventually give up on a task instead of blocking the submitting thread
+ * forever the way a {@link CallerBlocksPolicy} does. A task that is given up on
+ * is shed by throwing a {@link RejectedExecutionException} back to the
+ * submitter, so it can fail fast instead of piling up behind an overloaded
+ * pool. Both the number of rejections handled and the number of tasks shed are
+ * counted.
+ */
+public abstract class SheddingPolicy implements RejectedExecutionHandler {
+
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong shedCount = new AtomicLong(0);
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+        rejectedCount.incrementAndGet();
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        handle(r, executor);
+    }
+
+    /**
+     * Handle a task rejected by a running executor, either by eventually
+     * running it or by calling {@link #shed(String)}.
+     *
+     * @param r        the runnable task requested to be executed
+     * @param executor the executor attempting to execute this task
+     */
+    protected abstract void handle(Runnable r, ThreadPoolExecutor executor);
+
+    /**
+     * Count the current task as shed and throw the
+     * {@link RejectedExecutionException} that sheds it.
+     *
+     * @param reason the message for the exception
+     */
+    protected void shed(String reason) {
+        shedCount.incrementAndGet();
+        throw new RejectedExecutionException(reason);
+    }
+
+    /**
+     * Return the number of tasks this policy has been handed by a running
+     * executor or by one that was shut down.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Return the number of tasks this policy gave up on.
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Tasks may implement this interface to explicitly declare which class of
+ * tasks they belong to when submitted to an executor using
+ * {@link TaskClassifiers#byTag()}.
+ */
+public interface TaggedTask {
+
+    /**
+     * Return the key of the class this task belongs to.
+     */
+    public Object getTaskTag();
+}
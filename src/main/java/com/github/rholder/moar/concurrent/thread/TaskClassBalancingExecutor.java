@@ -0,0 +1,318 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This executor runs each class of task, as decided by a
+ * {@link TaskClassifier}, in its own {@link BalancingThreadPoolExecutor} so
+ * that CPU bound and blocking tasks each get the number of threads they need
+ * instead of one size based on their blended profile.
+ *
+ * The sub-pools split the processors and the thread cap between them. Each
+ * sub-pool sizes itself with N * U * (1 + (W/C)) using its own profile, where N
+ * is its share of the processors in proportion to how many CPU's its tasks
+ * kept busy since it last balanced, scaled up when they had to wait to start
+ * since a sub-pool can't use more than its share. The cap on the total number of threads is
+ * then divided among the sub-pools in proportion to the size each of them
+ * asked for, with every sub-pool allowed at least one thread and the shares
+ * rounded such that they add up to exactly the cap.
+ *
+ * Since every sub-pool needs a thread, there are never more sub-pools than
+ * the cap. Once all but one of them are taken, the tasks of every new class
+ * share the last one, which is keyed by {@link #OVERFLOW}.
+ */
+public class TaskClassBalancingExecutor extends AbstractExecutorService {
+
+    /**
+     * The key of the sub-pool shared by the classes of tasks that came after
+     * there was no room left for a sub-pool of their own.
+     */
+    public static final Object OVERFLOW = new Object() {
+        @Override
+        public String toString() {
+            return "OVERFLOW";
+        }
+    };
+
+    private final TaskClassifier taskClassifier;
+    private final int maxThreads;
+    private final ThreadProfiler threadProfiler;
+    private final float targetUtilization;
+    private final float smoothingWeight;
+    private final int balanceAfter;
+    private final SamplingStrategy samplingStrategy;
+
+    // creating, shutting down, and resizing sub-pools are all guarded by subPools
+    private final ConcurrentHashMap<Object, SubPool> subPools;
+    private volatile SubPool overflow;
+    private volatile boolean shutdown;
+
+    public TaskClassBalancingExecutor(TaskClassifier taskClassifier,
+                                      int maxThreads,
+                                      ThreadProfiler threadProfiler,
+                                      float targetUtilization,
+                                      float smoothingWeight,
+                                      int balanceAfter,
+                                      SamplingStrategy samplingStrategy) {
+
+        if (targetUtilization <= 0.0 || targetUtilization > 1.0 || maxThreads < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        if (taskClassifier == null || threadProfiler == null || samplingStrategy == null) {
+            throw new NullPointerException();
+        }
+
+        this.taskClassifier = taskClassifier;
+        this.maxThreads = maxThreads;
+        this.threadProfiler = threadProfiler;
+        this.targetUtilization = targetUtilization;
+        this.smoothingWeight = smoothingWeight;
+        this.balanceAfter = balanceAfter;
+        this.samplingStrategy = samplingStrategy;
+        this.subPools = new ConcurrentHashMap<Object, SubPool>();
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (subPools) {
+            shutdown = true;
+            for (SubPool pool : subPools.values()) {
+                pool.executor.shutdown();
+            }
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        synchronized (subPools) {
+            shutdown = true;
+            for (SubPool pool : subPools.values()) {
+                tasks.addAll(pool.executor.shutdownNow());
+            }
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        if (!shutdown) {
+            return false;
+        }
+        for (SubPool pool : subPools.values()) {
+            if (!pool.executor.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (SubPool pool : subPools.values()) {
+            long remaining = deadline - System.nanoTime();
+            if (!pool.executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return isTerminated();
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        Object key = taskClassifier.classify(TaskFuture.unwrap(command));
+        subPool(key).executor.execute(command);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new TaskFuture<T>(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new TaskFuture<T>(callable);
+    }
+
+    /**
+     * Return the sub-pool running each class of task, keyed by the value
+     * returned from the {@link TaskClassifier}.
+     */
+    public Map<Object, BalancingThreadPoolExecutor> getTaskClassExecutors() {
+        Map<Object, BalancingThreadPoolExecutor> executors = new HashMap<Object, BalancingThreadPoolExecutor>();
+        for (Map.Entry<Object, SubPool> e : subPools.entrySet()) {
+            executors.put(e.getKey(), e.getValue().executor);
+        }
+        return executors;
+    }
+
+    private SubPool subPool(Object key) {
+        SubPool pool = subPools.get(key);
+        if (pool == null) {
+            SubPool shared = overflow;
+            if (shared != null) {
+                return shared;
+            }
+            synchronized (subPools) {
+                pool = subPools.get(key);
+                if (pool == null) {
+                    if (shutdown) {
+                        throw new RejectedExecutionException("Executor has been shut down");
+                    }
+                    if (subPools.size() >= maxThreads - 1) {
+                        // no room for another sub-pool, keep the last one for every class to come
+                        key = OVERFLOW;
+                        pool = subPools.get(key);
+                    }
+                    if (pool == null) {
+                        pool = new SubPool();
+                        subPools.put(key, pool);
+                        if (key == OVERFLOW) {
+                            overflow = pool;
+                        }
+                        allot();
+                    }
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Divide the thread cap among the sub-pools, one thread each and the rest
+     * in proportion to the size they last asked for, handing the threads left
+     * over from rounding down to the largest remainders. This must be called
+     * while holding subPools, which also guards every change to the core and
+     * maximum sizes of the sub-pools.
+     */
+    private void allot() {
+        SubPool[] pools = subPools.values().toArray(new SubPool[0]);
+        long total = 0;
+        for (SubPool pool : pools) {
+            total += pool.desired;
+        }
+
+        int spare = maxThreads - pools.length;
+        int[] shares = new int[pools.length];
+        double[] remainders = new double[pools.length];
+        int allotted = 0;
+        for (int i = 0; i < pools.length; i++) {
+            double exact = spare * (double) pools[i].desired / total;
+            shares[i] = (int) exact;
+            remainders[i] = exact - shares[i];
+            allotted += shares[i];
+        }
+        for (; allotted < spare; allotted++) {
+            int largest = 0;
+            for (int i = 1; i < pools.length; i++) {
+                if (remainders[i] > remainders[largest]) {
+                    largest = i;
+                }
+            }
+            shares[largest]++;
+            remainders[largest] = -1;
+        }
+
+        for (int i = 0; i < pools.length; i++) {
+            int max = 1 + shares[i];
+            ThreadPoolExecutor tpe = pools[i].threadPoolExecutor;
+            if (tpe.getCorePoolSize() > max) {
+                tpe.setCorePoolSize(max);
+            }
+            tpe.setMaximumPoolSize(max);
+        }
+    }
+
+    /**
+     * This is a single sub-pool, which is also the {@link PoolSizingController}
+     * for its own {@link BalancingThreadPoolExecutor}.
+     */
+    private class SubPool implements PoolSizingController {
+
+        final ThreadPoolExecutor threadPoolExecutor;
+        final BalancingThreadPoolExecutor executor;
+        final PoolSizingController delegate;
+
+        // the following are guarded by subPools
+        volatile double cpuShare = 1.0;
+        final CpuDemand demand = new CpuDemand();
+        int desired = 1;
+
+        SubPool() {
+            threadPoolExecutor = new ThreadPoolExecutor(1, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new CallerBlocksPolicy()) {
+                @Override
+                public void setCorePoolSize(int corePoolSize) {
+                    // the maximum may have been lowered by another sub-pool since this one balanced
+                    synchronized (subPools) {
+                        super.setCorePoolSize(Math.min(corePoolSize, getMaximumPoolSize()));
+                    }
+                }
+            };
+            delegate = new BacklogAwarePoolSizingController(new UtilizationPoolSizingController(targetUtilization) {
+                @Override
+                protected double getAvailableCpus() {
+                    return super.getAvailableCpus() * cpuShare;
+                }
+            });
+            executor = new BalancingThreadPoolExecutor(threadPoolExecutor, threadProfiler, this, smoothingWeight, balanceAfter, samplingStrategy);
+        }
+
+        @Override
+        public int computePoolSize(PoolSnapshot snapshot) {
+            synchronized (subPools) {
+                demand.update(snapshot);
+
+                double totalDemand = 0;
+                int active = 0;
+                for (SubPool pool : subPools.values()) {
+                    if (pool.demand.isActive(snapshot.timestamp)) {
+                        totalDemand += pool.demand.getCpus();
+                        active++;
+                    }
+                }
+                cpuShare = totalDemand > 0 ? demand.getCpus() / totalDemand : 1.0 / Math.max(1, active);
+
+                desired = Math.max(1, delegate.computePoolSize(snapshot));
+                allot();
+                return Math.min(desired, threadPoolExecutor.getMaximumPoolSize());
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collect tracking statistics for a given class of tasks, along with how many
+ * of the tasks run belonged to the class.
+ */
+public class TaskClassProfile extends Tracking {
+
+    // weighted count of the tasks in this class that have been run
+    public final AtomicLong tasks = new AtomicLong();
+
+    // weighted count of the tasks in this class that ran between the last two balances
+    public volatile long recentTasks = 0;
+
+    long lastTasks = 0;
+}
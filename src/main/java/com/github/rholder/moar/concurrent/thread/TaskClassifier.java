@@ -0,0 +1,35 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * Implementations of this interface sort submitted tasks into classes that
+ * share a similar profile, such as CPU bound tasks and tasks that block on
+ * I/O, so that each class can be profiled and balanced separately.
+ */
+public interface TaskClassifier {
+
+    /**
+     * Return the key of the class the given task belongs to. Keys must have
+     * sensible equals() and hashCode() implementations and should come from a
+     * small, fixed set since a profile is kept for every distinct key.
+     *
+     * @param task the submitted {@link Runnable} or
+     *             {@link java.util.concurrent.Callable}
+     */
+    public Object classify(Object task);
+}
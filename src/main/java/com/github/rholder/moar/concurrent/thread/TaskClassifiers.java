@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+/**
+ * This is a helper class for instantiating available TaskClassifier's.
+ */
+public class TaskClassifiers {
+
+    private static final TaskClassifier BY_CLASS = new TaskClassifier() {
+        @Override
+        public Object classify(Object task) {
+            return task.getClass();
+        }
+    };
+
+    private static final TaskClassifier BY_TAG = new TaskClassifier() {
+        @Override
+        public Object classify(Object task) {
+            if (task instanceof TaggedTask) {
+                return ((TaggedTask) task).getTaskTag();
+            }
+            return task.getClass();
+        }
+    };
+
+    private static final TaskClassifier BY_TAG_ONLY = new TaskClassifier() {
+        @Override
+        public Object classify(Object task) {
+            if (task instanceof TaggedTask) {
+                return ((TaggedTask) task).getTaskTag();
+            }
+            return null;
+        }
+    };
+
+    /**
+     * Return a {@link TaskClassifier} that puts every task implementation
+     * class in its own class of tasks.
+     */
+    public static TaskClassifier byTaskClass() {
+        return BY_CLASS;
+    }
+
+    /**
+     * Return a {@link TaskClassifier} that uses the tag of tasks implementing
+     * {@link TaggedTask}, falling back to the task implementation class for
+     * everything else.
+     */
+    public static TaskClassifier byTag() {
+        return BY_TAG;
+    }
+
+    /**
+     * Return a {@link TaskClassifier} that uses the tag of tasks implementing
+     * {@link TaggedTask} and gives every other task no key at all, for a
+     * {@link KeyedSerialExecutor} where falling back to the implementation
+     * class would run all of the untagged tasks of a class one at a time.
+     */
+    public static TaskClassifier byTagOnly() {
+        return BY_TAG_ONLY;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * This {@link FutureTask} remembers the task it was created from, so that
+ * tasks passed to submit() can still be classified by what they are rather
+ * than as yet another {@link FutureTask}.
+ *
+ * @param <V> the result type of the task
+ */
+class TaskFuture<V> extends FutureTask<V> {
+
+    final Object task;
+
+    TaskFuture(Callable<V> callable) {
+        super(callable);
+        this.task = callable;
+    }
+
+    TaskFuture(Runnable runnable, V result) {
+        super(runnable, result);
+        this.task = runnable;
+    }
+
+    /**
+     * Return the task that was originally submitted for the given command.
+     */
+    static Object unwrap(Runnable command) {
+        if (command instanceof TaskFuture) {
+            return ((TaskFuture<?>) command).task;
+        }
+        return command;
+    }
+}
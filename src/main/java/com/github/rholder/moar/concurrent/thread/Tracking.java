@@ -23,4 +23,8 @@ public class Tracking {
     // TODO making these volatile to ensure consistency adds unreasonable overhead, test read-after-write cases more to determine if it's "good enough"
     public long avgTotalTime = 0;
     public long avgCpuTime = 0;
+    public long avgQueueDelay = 0;
+
+    // decayed sum of the sampling weights that went into the averages
+    public float avgWeight = 0;
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import static java.lang.Math.ceil;
+
+/**
+ * This PoolSizingController computes the optimal pool size as N * U * (1 + (W/C))
+ * where N is the number of CPU's, U is the desired utilization, W is the time
+ * each task spends waiting, and C is the time each task spends using the CPU.
+ * This assumes that the wait time of a task doesn't depend on how many threads
+ * are running, which holds for independent blocking I/O but not for lock
+ * contention or a saturated downstream resource.
+ *
+ * N is asked for from a {@link CpuBudget} every time the pool is sized, which
+ * by default is the number of available processors limited to the CPU quota of
+ * the container the process runs in, see {@link CpuBudgets}.
+ */
+public class UtilizationPoolSizingController implements PoolSizingController {
+
+    private final float targetUtilization;
+    private final CpuBudget cpuBudget;
+
+    /**
+     * Construct a new {@link UtilizationPoolSizingController} with the given
+     * target utilization.
+     *
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          the pool
+     */
+    public UtilizationPoolSizingController(float targetUtilization) {
+        this(targetUtilization, CpuBudgets.container());
+    }
+
+    /**
+     * Construct a new {@link UtilizationPoolSizingController} with the given
+     * target utilization and CPU budget.
+     *
+     * @param targetUtilization a float between 0.0 and 1.0 representing the
+     *                          percentage of the total CPU time to be used by
+     *                          the pool
+     * @param cpuBudget         decides how many CPU's the pool may use
+     */
+    public UtilizationPoolSizingController(float targetUtilization, CpuBudget cpuBudget) {
+        if (targetUtilization <= 0.0 || targetUtilization > 1.0) {
+            throw new IllegalArgumentException();
+        }
+        if (cpuBudget == null) {
+            throw new NullPointerException();
+        }
+        this.targetUtilization = targetUtilization;
+        this.cpuBudget = cpuBudget;
+    }
+
+    @Override
+    public int computePoolSize(PoolSnapshot snapshot) {
+        long waitTime = snapshot.waitTime;
+        long cpuTime = snapshot.cpuTime;
+
+        int size = 1;
+        if(cpuTime > 0) {
+            size = (int) ceil((getAvailableCpus() * targetUtilization * (1 + (waitTime / cpuTime))));
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of CPU's the pool may use, which is N in the formula.
+     * This defaults to the {@link CpuBudget}, but may be overridden when
+     * several pools need to split the processors between them.
+     */
+    protected double getAvailableCpus() {
+        return cpuBudget.getAvailableCpus();
+    }
+}
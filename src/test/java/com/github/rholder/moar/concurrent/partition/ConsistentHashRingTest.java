@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class ConsistentHashRingTest {
+
+    private static final List<Part> PARTS = Parts.between(0, 10000 * 100 - 1, 100);
+
+    @Test
+    public void spreadsPartsEvenly() {
+        ConsistentHashRing ring = ring("worker-0", "worker-1", "worker-2", "worker-3");
+        Map<String, List<Part>> assigned = ring.assign(PARTS);
+        Assert.assertEquals(4, assigned.size());
+        for (List<Part> parts : assigned.values()) {
+            // within 20% of an even share
+            Assert.assertEquals(2500, parts.size(), 500);
+        }
+    }
+
+    @Test
+    public void joiningMovesOnlyItsShare() {
+        ConsistentHashRing ring = ring("worker-0", "worker-1", "worker-2", "worker-3");
+        String[] before = owners(ring);
+        ring.add("worker-4");
+        String[] after = owners(ring);
+
+        int moved = 0;
+        for (int i = 0; i < PARTS.size(); i++) {
+            if (!before[i].equals(after[i])) {
+                // every part that moved went to the new member
+                Assert.assertEquals("worker-4", after[i]);
+                moved++;
+            }
+        }
+        // about a fifth of the parts, where a modulo would have moved four fifths
+        Assert.assertEquals(2000, moved, 500);
+    }
+
+    @Test
+    public void leavingMovesOnlyItsParts() {
+        ConsistentHashRing ring = ring("worker-0", "worker-1", "worker-2", "worker-3");
+        String[] before = owners(ring);
+        Assert.assertTrue(ring.remove("worker-2"));
+        Assert.assertFalse(ring.remove("worker-2"));
+        String[] after = owners(ring);
+
+        for (int i = 0; i < PARTS.size(); i++) {
+            if (!before[i].equals("worker-2")) {
+                Assert.assertEquals(before[i], after[i]);
+            } else {
+                Assert.assertNotEquals("worker-2", after[i]);
+            }
+        }
+
+        // and joining again puts every part back where it was
+        ring.add("worker-2");
+        Assert.assertArrayEquals(before, owners(ring));
+    }
+
+    @Test
+    public void weightedShares() {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        ring.add("small", 1.0);
+        ring.add("large", 3.0);
+        Map<String, List<Part>> assigned = ring.assign(PARTS);
+        Assert.assertEquals(7500, assigned.get("large").size(), 750);
+        Assert.assertEquals(2500, assigned.get("small").size(), 750);
+    }
+
+    @Test
+    public void sameMembersAgree() {
+        // members joining in any order end up with the same assignment, as separate hosts would need
+        Assert.assertArrayEquals(owners(ring("a", "b", "c")), owners(ring("c", "a", "b")));
+        Assert.assertEquals(ring("a", "b").memberFor("some key"), ring("b", "a").memberFor("some key"));
+        Assert.assertEquals(ring("a", "b").memberFor(42L), ring("b", "a").memberFor(42L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyRing() {
+        new ConsistentHashRing().memberFor("key");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroWeight() {
+        new ConsistentHashRing().add("member", 0);
+    }
+
+    private static ConsistentHashRing ring(String... members) {
+        ConsistentHashRing ring = new ConsistentHashRing();
+        for (String member : members) {
+            ring.add(member);
+        }
+        return ring;
+    }
+
+    private static String[] owners(ConsistentHashRing ring) {
+        String[] owners = new String[PARTS.size()];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = ring.memberFor(PARTS.get(i));
+        }
+        return owners;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CostHistogramTest {
+
+    @Test
+    public void costSpreadEvenlyWithinBuckets() {
+        // [10, 19] costs 100, [20, 59] costs 40
+        CostHistogram histogram = new CostHistogram(10, new long[]{19, 59}, new double[]{100, 40});
+
+        Assert.assertEquals(140, histogram.cost(10, 59), 1e-9);
+        Assert.assertEquals(10, histogram.cost(10, 10), 1e-9);
+        Assert.assertEquals(50, histogram.cost(15, 19), 1e-9);
+        Assert.assertEquals(10 + 2, histogram.cost(19, 21), 1e-9);
+
+        // nothing outside of the buckets
+        Assert.assertEquals(0, histogram.cost(0, 9), 1e-9);
+        Assert.assertEquals(140, histogram.cost(0, 1000), 1e-9);
+        Assert.assertEquals(0, histogram.cost(60, 1000), 1e-9);
+        Assert.assertEquals(0, histogram.cost(20, 19), 1e-9);
+    }
+
+    @Test
+    public void fromSamples() {
+        // values under 50 cost 3 and the rest cost 1, with no samples at all in [75, 99]
+        long[] values = {0, 10, 20, 30, 40, 50, 60, 70};
+        double[] costs = {3, 3, 3, 3, 3, 1, 1, 1};
+        CostHistogram histogram = CostHistogram.fromSamples(0, 99, 4, values, costs);
+
+        Assert.assertEquals(3 * 25, histogram.cost(0, 24), 1e-9);
+        Assert.assertEquals(3 * 25, histogram.cost(25, 49), 1e-9);
+        Assert.assertEquals(25, histogram.cost(50, 74), 1e-9);
+
+        // the empty bucket gets the average of every sample
+        Assert.assertEquals(2.25 * 25, histogram.cost(75, 99), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bucketsMustIncrease() {
+        new CostHistogram(0, new long[]{10, 10}, new double[]{1, 1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void costsMustNotBeNegative() {
+        new CostHistogram(0, new long[]{10}, new double[]{-1});
+    }
+}
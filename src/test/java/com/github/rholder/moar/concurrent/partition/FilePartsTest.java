@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class FilePartsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void partsEndOnNewlines() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("record ").append(i * 7919).append('\n');
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        File file = write(bytes);
+
+        List<Part> parts = FileParts.byLines(file.toPath(), 1000);
+        assertCovers(bytes.length, parts);
+        for (Part p : parts) {
+            Assert.assertEquals('\n', bytes[(int) p.end]);
+            Assert.assertTrue(p.end - p.start + 1 >= 1000 || p.end == bytes.length - 1);
+        }
+        Assert.assertTrue(parts.size() > 5);
+    }
+
+    @Test
+    public void delimiterStraddlingBoundary() throws Exception {
+        // an equal split would end the first part in the middle of the first "||"
+        byte[] bytes = "abcd||efgh||ij".getBytes(StandardCharsets.US_ASCII);
+        List<Part> parts = FileParts.byRecords(write(bytes).toPath(), 5, "||".getBytes(StandardCharsets.US_ASCII));
+        assertCovers(bytes.length, parts);
+        Assert.assertEquals(3, parts.size());
+        Assert.assertEquals(5, parts.get(0).end);
+        Assert.assertEquals(11, parts.get(1).end);
+    }
+
+    @Test
+    public void longRecordsAndMissingDelimiter() throws Exception {
+        // the only delimiter is far past the chunk size and the file doesn't end with one
+        byte[] bytes = new byte[200000];
+        bytes[150000] = '\n';
+        List<Part> parts = FileParts.byLines(write(bytes).toPath(), 10);
+        assertCovers(bytes.length, parts);
+        Assert.assertEquals(2, parts.size());
+        Assert.assertEquals(150000, parts.get(0).end);
+    }
+
+    @Test
+    public void emptyFile() throws Exception {
+        Assert.assertTrue(FileParts.byLines(write(new byte[0]).toPath(), 10).isEmpty());
+    }
+
+    private File write(byte[] bytes) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static void assertCovers(long length, List<Part> parts) {
+        long next = 0;
+        for (Part p : parts) {
+            Assert.assertEquals(next, p.start);
+            Assert.assertTrue(p.end >= p.start);
+            next = p.end + 1;
+        }
+        Assert.assertEquals(length, next);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MappedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsEveryRecordOnce() throws Exception {
+        long expected = 0;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append(i).append('\n');
+            expected += i;
+        }
+        File file = folder.newFile();
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.US_ASCII));
+
+        final AtomicLong sum = new AtomicLong();
+        final AtomicLong records = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            new MappedFileReader(new ParallelRange(executor, 4)).readLines(file.toPath(), 4096, new FilePartTask() {
+                @Override
+                public void process(long offset, ByteBuffer buffer) {
+                    long value = 0;
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b == '\n') {
+                            sum.addAndGet(value);
+                            records.incrementAndGet();
+                            value = 0;
+                        } else {
+                            value = value * 10 + (b - '0');
+                        }
+                    }
+                    // every part ends on a complete record
+                    Assert.assertEquals(0, value);
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(10000, records.get());
+        Assert.assertEquals(expected, sum.get());
+    }
+
+    @Test
+    public void slicesAcrossWindows() throws Exception {
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+
+        final AtomicLong checked = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // parts of 30 bytes don't divide evenly into windows of 100
+            MappedFileReader reader = new MappedFileReader(new ParallelRange(executor, 4), 100);
+            reader.read(file.toPath(), Parts.between(0, bytes.length - 1, 30), new FilePartTask() {
+                @Override
+                public void process(long offset, ByteBuffer buffer) {
+                    Assert.assertEquals(0, buffer.position());
+                    Assert.assertTrue(buffer.isReadOnly());
+                    for (long i = offset; buffer.hasRemaining(); i++) {
+                        Assert.assertEquals((byte) i, buffer.get());
+                        checked.incrementAndGet();
+                    }
+                }
+            });
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(bytes.length, checked.get());
+    }
+
+    @Test
+    public void failurePassedOn() throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), "a\nb\nc\n".getBytes(StandardCharsets.US_ASCII));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new MappedFileReader(executor).readLines(file.toPath(), 1, new FilePartTask() {
+                @Override
+                public void process(long offset, ByteBuffer buffer) throws Exception {
+                    if (offset == 2) {
+                        throw new IllegalStateException("bad record");
+                    }
+                }
+            });
+            Assert.fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
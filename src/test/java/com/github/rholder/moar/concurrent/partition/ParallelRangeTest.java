@@ -0,0 +1,211 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import com.github.rholder.moar.concurrent.thread.BalancingThreadPoolExecutor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+public class ParallelRangeTest {
+
+    @Test
+    public void everyValueOnce() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(10000);
+        new ParallelRange(pool).parallelFor(100, 10099, 7, new RangeTask() {
+            @Override
+            public void run(long start, long end) {
+                for (long i = start; i <= end; i++) {
+                    seen.incrementAndGet((int) i - 100);
+                }
+            }
+        });
+        for (int i = 0; i < seen.length(); i++) {
+            Assert.assertEquals("value " + (i + 100), 1, seen.get(i));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void guidedCoversEveryValueOnce() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParallelRange range = new ParallelRange(pool);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(10000);
+        range.parallelFor(RangeDispenser.guided(0, 9999, range.getParallelism(), 16), new RangeTask() {
+            @Override
+            public void run(long start, long end) {
+                for (long i = start; i <= end; i++) {
+                    seen.incrementAndGet((int) i);
+                }
+            }
+        });
+        for (int i = 0; i < seen.length(); i++) {
+            Assert.assertEquals("value " + i, 1, seen.get(i));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void reduceWithAccumulatorPerWorker() throws Exception {
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(8, 1.0f);
+        final AtomicInteger accumulators = new AtomicInteger();
+        long sum = new ParallelRange(executor, 4).parallelReduce(1, 1000000, 1000,
+                new Supplier<long[]>() {
+                    @Override
+                    public long[] get() {
+                        accumulators.incrementAndGet();
+                        return new long[1];
+                    }
+                },
+                new RangeAccumulator<long[]>() {
+                    @Override
+                    public long[] accumulate(long[] accumulator, long start, long end) {
+                        for (long i = start; i <= end; i++) {
+                            accumulator[0] += i;
+                        }
+                        return accumulator;
+                    }
+                },
+                new BinaryOperator<long[]>() {
+                    @Override
+                    public long[] apply(long[] a, long[] b) {
+                        a[0] += b[0];
+                        return a;
+                    }
+                })[0];
+
+        Assert.assertEquals(1000000L * 1000001L / 2, sum);
+        Assert.assertEquals(4, accumulators.get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void exceptionStopsRemainingParts() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        final AtomicLong processed = new AtomicLong();
+        try {
+            new ParallelRange(pool).parallelFor(0, 99999, 10, new RangeTask() {
+                @Override
+                public void run(long start, long end) {
+                    if (start == 500) {
+                        throw new IllegalStateException("bad part");
+                    }
+                    processed.incrementAndGet();
+                }
+            });
+            Assert.fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue("processed " + processed.get(), processed.get() < 9999);
+    }
+
+    @Test
+    public void cancelStopsRemainingParts() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        final CountDownLatch firstPart = new CountDownLatch(1);
+        final AtomicLong processed = new AtomicLong();
+        CompletableFuture<Void> future = new ParallelRange(pool).forEachAsync(0, 999, 1, new RangeTask() {
+            @Override
+            public void run(long start, long end) throws Exception {
+                processed.incrementAndGet();
+                firstPart.countDown();
+                Thread.sleep(1);
+            }
+        }, null);
+
+        Assert.assertTrue(firstPart.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(future.cancel(false));
+        try {
+            future.get();
+            Assert.fail("Expected a CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue("processed " + processed.get(), processed.get() < 1000);
+    }
+
+    @Test
+    public void progressReachesTotal() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        final AtomicLong mostCompleted = new AtomicLong();
+        final AtomicLong total = new AtomicLong();
+        final AtomicInteger calls = new AtomicInteger();
+        new ParallelRange(pool).forEachAsync(0, 72, 22, new RangeTask() {
+            @Override
+            public void run(long start, long end) {
+            }
+        }, new RangeProgressListener() {
+            @Override
+            public void progress(long completedValues, long totalValues) {
+                calls.incrementAndGet();
+                total.set(totalValues);
+                synchronized (mostCompleted) {
+                    mostCompleted.set(Math.max(mostCompleted.get(), completedValues));
+                }
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        // 4 parts of 73 values
+        Assert.assertEquals(4, calls.get());
+        Assert.assertEquals(73, total.get());
+        Assert.assertEquals(73, mostCompleted.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void emptyRange() throws Exception {
+        String result = new ParallelRange(ForkJoinPool.commonPool()).parallelReduce(10, 9, 5,
+                new Supplier<String>() {
+                    @Override
+                    public String get() {
+                        return "empty";
+                    }
+                },
+                new RangeAccumulator<String>() {
+                    @Override
+                    public String accumulate(String accumulator, long start, long end) {
+                        throw new AssertionError("nothing to accumulate");
+                    }
+                },
+                new BinaryOperator<String>() {
+                    @Override
+                    public String apply(String a, String b) {
+                        return a + b;
+                    }
+                });
+        Assert.assertEquals("empty", result);
+    }
+}
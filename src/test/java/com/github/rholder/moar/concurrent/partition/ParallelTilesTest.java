@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ParallelTilesTest {
+
+    @Test
+    public void transposeMatchesSequential() throws Exception {
+        final int n = 100;
+        final double[] source = new double[n * n];
+        final double[] target = new double[n * n];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = i;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            new ParallelTiles(new ParallelRange(executor, 4)).forEachAsync(Tiles.among(n, n, 16, 16, TileOrder.Z_ORDER), 2, new TileTask() {
+                @Override
+                public void run(long rowStart, long rowEnd, long colStart, long colEnd) {
+                    for (int r = (int) rowStart; r <= rowEnd; r++) {
+                        for (int c = (int) colStart; c <= colEnd; c++) {
+                            target[c * n + r] = source[r * n + c];
+                        }
+                    }
+                }
+            }, null).get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                Assert.assertEquals(source[r * n + c], target[c * n + r], 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class PartListTest {
+
+    @Test
+    public void matchesParts() {
+        List<Part> expected = Parts.among(23, 21, 10);
+        PartList parts = PartList.between(23, 43, 10);
+        Assert.assertEquals(expected.size(), parts.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).start, parts.startAt(i));
+            Assert.assertEquals(expected.get(i).end, parts.endAt(i));
+            Assert.assertEquals(expected.get(i).start, parts.get(i).start);
+            Assert.assertEquals(expected.get(i).end, parts.get(i).end);
+        }
+        Assert.assertEquals(1, parts.lengthAt(2));
+
+        PartList copy = PartList.copyOf(expected);
+        Assert.assertArrayEquals(parts.toBounds(), copy.toBounds());
+    }
+
+    @Test
+    public void offset() {
+        PartList parts = PartList.of(0, 9, 10, 19).offset(100);
+        Assert.assertArrayEquals(new long[]{100, 109, 110, 119}, parts.toBounds());
+    }
+
+    @Test
+    public void merge() {
+        PartList parts = PartList.between(0, 99, 10);
+        Assert.assertArrayEquals(new long[]{0, 29, 30, 59, 60, 89, 90, 99}, parts.merge(3).toBounds());
+        Assert.assertArrayEquals(parts.toBounds(), parts.merge(1).toBounds());
+        Assert.assertArrayEquals(new long[]{0, 99}, parts.merge(100).toBounds());
+    }
+
+    @Test
+    public void split() {
+        PartList parts = PartList.of(0, 9, 10, 12, 20, 20);
+        Assert.assertArrayEquals(new long[]{0, 3, 4, 7, 8, 9, 10, 12, 20, 20}, parts.split(4).toBounds());
+
+        // splitting then merging back gives the original range
+        PartList whole = PartList.of(0, 99);
+        Assert.assertArrayEquals(whole.toBounds(), whole.split(7).merge(Integer.MAX_VALUE).toBounds());
+    }
+
+    @Test
+    public void splitAtEndOfLongRange() {
+        PartList parts = PartList.of(Long.MAX_VALUE - 4, Long.MAX_VALUE).split(2);
+        Assert.assertArrayEquals(new long[]{Long.MAX_VALUE - 4, Long.MAX_VALUE - 3,
+                Long.MAX_VALUE - 2, Long.MAX_VALUE - 1,
+                Long.MAX_VALUE, Long.MAX_VALUE}, parts.toBounds());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBounds() {
+        PartList.of(0, 9).startAt(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unevenBounds() {
+        PartList.of(0, 9, 10);
+    }
+}
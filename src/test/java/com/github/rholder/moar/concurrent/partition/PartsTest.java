@@ -19,7 +19,13 @@ package com.github.rholder.moar.concurrent.partition;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
 public class PartsTest {
 
@@ -199,4 +205,180 @@ public class PartsTest {
             System.out.println(String.format("[%d, %d]", p.start, p.end));
         }
     }
+
+    @Test
+    public void lazyPartsMatchList() {
+        long[][] cases = {{0, 73, 22}, {0, 26, 13}, {0, 27, 13}, {0, 17, 30}, {0, 17, 17}, {23, 21, 10}, {5, 1, 1}, {0, 1000, 1}};
+        for (long[] c : cases) {
+            List<Part> expected = Parts.among(c[0], c[1], c[2]);
+
+            assertSameParts(expected, listOf(Parts.lazilyAmong(c[0], c[1], c[2])));
+
+            List<Part> streamed = Parts.stream(c[0], c[1], c[2]).parallel().collect(Collectors.<Part>toList());
+            assertSameParts(expected, streamed);
+
+            List<Part> cursored = new ArrayList<Part>();
+            PartCursor cursor = Parts.cursor(c[0], c[1], c[2]);
+            while (cursor.next()) {
+                cursored.add(new Part(cursor.getStart(), cursor.getEnd()));
+            }
+            assertSameParts(expected, cursored);
+        }
+    }
+
+    @Test
+    public void lazyBetween() {
+        assertSameParts(Parts.between(23, 43, 10), listOf(Parts.lazilyBetween(23, 43, 10)));
+    }
+
+    @Test
+    public void hugeRangeSplitsWithoutListing() {
+        // a trillion values in chunks of 1000 is a billion parts
+        Spliterator<Part> right = Parts.spliterator(0, 1000000000000L, 1000);
+        Assert.assertEquals(1000000000L, right.estimateSize());
+
+        Spliterator<Part> left = right.trySplit();
+        Assert.assertEquals(500000000L, left.estimateSize());
+        Assert.assertEquals(500000000L, right.estimateSize());
+
+        final List<Part> first = new ArrayList<Part>();
+        right.tryAdvance(new Consumer<Part>() {
+            @Override
+            public void accept(Part part) {
+                first.add(part);
+            }
+        });
+        Assert.assertEquals(500000000000L, first.get(0).start);
+        Assert.assertEquals(500000000999L, first.get(0).end);
+
+        PartCursor cursor = Parts.cursor(0, 1000000000000L, 1000);
+        Assert.assertEquals(1000000000L, cursor.remaining());
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals(999, cursor.getEnd());
+
+        // the parallel sum of every part's length covers the whole range
+        long covered = Parts.stream(0, 10000000, 7).parallel().mapToLong(new ToLongFunction<Part>() {
+            @Override
+            public long applyAsLong(Part p) {
+                return p.end - p.start + 1;
+            }
+        }).sum();
+        Assert.assertEquals(10000000, covered);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lazyRejectsEmptyChunks() {
+        Parts.cursor(0, 100, 0);
+    }
+
+    @Test
+    public void intoEqualPartitions() {
+        List<Part> parts = Parts.into(23, 43, 4);
+        assertSameParts(list(23, 28, 29, 33, 34, 38, 39, 43), parts);
+
+        // never more partitions than values, and none for an empty range
+        assertSameParts(list(0, 0, 1, 1, 2, 2), Parts.into(0, 2, 5));
+        Assert.assertTrue(Parts.into(5, 4, 3).isEmpty());
+    }
+
+    @Test
+    public void byCostBalancesSkewedRange() {
+        // the first 100 values cost 10 each and the other 900 cost 1 each
+        LongToDoubleFunction elementCost = new LongToDoubleFunction() {
+            @Override
+            public double applyAsDouble(long value) {
+                return value < 100 ? 10 : 1;
+            }
+        };
+        CostHistogram histogram = new CostHistogram(0, new long[]{99, 999}, new double[]{1000, 900});
+
+        List<Part> byElement = Parts.byElementCost(0, 999, 4, elementCost);
+        List<Part> byHistogram = Parts.byCost(0, 999, 4, histogram);
+        assertCovers(0, 999, byElement);
+        assertCovers(0, 999, byHistogram);
+        Assert.assertEquals(4, byElement.size());
+        Assert.assertEquals(4, byHistogram.size());
+
+        // each part costs about a quarter of the total, give or take the most expensive value
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(475, costOf(byElement.get(i), elementCost), 10);
+            Assert.assertEquals(475, costOf(byHistogram.get(i), elementCost), 10);
+        }
+
+        // equal lengths would have put more than half of the cost in the first part
+        Assert.assertTrue(costOf(Parts.into(0, 999, 4).get(0), elementCost) > 1900 / 2);
+    }
+
+    @Test
+    public void byCostSplitsAroundExpensiveValues() {
+        // a single value dominates the cost, so it ends up alone and the rest share what's left
+        LongToDoubleFunction elementCost = new LongToDoubleFunction() {
+            @Override
+            public double applyAsDouble(long value) {
+                return value == 0 ? 100 : 1;
+            }
+        };
+        List<Part> parts = Parts.byElementCost(0, 9, 3, elementCost);
+        assertCovers(0, 9, parts);
+        Assert.assertEquals(3, parts.size());
+        Assert.assertEquals(0, parts.get(0).end);
+
+        // there's still a value for each part when the cost is all at the end
+        parts = Parts.byCost(0, 9, 5, new CostHistogram(0, new long[]{8, 9}, new double[]{0, 100}));
+        assertCovers(0, 9, parts);
+        Assert.assertEquals(5, parts.size());
+    }
+
+    @Test
+    public void byCostWithoutCostSplitsByLength() {
+        List<Part> parts = Parts.byCost(23, 43, 4, new CostHistogram(0, new long[]{10}, new double[]{5}));
+        assertSameParts(Parts.into(23, 43, 4), parts);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void byCostRejectsNoPartitions() {
+        Parts.byCost(0, 10, 0, new CostHistogram(0, new long[]{10}, new double[]{5}));
+    }
+
+    private static List<Part> listOf(Iterable<Part> parts) {
+        List<Part> list = new ArrayList<Part>();
+        for (Part p : parts) {
+            list.add(p);
+        }
+        return list;
+    }
+
+    private static List<Part> list(long... bounds) {
+        List<Part> list = new ArrayList<Part>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            list.add(new Part(bounds[i], bounds[i + 1]));
+        }
+        return list;
+    }
+
+    private static void assertCovers(long start, long end, List<Part> parts) {
+        long next = start;
+        for (Part p : parts) {
+            Assert.assertEquals(next, p.start);
+            Assert.assertTrue(p.end >= p.start);
+            next = p.end + 1;
+        }
+        Assert.assertEquals(end + 1, next);
+    }
+
+    private static double costOf(Part part, LongToDoubleFunction cost) {
+        double total = 0;
+        for (long value = part.start; value <= part.end; value++) {
+            total += cost.applyAsDouble(value);
+        }
+        return total;
+    }
+
+    private static void assertSameParts(List<Part> expected, List<Part> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).start, actual.get(i).start);
+            Assert.assertEquals(expected.get(i).end, actual.get(i).end);
+        }
+    }
 }
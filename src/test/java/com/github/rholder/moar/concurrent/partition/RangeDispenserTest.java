@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class RangeDispenserTest {
+
+    @Test
+    public void fixedMatchesParts() {
+        List<Part> expected = Parts.between(23, 43, 10);
+        List<Part> dispensed = drain(RangeDispenser.fixed(23, 43, 10));
+        Assert.assertEquals(expected.size(), dispensed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).start, dispensed.get(i).start);
+            Assert.assertEquals(expected.get(i).end, dispensed.get(i).end);
+        }
+    }
+
+    @Test
+    public void guidedPartsShrink() {
+        List<Part> parts = drain(RangeDispenser.guided(0, 9999, 4, 10));
+
+        // a quarter of what's left each time, 10000 / 4, then 7500 / 4, ...
+        Assert.assertEquals(2500, size(parts.get(0)));
+        Assert.assertEquals(1875, size(parts.get(1)));
+        assertCovers(0, 9999, parts);
+        for (int i = 1; i < parts.size(); i++) {
+            Assert.assertTrue(size(parts.get(i)) <= size(parts.get(i - 1)));
+            if (i < parts.size() - 1) {
+                Assert.assertTrue(size(parts.get(i)) >= 10);
+            }
+        }
+    }
+
+    @Test
+    public void factoringStartsSmaller() {
+        List<Part> parts = drain(RangeDispenser.factoring(100, 10099, 4, 1));
+        Assert.assertEquals(1250, size(parts.get(0)));
+        assertCovers(100, 10099, parts);
+        Assert.assertEquals(1, size(parts.get(parts.size() - 1)));
+    }
+
+    @Test
+    public void emptyRange() {
+        RangeDispenser dispenser = RangeDispenser.guided(10, 9, 4, 1);
+        Assert.assertEquals(0, dispenser.getTotalLength());
+        Assert.assertNull(dispenser.next());
+    }
+
+    @Test
+    public void concurrentClaimsCoverEveryValueOnce() throws Exception {
+        final RangeDispenser dispenser = RangeDispenser.guided(0, 99999, 8, 3);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(100000);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    Part part;
+                    while ((part = dispenser.next()) != null) {
+                        for (long v = part.start; v <= part.end; v++) {
+                            seen.incrementAndGet((int) v);
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < seen.length(); i++) {
+            Assert.assertEquals("value " + i, 1, seen.get(i));
+        }
+        Assert.assertEquals(0, dispenser.getRemaining());
+    }
+
+    private static List<Part> drain(RangeDispenser dispenser) {
+        List<Part> parts = new ArrayList<Part>();
+        Part part;
+        while ((part = dispenser.next()) != null) {
+            parts.add(part);
+        }
+        return parts;
+    }
+
+    private static long size(Part part) {
+        return (part.end - part.start) + 1;
+    }
+
+    private static void assertCovers(long start, long end, List<Part> parts) {
+        long expected = start;
+        for (Part part : parts) {
+            Assert.assertEquals(expected, part.start);
+            expected = part.end + 1;
+        }
+        Assert.assertEquals(end + 1, expected);
+    }
+}
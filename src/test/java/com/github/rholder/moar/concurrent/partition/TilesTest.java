@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.partition;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class TilesTest {
+
+    @Test
+    public void rowMajor() {
+        List<Tile> tiles = Tiles.between(0, 4, 10, 14, 3, 3, TileOrder.ROW_MAJOR);
+        Assert.assertEquals(4, tiles.size());
+        assertTile(0, 2, 10, 12, tiles.get(0));
+        assertTile(0, 2, 13, 14, tiles.get(1));
+        assertTile(3, 4, 10, 12, tiles.get(2));
+        assertTile(3, 4, 13, 14, tiles.get(3));
+    }
+
+    @Test
+    public void zOrder() {
+        // a 4 x 4 grid of tiles visits each quadrant in turn
+        List<Tile> tiles = Tiles.among(8, 8, 2, 2, TileOrder.Z_ORDER);
+        Assert.assertEquals(16, tiles.size());
+        long[][] expected = {
+                {0, 0}, {0, 1}, {1, 0}, {1, 1},
+                {0, 2}, {0, 3}, {1, 2}, {1, 3},
+                {2, 0}, {2, 1}, {3, 0}, {3, 1},
+                {2, 2}, {2, 3}, {3, 2}, {3, 3}};
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i][0] * 2, tiles.get(i).rowStart);
+            Assert.assertEquals(expected[i][1] * 2, tiles.get(i).colStart);
+        }
+    }
+
+    @Test
+    public void zOrderCoversUnevenGrid() {
+        // a 3 x 7 grid of tiles with partial tiles along the bottom and right
+        List<Tile> tiles = Tiles.among(25, 61, 10, 9, TileOrder.Z_ORDER);
+        Assert.assertEquals(21, tiles.size());
+
+        boolean[][] covered = new boolean[25][61];
+        for (Tile t : tiles) {
+            for (long r = t.rowStart; r <= t.rowEnd; r++) {
+                for (long c = t.colStart; c <= t.colEnd; c++) {
+                    Assert.assertFalse(covered[(int) r][(int) c]);
+                    covered[(int) r][(int) c] = true;
+                }
+            }
+        }
+        for (boolean[] row : covered) {
+            for (boolean b : row) {
+                Assert.assertTrue(b);
+            }
+        }
+    }
+
+    @Test
+    public void emptyRange() {
+        Assert.assertTrue(Tiles.among(0, 10, 4, 4, TileOrder.Z_ORDER).isEmpty());
+    }
+
+    @Test
+    public void tileSize() {
+        Assert.assertEquals(36, Tiles.tileSize(8, Tiles.L1_CACHE_BYTES, 3));
+        Assert.assertEquals(128, Tiles.tileSize(4, Tiles.L1_CACHE_BYTES * 2, 1));
+        Assert.assertEquals(1, Tiles.tileSize(8, 4, 1));
+    }
+
+    private static void assertTile(long rowStart, long rowEnd, long colStart, long colEnd, Tile tile) {
+        Assert.assertEquals(rowStart, tile.rowStart);
+        Assert.assertEquals(rowEnd, tile.rowEnd);
+        Assert.assertEquals(colStart, tile.colStart);
+        Assert.assertEquals(colEnd, tile.colEnd);
+    }
+}
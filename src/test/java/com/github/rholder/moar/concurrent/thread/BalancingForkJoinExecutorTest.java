@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BalancingForkJoinExecutorTest {
+
+    @Test
+    public void runsAllTasks() throws Exception {
+        BalancingForkJoinExecutor executor = StrategicExecutors.newBalancingForkJoinExecutor(16, 1.0f);
+
+        final AtomicInteger ran = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ran.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertEquals(200, ran.get());
+
+        // each task is counted after its future completes, so wait for the last of them
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (executor.snapshot().completedTasks < 200 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        // tasks that mostly sleep should have asked for more threads than the parallelism
+        PoolSnapshot snapshot = executor.snapshot();
+        Assert.assertEquals(200, snapshot.completedTasks);
+        Assert.assertTrue(snapshot.waitTime > 0);
+        Assert.assertTrue(snapshot.corePoolSize <= snapshot.maximumPoolSize);
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void blockingReturnsResult() throws Exception {
+        BalancingForkJoinExecutor executor = StrategicExecutors.newBalancingForkJoinExecutor(4, 1.0f);
+        Future<String> future = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return BalancingForkJoinExecutor.blocking(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        Thread.sleep(10);
+                        return "done";
+                    }
+                });
+            }
+        });
+        Assert.assertEquals("done", future.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void blockingWrapsException() throws Exception {
+        try {
+            BalancingForkJoinExecutor.blocking(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IllegalStateException("boom");
+                }
+            });
+            Assert.fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parallelismOverMax() {
+        new BalancingForkJoinExecutor(2, 4, new MXBeanThreadProfiler(), PoolSizingControllers.targetUtilization(1.0f), 0.5f, 10, SamplingStrategies.everyTask());
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BalancingScheduledExecutorTest {
+
+    @Test
+    public void delayedTaskRunsOnPool() throws Exception {
+        BalancingScheduledExecutor executor = StrategicExecutors.newBalancingScheduledExecutor(4, 1.0f);
+        long start = System.nanoTime();
+        ScheduledFuture<String> future = executor.schedule(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return Thread.currentThread().getName();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+
+        String thread = future.get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertNotEquals("BalancingScheduledExecutor-timer", thread);
+        Assert.assertTrue(future.isDone());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, executor.getExecutor().getSampledTaskCount());
+    }
+
+    @Test
+    public void fixedRateRunsUntilCancelled() throws Exception {
+        BalancingScheduledExecutor executor = StrategicExecutors.newBalancingScheduledExecutor(4, 1.0f, 0.0f);
+        final CountDownLatch runs = new CountDownLatch(5);
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                runs.countDown();
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(runs.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertTrue(future.isCancelled());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.getExecutor().isTerminated());
+    }
+
+    @Test
+    public void runsNeverOverlap() throws Exception {
+        BalancingScheduledExecutor executor = StrategicExecutors.newBalancingScheduledExecutor(8, 1.0f, 0.0f);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger mostRunning = new AtomicInteger();
+        final CountDownLatch runs = new CountDownLatch(5);
+
+        // every run takes 6 times as long as the period
+        ScheduledFuture<?> future = executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                int now = running.incrementAndGet();
+                mostRunning.set(Math.max(mostRunning.get(), now));
+                sleep(30);
+                running.decrementAndGet();
+                runs.countDown();
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(runs.await(10, TimeUnit.SECONDS));
+        future.cancel(false);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, mostRunning.get());
+    }
+
+    @Test
+    public void exceptionStopsFurtherRuns() throws Exception {
+        BalancingScheduledExecutor executor = StrategicExecutors.newBalancingScheduledExecutor(4, 1.0f);
+        final AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> future = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (runs.incrementAndGet() == 3) {
+                    throw new IllegalStateException("third run");
+                }
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        sleep(50);
+        Assert.assertEquals(3, runs.get());
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void jitterSpreadsOutPeriodicTasks() throws Exception {
+        BalancingScheduledExecutor executor = StrategicExecutors.newBalancingScheduledExecutor(4, 1.0f, 1.0f);
+        Runnable nothing = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.scheduleAtFixedRate(nothing, 0, 10, TimeUnit.SECONDS));
+        }
+
+        // the first runs are spread across the whole period instead of all firing at once
+        long earliest = Long.MAX_VALUE;
+        long latest = Long.MIN_VALUE;
+        for (ScheduledFuture<?> future : futures) {
+            long delay = future.getDelay(TimeUnit.MILLISECONDS);
+            earliest = Math.min(earliest, delay);
+            latest = Math.max(latest, delay);
+        }
+        Assert.assertTrue("spread of " + (latest - earliest) + " ms", latest - earliest > 1000);
+        Assert.assertTrue(latest <= 10000);
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        for (ScheduledFuture<?> future : futures) {
+            Assert.assertTrue(future.isCancelled());
+        }
+    }
+
+    @Test
+    public void shutdownRunsDelayedTasks() throws Exception {
+        BalancingScheduledExecutor executor = StrategicExecutors.newBalancingScheduledExecutor(4, 1.0f);
+        ScheduledFuture<String> delayed = executor.schedule(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "ran";
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertFalse(executor.isTerminated());
+        Assert.assertEquals("ran", delayed.get(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
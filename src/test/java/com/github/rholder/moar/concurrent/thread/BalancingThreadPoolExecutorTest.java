@@ -0,0 +1,207 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+public class BalancingThreadPoolExecutorTest {
+
+    @Test
+    public void listenerSeesEveryBalance() throws Exception {
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(8, 1.0f, 0.5f, 10);
+        final AtomicInteger decisions = new AtomicInteger();
+        executor.addBalanceListener(new BalanceListener() {
+            @Override
+            public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+                Assert.assertTrue(corePoolSize >= 1 && corePoolSize <= snapshot.maximumPoolSize);
+                decisions.incrementAndGet();
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // balances after the 1st, 11th, ... 91st task
+        Assert.assertEquals(10, decisions.get());
+        Assert.assertEquals(10, executor.getBalanceCount());
+        Assert.assertEquals(100, executor.getSampledTaskCount());
+        Assert.assertTrue(executor.getTargetPoolSize() > 0);
+    }
+
+    @Test
+    public void exposedOverJmx() throws Exception {
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(4, 1.0f);
+        ObjectName name = executor.registerMBean("exposedOverJmx");
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+
+            // the pool balances after the task's future completes, so wait for it
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Long.valueOf(1).equals(server.getAttribute(name, "BalanceCount")) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(4, server.getAttribute(name, "MaximumPoolSize"));
+            Assert.assertEquals(1L, server.getAttribute(name, "BalanceCount"));
+            Assert.assertEquals(0L, server.getAttribute(name, "RejectedTaskCount"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void countsRejections() throws Exception {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.AbortPolicy());
+        BalancingThreadPoolExecutor executor = new BalancingThreadPoolExecutor(tpe, new MXBeanThreadProfiler(), 1.0f, 0.5f, 10);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            Assert.fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(1, executor.getRejectedTaskCount());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void completableFuturesRecordLatencies() throws Exception {
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(4, 1.0f);
+        CompletableFuture<Integer> sum = executor.supplyAsync(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                sleep(20);
+                return 1;
+            }
+        }).thenCombine(executor.supplyAsync(new Supplier<Integer>() {
+            @Override
+            public Integer get() {
+                return 2;
+            }
+        }), new BiFunction<Integer, Integer, Integer>() {
+            @Override
+            public Integer apply(Integer a, Integer b) {
+                return a + b;
+            }
+        });
+        Assert.assertEquals(3, sum.get(10, TimeUnit.SECONDS).intValue());
+        executor.runAsync(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(3, executor.getRunTimeHistogram().getCount());
+        Assert.assertEquals(3, executor.getQueueDelayHistogram().getCount());
+
+        // the slowest of the 3 tasks slept for 20 ms
+        long slowest = executor.getRunTimeHistogram().getPercentile(100.0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue("slowest took " + slowest, slowest >= 17);
+        Assert.assertEquals(executor.getRunTimeHistogram().getPercentile(99.0, TimeUnit.NANOSECONDS), executor.getRunTime99thPercentile());
+    }
+
+    @Test
+    public void snapshotTailCoversLastInterval() throws Exception {
+        ThreadPoolExecutor tpe = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        BalancingThreadPoolExecutor executor = new BalancingThreadPoolExecutor(tpe, new MXBeanThreadProfiler(), 1.0f, 0.5f, 2);
+        final List<Long> runTimes = new CopyOnWriteArrayList<Long>();
+        executor.addBalanceListener(new BalanceListener() {
+            @Override
+            public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+                runTimes.add(snapshot.runTime99thPercentile);
+            }
+        });
+
+        // balances after the 1st, 3rd, and 5th task, only the 2nd one is slow
+        for (int i = 0; i < 5; i++) {
+            final boolean slow = i == 1;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (slow) {
+                        sleep(20);
+                    }
+                }
+            }).get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(3, runTimes.size());
+        Assert.assertTrue(runTimes.toString(), runTimes.get(1) >= TimeUnit.MILLISECONDS.toNanos(17));
+        Assert.assertTrue(runTimes.toString(), runTimes.get(2) < TimeUnit.MILLISECONDS.toNanos(17));
+
+        // while the lifetime histogram still has it
+        Assert.assertTrue(executor.getRunTime99thPercentile() >= TimeUnit.MILLISECONDS.toNanos(17));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
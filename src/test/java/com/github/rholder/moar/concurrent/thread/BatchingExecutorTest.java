@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchingExecutorTest {
+
+    @Test
+    public void coalescesIntoFullBatches() throws Exception {
+        BatchingExecutor executor = StrategicExecutors.newBatchingExecutor(4, 1.0f, 100, 1, TimeUnit.HOURS);
+        final AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 10000; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10000, ran.get());
+        Assert.assertEquals(10000, executor.getTaskCount());
+        Assert.assertEquals(100, executor.getBatchCount());
+    }
+
+    @Test
+    public void lingerHandsOffPartialBatch() throws Exception {
+        BatchingExecutor executor = new BatchingExecutor(Executors.newFixedThreadPool(2), 1000, 10, TimeUnit.MILLISECONDS);
+        Future<String> future = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "done";
+            }
+        });
+        Assert.assertEquals("done", future.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, executor.getBatchCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void lingerSurvivesRejection() throws Exception {
+        final AtomicInteger rejections = new AtomicInteger(1);
+        ThreadPoolExecutor rejectingOnce = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public void execute(Runnable command) {
+                if (rejections.getAndDecrement() > 0) {
+                    throw new RejectedExecutionException("rejecting once");
+                }
+                super.execute(command);
+            }
+        };
+        BatchingExecutor executor = new BatchingExecutor(rejectingOnce, 1000, 10, TimeUnit.MILLISECONDS);
+        final CountDownLatch first = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                first.countDown();
+            }
+        });
+
+        // the rejected batch is retried on a later flush
+        Assert.assertTrue(first.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(rejections.get() < 0);
+
+        // and lingering keeps going after it
+        final CountDownLatch second = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                second.countDown();
+            }
+        });
+        Assert.assertTrue(second.await(10, TimeUnit.SECONDS));
+
+        // counted once handed off, which may be after the batch already ran
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, executor.getTaskCount());
+        Assert.assertEquals(2, executor.getBatchCount());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopBatch() throws Exception {
+        BatchingExecutor executor = new BatchingExecutor(Executors.newSingleThreadExecutor(), 3, 1, TimeUnit.HOURS);
+        final CountDownLatch done = new CountDownLatch(2);
+        Runnable counting = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        executor.execute(counting);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        executor.execute(counting);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectsAfterShutdown() {
+        BatchingExecutor executor = new BatchingExecutor(Executors.newSingleThreadExecutor(), 10, 1, TimeUnit.SECONDS);
+        executor.shutdown();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+}
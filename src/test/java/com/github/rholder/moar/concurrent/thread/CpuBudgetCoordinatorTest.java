@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class CpuBudgetCoordinatorTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void evenSplitBeforeMeasuring() {
+        CpuBudgetCoordinator coordinator = new CpuBudgetCoordinator(CpuBudgets.fixed(8));
+        CpuBudget a = coordinator.register(1);
+        CpuBudget b = coordinator.register(3);
+        Assert.assertEquals(2.0, a.getAvailableCpus(), 0.0001);
+        Assert.assertEquals(6.0, b.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void splitsByMeasuredDemand() {
+        CpuBudgetCoordinator coordinator = new CpuBudgetCoordinator(CpuBudgets.fixed(8));
+        CpuBudgetCoordinator.Share a = coordinator.register(1);
+        CpuBudgetCoordinator.Share b = coordinator.register(1);
+
+        long now = System.nanoTime();
+        // 1000 tasks/s using 3 ms of CPU each keeps 3 CPU's busy, 1000 tasks/s using 1 ms keeps 1 busy
+        measure(a, now - SECOND, now, 1000, 3000000);
+        measure(b, now - SECOND, now, 1000, 1000000);
+        Assert.assertEquals(3.0, a.getCpuDemand(), 0.0001);
+        Assert.assertEquals(6.0, a.getAvailableCpus(), 0.0001);
+        Assert.assertEquals(2.0, b.getAvailableCpus(), 0.0001);
+
+        // a new pool counts as having the average demand
+        CpuBudget c = coordinator.register(1);
+        Assert.assertEquals(8.0 * 2 / 6, c.getAvailableCpus(), 0.0001);
+
+        // once b leaves, the new pool is assumed to need as much as a
+        b.unregister();
+        Assert.assertEquals(4.0, a.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void backlogRaisesDemand() {
+        CpuBudgetCoordinator coordinator = new CpuBudgetCoordinator(CpuBudgets.fixed(8));
+        CpuBudgetCoordinator.Share a = coordinator.register(1);
+        CpuBudgetCoordinator.Share b = coordinator.register(1);
+
+        // both keep 1 CPU busy, but a's tasks wait as long to start as they take to run
+        long now = System.nanoTime();
+        a.balanced(new PoolSnapshot(now - SECOND, 1, 1, 1, 0, 1000000, 1000000, 0, 0), 1, 1);
+        a.balanced(new PoolSnapshot(now, 1, 1, 1, 1000, 1000000, 1000000, 10, 2000000), 1, 1);
+        measure(b, now - SECOND, now, 1000, 1000000);
+        Assert.assertEquals(2.0, a.getCpuDemand(), 0.0001);
+        Assert.assertEquals(8.0 * 2 / 3, a.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void weightsScaleDemand() {
+        CpuBudgetCoordinator coordinator = new CpuBudgetCoordinator(CpuBudgets.fixed(8));
+        CpuBudgetCoordinator.Share a = coordinator.register(3);
+        CpuBudgetCoordinator.Share b = coordinator.register(1);
+
+        long now = System.nanoTime();
+        measure(a, now - SECOND, now, 1000, 1000000);
+        measure(b, now - SECOND, now, 1000, 1000000);
+        Assert.assertEquals(6.0, a.getAvailableCpus(), 0.0001);
+        Assert.assertEquals(2.0, b.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void idlePoolsDontCount() {
+        CpuBudgetCoordinator coordinator = new CpuBudgetCoordinator(CpuBudgets.fixed(8));
+        CpuBudgetCoordinator.Share a = coordinator.register(1);
+        CpuBudgetCoordinator.Share b = coordinator.register(1);
+
+        long now = System.nanoTime();
+        measure(a, now - SECOND, now, 1000, 1000000);
+        measure(b, now - 120 * SECOND, now - 119 * SECOND, 1000, 1000000);
+        Assert.assertEquals(8.0, a.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void factoryRegistersPool() throws Exception {
+        CpuBudgetCoordinator coordinator = new CpuBudgetCoordinator(CpuBudgets.fixed(2));
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(4, 1.0f, coordinator, 1);
+        Assert.assertEquals(1, coordinator.getShareCount());
+        for (int i = 0; i < 50; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.getBalanceCount() > 0);
+
+        // the share goes away with the pool
+        Assert.assertEquals(0, coordinator.getShareCount());
+    }
+
+    private static void measure(CpuBudgetCoordinator.Share share, long from, long to, long tasks, long cpuTime) {
+        share.balanced(new PoolSnapshot(from, 1, 1, 1, 0, cpuTime, cpuTime, 0, 0), 1, 1);
+        share.balanced(new PoolSnapshot(to, 1, 1, 1, tasks * (to - from) / SECOND, cpuTime, cpuTime, 0, 0), 1, 1);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+public class CpuBudgetsTest {
+
+    @Rule
+    public TemporaryFolder cgroup = new TemporaryFolder();
+
+    @Test
+    public void cgroupV2Quota() throws Exception {
+        write(new File(cgroup.getRoot(), "cpu.max"), "150000 100000");
+        Assert.assertEquals(1.5, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void cgroupV2Unlimited() throws Exception {
+        write(new File(cgroup.getRoot(), "cpu.max"), "max 100000");
+        Assert.assertEquals(8.0, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void cgroupV1Quota() throws Exception {
+        File cpu = cgroup.newFolder("cpu,cpuacct");
+        write(new File(cpu, "cpu.cfs_quota_us"), "200000");
+        write(new File(cpu, "cpu.cfs_period_us"), "100000");
+        Assert.assertEquals(2.0, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void cgroupV1Unlimited() throws Exception {
+        File cpu = cgroup.newFolder("cpu");
+        write(new File(cpu, "cpu.cfs_quota_us"), "-1");
+        write(new File(cpu, "cpu.cfs_period_us"), "100000");
+        Assert.assertEquals(8.0, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void cgroupV2NestedGroup() throws Exception {
+        write(procCgroup(), "0::/system.slice/app.service");
+        File slice = cgroup.newFolder("system.slice", "app.service").getParentFile();
+        write(new File(cgroup.getRoot(), "cpu.max"), "max 100000");
+        write(new File(slice, "cpu.max"), "200000 100000");
+        write(new File(slice, "app.service/cpu.max"), "300000 100000");
+        Assert.assertEquals(2.0, eightCpus().getAvailableCpus(), 0.0001);
+
+        write(new File(slice, "app.service/cpu.max"), "50000 100000");
+        Assert.assertEquals(0.5, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void cgroupV1NestedGroup() throws Exception {
+        write(procCgroup(), "11:memory:/docker/abc\n4:cpu,cpuacct:/docker/abc");
+        File cpu = cgroup.newFolder("cpu,cpuacct", "docker", "abc");
+        write(new File(cpu, "cpu.cfs_quota_us"), "50000");
+        write(new File(cpu, "cpu.cfs_period_us"), "100000");
+        Assert.assertEquals(0.5, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void groupOutsideOfMountUsesRoot() throws Exception {
+        write(procCgroup(), "0::/elsewhere");
+        write(new File(cgroup.getRoot(), "cpu.max"), "150000 100000");
+        Assert.assertEquals(1.5, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void noCgroup() {
+        Assert.assertEquals(8.0, eightCpus().getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void quotaChangesAreSeenAfterRefresh() throws Exception {
+        File max = new File(cgroup.getRoot(), "cpu.max");
+        write(max, "400000 100000");
+        CpuBudget budget = new ContainerCpuBudget(cgroup.getRoot(), 0, TimeUnit.SECONDS) {
+            @Override
+            protected int getAvailableProcessors() {
+                return 8;
+            }
+        };
+        Assert.assertEquals(4.0, budget.getAvailableCpus(), 0.0001);
+        write(max, "100000 100000");
+        Assert.assertEquals(1.0, budget.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void loadAwareLeavesNeighboursAlone() {
+        // other processes use half of the 8 processors while this one uses an eighth
+        CpuBudget budget = new FixedLoadCpuBudget(CpuBudgets.fixed(8), 0.625, 0.125);
+        Assert.assertEquals(4.0, budget.getAvailableCpus(), 0.0001);
+
+        // a smaller quota is still the limit on a quiet machine
+        budget = new FixedLoadCpuBudget(CpuBudgets.fixed(2), 0.125, 0.125);
+        Assert.assertEquals(2.0, budget.getAvailableCpus(), 0.0001);
+
+        // never below a single CPU
+        budget = new FixedLoadCpuBudget(CpuBudgets.fixed(8), 1.0, 0.0);
+        Assert.assertEquals(1.0, budget.getAvailableCpus(), 0.0001);
+
+        // no measurements available
+        budget = new FixedLoadCpuBudget(CpuBudgets.fixed(8), -1, -1);
+        Assert.assertEquals(8.0, budget.getAvailableCpus(), 0.0001);
+    }
+
+    @Test
+    public void loadAwareMeasuresOrFallsBack() {
+        // whether or not this JVM exposes CPU load, the budget stays usable
+        double cpus = new LoadAwareCpuBudget(CpuBudgets.fixed(8)).getAvailableCpus();
+        Assert.assertTrue(cpus >= 1.0 && cpus <= 8.0);
+    }
+
+    @Test
+    public void utilizationUsesBudget() {
+        PoolSizingController controller = PoolSizingControllers.targetUtilization(1.0f, CpuBudgets.fixed(2.5));
+
+        // 3 ms of waiting for every 1 ms of CPU
+        PoolSnapshot snapshot = new PoolSnapshot(0, 1, 1, 500, 0, 3000000, 1000000, 0, 0);
+        Assert.assertEquals(10, controller.computePoolSize(snapshot));
+    }
+
+    private File procCgroup() {
+        return new File(cgroup.getRoot(), "proc-self-cgroup");
+    }
+
+    private ContainerCpuBudget eightCpus() {
+        return new ContainerCpuBudget(cgroup.getRoot(), procCgroup(), 1, TimeUnit.HOURS) {
+            @Override
+            protected int getAvailableProcessors() {
+                return 8;
+            }
+        };
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(contents + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static class FixedLoadCpuBudget extends LoadAwareCpuBudget {
+
+        private final double systemLoad;
+        private final double processLoad;
+
+        FixedLoadCpuBudget(CpuBudget delegate, double systemLoad, double processLoad) {
+            super(delegate, 0, TimeUnit.SECONDS);
+            this.systemLoad = systemLoad;
+            this.processLoad = processLoad;
+        }
+
+        @Override
+        protected int getAvailableProcessors() {
+            return 8;
+        }
+
+        @Override
+        protected double getSystemCpuLoad() {
+            return systemLoad;
+        }
+
+        @Override
+        protected double getProcessCpuLoad() {
+            return processLoad;
+        }
+    }
+}
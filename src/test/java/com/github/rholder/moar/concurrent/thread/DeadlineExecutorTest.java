@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class DeadlineExecutorTest {
+
+    @Test
+    public void runsEarliestDeadlineFirst() throws Exception {
+        DeadlineExecutor executor = new DeadlineExecutor(Executors.newSingleThreadExecutor());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // queue up behind the blocked thread in the opposite order of their deadlines
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        executor.execute(new Recording(order, 0));
+        for (int i = 5; i >= 1; i--) {
+            executor.execute(new Recording(order, i), i, TimeUnit.HOURS);
+        }
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // the task without a deadline goes last
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 0), order);
+        Assert.assertEquals(0.0, executor.getDeadlineMissRate(), 0.0);
+    }
+
+    @Test
+    public void discardsExpiredTasks() throws Exception {
+        DeadlineExecutor executor = StrategicExecutors.newDeadlineExecutor(1, 1.0f);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Future<String> doomed = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "too late";
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        Future<String> fine = executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                return "on time";
+            }
+        }, 1, TimeUnit.HOURS);
+
+        Thread.sleep(20);
+        release.countDown();
+        Assert.assertEquals("on time", fine.get(10, TimeUnit.SECONDS));
+        try {
+            doomed.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected a CancellationException");
+        } catch (CancellationException e) {
+            // expected
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, executor.getExpiredTaskCount());
+        Assert.assertEquals(2, executor.getCompletedTaskCount());
+        Assert.assertEquals(1.0 / 3, executor.getDeadlineMissRate(), 0.0001);
+    }
+
+    @Test
+    public void reroutesExpiredTasks() throws Exception {
+        final List<Runnable> rerouted = Collections.synchronizedList(new ArrayList<Runnable>());
+        Executor fallback = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                rerouted.add(command);
+            }
+        };
+        DeadlineExecutor executor = new DeadlineExecutor(Executors.newSingleThreadExecutor(), DeadlineExecutor.rerouteTo(fallback));
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        executor.execute(task, 0, TimeUnit.NANOSECONDS);
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.singletonList(task), rerouted);
+    }
+
+    @Test
+    public void rejectedBeforeRunning() {
+        ManualExecutor manual = new ManualExecutor();
+        DeadlineExecutor executor = new DeadlineExecutor(manual);
+        manual.rejectNext = true;
+        try {
+            executor.execute(new Recording(new ArrayList<Integer>(), 0));
+            Assert.fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        Assert.assertEquals(0, executor.getQueuedTaskCount());
+    }
+
+    @Test
+    public void rejectedAfterAnotherPullRanIt() {
+        ManualExecutor manual = new ManualExecutor();
+        DeadlineExecutor executor = new DeadlineExecutor(manual);
+        List<Integer> order = new ArrayList<Integer>();
+        executor.execute(new Recording(order, 0));
+        executor.execute(new Recording(order, 2), 1, TimeUnit.HOURS);
+
+        // a thread picks up a waiting runnable, which takes the new most urgent task, before the rejection
+        manual.runBeforeRejecting = true;
+        manual.rejectNext = true;
+        executor.execute(new Recording(order, 1), 1, TimeUnit.MINUTES);
+        Assert.assertEquals(Arrays.asList(1), order);
+
+        // the runnable owed for the task left without one was handed over once the executor accepted it
+        manual.runAll();
+        Assert.assertEquals(Arrays.asList(1, 2, 0), order);
+        Assert.assertEquals(0, executor.getQueuedTaskCount());
+    }
+
+    @Test
+    public void abandonsTaskLeftWithoutPullAfterShutdown() throws Exception {
+        ManualExecutor manual = new ManualExecutor();
+        DeadlineExecutor executor = new DeadlineExecutor(manual);
+        List<Integer> order = new ArrayList<Integer>();
+        executor.execute(new Recording(order, 0));
+        Future<?> orphan = executor.submit(new Recording(order, 2), 1, TimeUnit.HOURS);
+
+        // the executor shuts down as it rejects, so the most urgent task left without a runnable is cancelled
+        manual.runBeforeRejecting = true;
+        manual.rejectNext = true;
+        manual.shutdownWhenRejecting = true;
+        executor.execute(new Recording(order, 1), 1, TimeUnit.MINUTES);
+        Assert.assertTrue(orphan.isCancelled());
+        manual.runAll();
+        Assert.assertEquals(Arrays.asList(1, 0), order);
+    }
+
+    /**
+     * Collect tasks to run by hand, optionally rejecting the next one after
+     * running the first one or shutting down, and rejecting all of them once
+     * shut down.
+     */
+    private static class ManualExecutor extends AbstractExecutorService {
+
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        boolean rejectNext;
+        boolean runBeforeRejecting;
+        boolean shutdownWhenRejecting;
+        boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejectNext || shutdown) {
+                rejectNext = false;
+                if (runBeforeRejecting) {
+                    runBeforeRejecting = false;
+                    tasks.remove(0).run();
+                }
+                shutdown |= shutdownWhenRejecting;
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+
+    private static class Recording implements Runnable {
+
+        private final List<Integer> order;
+        private final int id;
+
+        Recording(List<Integer> order, int id) {
+            this.order = order;
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            order.add(id);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyedSerialExecutorTest {
+
+    private static final int KEYS = 16;
+    private static final int TASKS_PER_KEY = 500;
+
+    @Test
+    public void ordersTasksPerKey() throws Exception {
+        KeyedSerialExecutor executor = StrategicExecutors.newKeyedSerialExecutor(8, 1.0f);
+
+        final List<List<Integer>> seen = new ArrayList<List<Integer>>();
+        for (int k = 0; k < KEYS; k++) {
+            seen.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+
+        final CountDownLatch done = new CountDownLatch(KEYS * TASKS_PER_KEY);
+        for (int i = 0; i < TASKS_PER_KEY; i++) {
+            for (int k = 0; k < KEYS; k++) {
+                final int key = k;
+                final int sequence = i;
+                executor.execute(key, new Runnable() {
+                    @Override
+                    public void run() {
+                        seen.get(key).add(sequence);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        ExecutorService pool = (ExecutorService) executor.getExecutor();
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (List<Integer> sequences : seen) {
+            Assert.assertEquals(TASKS_PER_KEY, sequences.size());
+            for (int i = 0; i < TASKS_PER_KEY; i++) {
+                Assert.assertEquals(i, (int) sequences.get(i));
+            }
+        }
+
+        Assert.assertEquals(KEYS * TASKS_PER_KEY, executor.getCompletedTaskCount());
+        Assert.assertTrue(executor.getAverageBatchSize() >= 1);
+    }
+
+    @Test
+    public void neverRunsOneKeyConcurrently() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool, TaskClassifiers.byTag(), 2);
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger violations = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(200);
+        for (int i = 0; i < 200; i++) {
+            executor.execute("same", new Runnable() {
+                @Override
+                public void run() {
+                    if (running.incrementAndGet() != 1) {
+                        violations.incrementAndGet();
+                    }
+                    Thread.yield();
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(0, violations.get());
+
+        // batches of at most 2 tasks
+        Assert.assertTrue(executor.getBatchCount() >= 100);
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void dropsIdleKeys() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        final CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute("key-" + i, new Runnable() {
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+        Assert.assertEquals(0, executor.getPendingTaskCount());
+    }
+
+    @Test
+    public void rejectedTaskIsNotKept() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        pool.shutdown();
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        try {
+            executor.execute("key", new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            Assert.fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(0, executor.getActiveKeyCount());
+            Assert.assertEquals(0, executor.getSubmittedTaskCount());
+        }
+    }
+
+    @Test
+    public void rejectedDrainAbandonsKey() throws Exception {
+        final List<Runnable> drains = new ArrayList<Runnable>();
+        final AtomicInteger rejecting = new AtomicInteger();
+        Executor manual = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (rejecting.get() > 0) {
+                    throw new RejectedExecutionException();
+                }
+                drains.add(command);
+            }
+        };
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(manual, TaskClassifiers.byTag(), 1);
+
+        final AtomicInteger ran = new AtomicInteger();
+        executor.execute("key", new Runnable() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+                throw new IllegalStateException("task failed");
+            }
+        });
+        FutureTask<Void> pending = new FutureTask<Void>(new Counting(ran), null);
+        executor.execute("key", pending);
+        Assert.assertEquals(1, drains.size());
+
+        // the drain can't be resubmitted after the first task fails, which must not hide its failure
+        rejecting.set(1);
+        try {
+            drains.remove(0).run();
+            Assert.fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("task failed", e.getMessage());
+        }
+        Assert.assertTrue(pending.isCancelled());
+        Assert.assertEquals(1, executor.getAbandonedTaskCount());
+        Assert.assertEquals(0, executor.getPendingTaskCount());
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+
+        // the key isn't stuck behind a drain that never runs
+        rejecting.set(0);
+        executor.execute("key", new Counting(ran));
+        drains.remove(0).run();
+        Assert.assertEquals(2, ran.get());
+    }
+
+    @Test
+    public void rejectedFirstDrainAbandonsTasksAddedMeanwhile() throws Exception {
+        final CountDownLatch submitting = new CountDownLatch(1);
+        final CountDownLatch reject = new CountDownLatch(1);
+        Executor rejecting = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                submitting.countDown();
+                try {
+                    reject.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new RejectedExecutionException();
+            }
+        };
+        final KeyedSerialExecutor executor = new KeyedSerialExecutor(rejecting, TaskClassifiers.byTag(), 1);
+
+        final AtomicInteger ran = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    executor.execute("key", new Counting(ran));
+                } catch (RejectedExecutionException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        };
+        first.start();
+
+        // another task for the key is accepted while the first drain is being submitted
+        Assert.assertTrue(submitting.await(10, TimeUnit.SECONDS));
+        FutureTask<Void> second = new FutureTask<Void>(new Counting(ran), null);
+        executor.execute("key", second);
+        reject.countDown();
+        first.join(10000);
+
+        Assert.assertEquals(1, rejected.get());
+        Assert.assertTrue(second.isCancelled());
+        Assert.assertEquals(0, ran.get());
+        Assert.assertEquals(1, executor.getSubmittedTaskCount());
+        Assert.assertEquals(1, executor.getAbandonedTaskCount());
+        Assert.assertEquals(0, executor.getPendingTaskCount());
+        Assert.assertEquals(0, executor.getActiveKeyCount());
+    }
+
+    @Test
+    public void untaggedTasksAreNotSerialized() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+
+        // two untagged tasks of the same class can run at once
+        final CountDownLatch both = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    both.countDown();
+                    try {
+                        both.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(both.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.getSubmittedTaskCount());
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static class Counting implements Runnable {
+
+        private final AtomicInteger count;
+
+        Counting(AtomicInteger count) {
+            this.count = count;
+        }
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+    }
+}
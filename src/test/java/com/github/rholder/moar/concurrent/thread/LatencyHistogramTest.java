@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        // every bucket starts right after the previous one ends
+        int last = LatencyHistogram.bucket(Long.MAX_VALUE);
+        for (int i = 1; i < last; i++) {
+            Assert.assertEquals(LatencyHistogram.highestValue(i - 1) + 1, LatencyHistogram.lowestValue(i));
+            Assert.assertEquals(i, LatencyHistogram.bucket(LatencyHistogram.lowestValue(i)));
+            Assert.assertEquals(i, LatencyHistogram.bucket(LatencyHistogram.highestValue(i)));
+        }
+        Assert.assertEquals(last, LatencyHistogram.bucket(1L << LatencyHistogram.MAX_EXPONENT));
+    }
+
+    @Test
+    public void bucketsWithinEighth() {
+        for (long value = 8; value > 0 && value < (1L << LatencyHistogram.MAX_EXPONENT); value = value * 3 + 1) {
+            int bucket = LatencyHistogram.bucket(value);
+            long width = LatencyHistogram.highestValue(bucket) - LatencyHistogram.lowestValue(bucket) + 1;
+            Assert.assertTrue("value " + value, width <= value / 8 + 1);
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(99.0, TimeUnit.NANOSECONDS));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        assertWithinEighth(50, histogram.getPercentile(50.0, TimeUnit.MILLISECONDS));
+        assertWithinEighth(99, histogram.getPercentile(99.0, TimeUnit.MILLISECONDS));
+        assertWithinEighth(100, histogram.getPercentile(100.0, TimeUnit.MILLISECONDS));
+        assertWithinEighth(50, histogram.getMean(TimeUnit.MILLISECONDS));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void weightedRecords() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000, 99);
+        histogram.record(1000000, 1);
+        Assert.assertEquals(100, histogram.getCount());
+        assertWithinEighth(1000, histogram.getPercentile(99.0, TimeUnit.NANOSECONDS));
+        assertWithinEighth(1000000, histogram.getPercentile(99.5, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void outOfRangeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(0, histogram.getPercentile(50.0, TimeUnit.NANOSECONDS));
+        Assert.assertEquals(1L << LatencyHistogram.MAX_EXPONENT, histogram.getPercentile(100.0, TimeUnit.NANOSECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentileOutOfRange() {
+        new LatencyHistogram().getPercentile(101.0, TimeUnit.NANOSECONDS);
+    }
+
+    private static void assertWithinEighth(long expected, long actual) {
+        Assert.assertTrue("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 8 + 1);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class PoolSizingControllerTest {
+
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    public void utilizationMatchesFormula() {
+        PoolSizingController controller = PoolSizingControllers.targetUtilization(0.5f);
+
+        // 3 ms of waiting for every 1 ms of CPU
+        PoolSnapshot snapshot = new PoolSnapshot(0, 1, 1, 500, 0, 3000000, 1000000, 0, 0);
+        Assert.assertEquals((int) Math.ceil(CPUS * 0.5f * 4), controller.computePoolSize(snapshot));
+
+        // nothing measured yet
+        snapshot = new PoolSnapshot(0, 1, 1, 500, 0, 0, 0, 0, 0);
+        Assert.assertEquals(1, controller.computePoolSize(snapshot));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void utilizationOutOfRange() {
+        PoolSizingControllers.targetUtilization(1.5f);
+    }
+
+    @Test
+    public void backlogGrowsPool() {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(new FixedSize(4));
+
+        // tasks start right away, use whatever the delegate says
+        PoolSnapshot snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 1000000, 1000000, 0, 0);
+        Assert.assertEquals(4, controller.computePoolSize(snapshot));
+
+        // tasks wait 3/4 as long to start as they take to run, so 8 threads are about 6 short
+        snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 1000000, 1000000, 0, 1500000);
+        Assert.assertEquals(14, controller.computePoolSize(snapshot));
+
+        // never more than doubles at once
+        snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 1000000, 1000000, 0, 100000000);
+        Assert.assertEquals(16, controller.computePoolSize(snapshot));
+
+        // queued tasks count even when the measured delay is still small
+        snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 1000000, 1000000, 3, 0);
+        Assert.assertEquals(11, controller.computePoolSize(snapshot));
+    }
+
+    @Test
+    public void backlogIgnoresTinyDelays() {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(new FixedSize(4));
+
+        // 50 microseconds of delay is under the 1 ms floor
+        PoolSnapshot snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 10000, 10000, 0, 50000);
+        Assert.assertEquals(4, controller.computePoolSize(snapshot));
+    }
+
+    @Test
+    public void backlogGrowsPoolForTail() {
+        PoolSizingController controller = PoolSizingControllers.backlogAware(new FixedSize(4), 5, TimeUnit.MILLISECONDS);
+
+        // the average is fine and the tail is within its target
+        PoolSnapshot snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 1000000, 1000000, 0, 0, 4000000, 2000000);
+        Assert.assertEquals(4, controller.computePoolSize(snapshot));
+
+        // the tail overshoots by half the time a task takes to run, so 8 threads are 4 short
+        snapshot = new PoolSnapshot(0, 8, 8, 100, 0, 1000000, 1000000, 0, 0, 6000000, 2000000);
+        Assert.assertEquals(12, controller.computePoolSize(snapshot));
+
+        // without a target the tail is ignored
+        controller = PoolSizingControllers.backlogAware(new FixedSize(4));
+        Assert.assertEquals(4, controller.computePoolSize(snapshot));
+    }
+
+    @Test
+    public void hillClimbingFindsThroughputPeak() {
+        // throughput rises linearly up to 12 threads, then contention makes every extra thread hurt
+        int size = climb(new HillClimbingPoolSizingController(1), 1, 200, 12);
+        Assert.assertTrue("settled at " + size, size >= 10 && size <= 14);
+    }
+
+    @Test
+    public void hillClimbingShrinksOversizedPool() {
+        int size = climb(new HillClimbingPoolSizingController(1), 64, 200, 12);
+        Assert.assertTrue("settled at " + size, size >= 10 && size <= 14);
+    }
+
+    @Test
+    public void hillClimbingStaysWithinBounds() {
+        int size = climb(new HillClimbingPoolSizingController(2), 4, 200, 1000);
+        Assert.assertTrue("settled at " + size, size >= 2 && size <= 32);
+    }
+
+    /**
+     * Drive the given controller against a synthetic pool whose throughput
+     * peaks at the given number of threads, returning the final size.
+     */
+    private static int climb(PoolSizingController controller, int size, int rounds, int peak) {
+        long now = 0;
+        long completed = 0;
+        for (int i = 0; i < rounds; i++) {
+            size = Math.max(1, Math.min(controller.computePoolSize(new PoolSnapshot(now, size, size, 32, completed, 0, 0, 0, 0)), 32));
+            now += INTERVAL;
+            completed += throughput(size, peak) / 2;
+        }
+        return size;
+    }
+
+    private static class FixedSize implements PoolSizingController {
+
+        private final int size;
+
+        FixedSize(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int computePoolSize(PoolSnapshot snapshot) {
+            return size;
+        }
+    }
+
+    private static long throughput(int size, int peak) {
+        if (size <= peak) {
+            return size * 1000L;
+        }
+        return Math.max(0, peak * 1000L - (size - peak) * 400L);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ProfilingThreadPoolExecutorTest {
+
+    @Test
+    public void balancesFromHooks() throws Exception {
+        ProfilingThreadPoolExecutor executor = StrategicExecutors.newProfilingThreadPoolExecutor(8, PoolSizingControllers.targetUtilization(1.0f), 0.5f, 10, SamplingStrategies.everyTask());
+        final AtomicInteger decisions = new AtomicInteger();
+        executor.addBalanceListener(new BalanceListener() {
+            @Override
+            public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+                Assert.assertTrue(corePoolSize >= 1 && corePoolSize <= snapshot.maximumPoolSize);
+                decisions.incrementAndGet();
+            }
+        });
+
+        final AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // balances after the 1st, 11th, ... 91st task
+        Assert.assertEquals(100, ran.get());
+        Assert.assertEquals(100, executor.getSampledTaskCount());
+        Assert.assertEquals(10, decisions.get());
+        Assert.assertEquals(10, executor.getBalanceCount());
+        Assert.assertTrue(executor.getTargetPoolSize() > 0);
+    }
+
+    @Test
+    public void tasksAreNotWrapped() throws Exception {
+        ProfilingThreadPoolExecutor executor = newSingleThreadExecutor(new LinkedBlockingQueue<Runnable>(), SamplingStrategies.everyTask());
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        executor.execute(task);
+
+        // the queue holds the very same task that was submitted
+        Assert.assertSame(task, executor.getQueue().peek());
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, executor.getCompletedTaskCount());
+    }
+
+    @Test
+    public void queueDelayFromBacklog() throws Exception {
+        ProfilingThreadPoolExecutor executor = newSingleThreadExecutor(new LinkedBlockingQueue<Runnable>(), SamplingStrategies.everyTask());
+        final AtomicLong runTime = new AtomicLong();
+        final AtomicInteger estimated = new AtomicInteger();
+        executor.addBalanceListener(new BalanceListener() {
+            @Override
+            public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+                runTime.set(Math.max(runTime.get(), snapshot.runTime99thPercentile));
+                if (snapshot.queueDelay99thPercentile == snapshot.queueDelay) {
+                    estimated.incrementAndGet();
+                }
+            }
+        });
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+
+        // by the second balance about 90 tasks of at least 1 ms each are still waiting
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.getBalanceCount() >= 2);
+        Assert.assertTrue("delay of " + executor.getAverageQueueDelay(), executor.getAverageQueueDelay() > 0);
+
+        // the controller sees the run time tail and the estimated delay in place of its tail
+        Assert.assertTrue("run time of " + runTime.get(), runTime.get() >= TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertEquals(executor.getBalanceCount(), estimated.get());
+    }
+
+    @Test
+    public void unsampledTasksSkipProfiling() throws Exception {
+        // sample exactly every 10th task
+        final AtomicInteger tasks = new AtomicInteger();
+        SamplingStrategy everyTenth = new SamplingStrategy() {
+            @Override
+            public int sample() {
+                return tasks.incrementAndGet() % 10 == 0 ? 10 : 0;
+            }
+        };
+        ProfilingThreadPoolExecutor executor = newSingleThreadExecutor(new LinkedBlockingQueue<Runnable>(), everyTenth);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(10, executor.getSampledTaskCount());
+        Assert.assertEquals(100, executor.snapshot().completedTasks);
+    }
+
+    @Test
+    public void rejectionsAreCounted() throws Exception {
+        ProfilingThreadPoolExecutor executor = newSingleThreadExecutor(new ArrayBlockingQueue<Runnable>(1), SamplingStrategies.everyTask());
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(blocker);
+        executor.execute(blocker);
+        try {
+            executor.execute(blocker);
+            Assert.fail("Expected RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        Assert.assertEquals(1, executor.getRejectedTaskCount());
+        Assert.assertTrue(executor.getRejectedExecutionHandler() instanceof ThreadPoolExecutor.AbortPolicy);
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static ProfilingThreadPoolExecutor newSingleThreadExecutor(BlockingQueue<Runnable> queue, SamplingStrategy samplingStrategy) {
+        PoolSizingController single = new PoolSizingController() {
+            @Override
+            public int computePoolSize(PoolSnapshot snapshot) {
+                return 1;
+            }
+        };
+        return new ProfilingThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, queue, new ThreadPoolExecutor.AbortPolicy(),
+                new MXBeanThreadProfiler(), single, 0.5f, 10, samplingStrategy);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RejectionPoliciesTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ThreadPoolExecutor tpe;
+
+    @After
+    public void release() {
+        release.countDown();
+        if (tpe != null) {
+            tpe.shutdown();
+        }
+    }
+
+    @Test
+    public void deadlineShedsAfterTimeout() {
+        DeadlineBlocksPolicy policy = RejectionPolicies.deadlineBlocks(50, TimeUnit.MILLISECONDS);
+        saturatedPool(policy);
+
+        long start = System.nanoTime();
+        try {
+            tpe.execute(new Noop());
+            Assert.fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        Assert.assertEquals(1, policy.getRejectedCount());
+        Assert.assertEquals(1, policy.getShedCount());
+    }
+
+    @Test
+    public void queueDelayShedsRightAway() {
+        QueueDelaySheddingPolicy policy = RejectionPolicies.shedOnQueueDelay(10, TimeUnit.SECONDS);
+        saturatedPool(policy);
+
+        // tasks have been measured to wait 20 seconds, so don't wait at all
+        policy.balanced(new PoolSnapshot(0, 1, 1, 1, 0, 0, 0, 0, TimeUnit.SECONDS.toNanos(20)), 1, 1);
+        long start = System.nanoTime();
+        try {
+            tpe.execute(new Noop());
+            Assert.fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+        Assert.assertEquals(1, policy.getShedCount());
+    }
+
+    @Test
+    public void callerRunsUntilBudgetUsed() {
+        CallerRunsWithinBudgetPolicy policy = RejectionPolicies.callerRunsWithinBudget(1, 1, TimeUnit.HOURS);
+        saturatedPool(policy);
+
+        final AtomicReference<Thread> ranOn = new AtomicReference<Thread>();
+        tpe.execute(new Runnable() {
+            @Override
+            public void run() {
+                ranOn.set(Thread.currentThread());
+            }
+        });
+        Assert.assertSame(Thread.currentThread(), ranOn.get());
+        Assert.assertEquals(0, policy.getShedCount());
+
+        CallerRunsWithinBudgetPolicy noBudget = RejectionPolicies.callerRunsWithinBudget(0, 1, TimeUnit.HOURS);
+        tpe.setRejectedExecutionHandler(noBudget);
+        try {
+            tpe.execute(new Noop());
+            Assert.fail("Expected a RejectedExecutionException");
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(1, noBudget.getShedCount());
+        }
+    }
+
+    /**
+     * Start a single thread pool with no queue whose only thread is busy.
+     */
+    private void saturatedPool(RejectedExecutionHandler policy) {
+        tpe = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), policy);
+        tpe.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private static class Noop implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SamplingStrategiesTest {
+
+    @Test
+    public void everyTaskIsSampled() {
+        SamplingStrategy strategy = SamplingStrategies.everyTask();
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(1, strategy.sample());
+        }
+    }
+
+    @Test
+    public void fixedRateSamplesOneInN() {
+        int rate = 50;
+        int total = 500000;
+        SamplingStrategy strategy = SamplingStrategies.fixedRate(rate);
+
+        int samples = 0;
+        long weights = 0;
+        for (int i = 0; i < total; i++) {
+            int weight = strategy.sample();
+            if (weight > 0) {
+                Assert.assertEquals(rate, weight);
+                samples++;
+                weights += weight;
+            }
+        }
+
+        // expect 10000 samples, allow for a little randomness
+        Assert.assertTrue(samples > 9000 && samples < 11000);
+
+        // the weights of the samples should account for all of the tasks
+        Assert.assertEquals(1.0, weights / (double) total, 0.1);
+    }
+
+    @Test
+    public void adaptiveBacksOffForFastTasks() {
+        SamplingStrategy strategy = SamplingStrategies.adaptive(1000, 1 << 20);
+
+        int samples = 0;
+        int total = 0;
+        long weights = 0;
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        while (System.nanoTime() < end) {
+            int weight = strategy.sample();
+            if (weight > 0) {
+                samples++;
+                weights += weight;
+            }
+            total++;
+        }
+
+        // a tight loop submits far faster than 1000/s so most of them should be skipped
+        Assert.assertTrue(samples < total / 10);
+
+        // while the weights still roughly account for every task seen
+        Assert.assertEquals(1.0, weights / (double) total, 0.5);
+    }
+
+    @Test
+    public void adaptiveSamplesEverythingWhenSlow() throws InterruptedException {
+        SamplingStrategy strategy = SamplingStrategies.adaptive(1000, 1 << 20);
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(1, strategy.sample());
+            Thread.sleep(5);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fixedRateMustBePositive() {
+        SamplingStrategies.fixedRate(0);
+    }
+
+    @Test
+    public void unsampledTasksStillRun() throws InterruptedException {
+        final AtomicInteger ran = new AtomicInteger();
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(4, 1.0f, SamplingStrategies.fixedRate(10));
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1000, ran.get());
+    }
+}
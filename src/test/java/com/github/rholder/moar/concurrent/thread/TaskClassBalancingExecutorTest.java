@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread;
+
+import com.github.rholder.moar.concurrent.StrategicExecutors;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TaskClassBalancingExecutorTest {
+
+    private static final int MAX_THREADS = 8;
+
+    @Test
+    public void subPoolPerTag() throws Exception {
+        TaskClassBalancingExecutor executor = StrategicExecutors.newTaskClassBalancingExecutor(MAX_THREADS, 1.0f, TaskClassifiers.byTag());
+
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(new Tagged(i % 2 == 0 ? "cpu" : "io")));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals(i % 2 == 0 ? "cpu" : "io", futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+
+        Map<Object, BalancingThreadPoolExecutor> executors = executor.getTaskClassExecutors();
+        Assert.assertEquals(2, executors.size());
+        Assert.assertTrue(executors.containsKey("cpu"));
+        Assert.assertTrue(executors.containsKey("io"));
+
+        // the sub-pools split the shared cap exactly
+        Assert.assertEquals(MAX_THREADS, totalMaximumPoolSize(executors));
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void moreClassesThanThreads() throws Exception {
+        TaskClassBalancingExecutor executor = StrategicExecutors.newTaskClassBalancingExecutor(3, 1.0f, TaskClassifiers.byTag());
+
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(executor.submit(new Tagged("tag-" + (i % 10))));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals("tag-" + (i % 10), futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+
+        // 2 classes got their own sub-pool and the other 8 share the last one
+        Map<Object, BalancingThreadPoolExecutor> executors = executor.getTaskClassExecutors();
+        Assert.assertEquals(3, executors.size());
+        Assert.assertTrue(executors.containsKey(TaskClassBalancingExecutor.OVERFLOW));
+        Assert.assertEquals(3, totalMaximumPoolSize(executors));
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void profilePerTaskClass() throws Exception {
+        BalancingThreadPoolExecutor executor = StrategicExecutors.newBalancingThreadPoolExecutor(MAX_THREADS, 1.0f, TaskClassifiers.byTaskClass());
+
+        final AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Counting(ran));
+            executor.submit(new Tagged("ignored")).get();
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(100, ran.get());
+
+        // submitted tasks are classified by what they are, not as the FutureTask wrapping them
+        Map<Object, TaskClassProfile> profiles = executor.getTaskClassProfiles();
+        Assert.assertEquals(2, profiles.size());
+        Assert.assertEquals(100, profiles.get(Counting.class).tasks.get());
+        Assert.assertEquals(100, profiles.get(Tagged.class).tasks.get());
+    }
+
+    private static int totalMaximumPoolSize(Map<Object, BalancingThreadPoolExecutor> executors) {
+        int total = 0;
+        for (BalancingThreadPoolExecutor e : executors.values()) {
+            total += e.snapshot().maximumPoolSize;
+        }
+        return total;
+    }
+
+    private static class Tagged implements Callable<String>, TaggedTask {
+
+        private final String tag;
+
+        Tagged(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public Object getTaskTag() {
+            return tag;
+        }
+
+        @Override
+        public String call() throws Exception {
+            return tag;
+        }
+    }
+
+    private static class Counting implements Runnable {
+
+        private final AtomicInteger count;
+
+        Counting(AtomicInteger count) {
+            this.count = count;
+        }
+
+        @Override
+        public void run() {
+            count.incrementAndGet();
+        }
+    }
+}
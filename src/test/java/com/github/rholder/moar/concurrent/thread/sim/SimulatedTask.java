@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+/**
+ * This is a single task of a simulated workload, which arrives at a given time
+ * and then goes through a sequence of phases once it gets a thread.
+ */
+public class SimulatedTask {
+
+    /**
+     * The kinds of phase a task goes through.
+     */
+    public enum Phase {
+        /** Use a CPU for the duration, sharing the CPU's with other threads. */
+        CPU,
+        /** Block for the duration without using a CPU, like I/O. */
+        BLOCK,
+        /** Use a CPU for the duration while holding the lock shared by all tasks. */
+        LOCKED
+    }
+
+    public final long arrival;
+    public final Phase[] phases;
+    public final long[] durations;
+
+    public SimulatedTask(long arrival, Phase[] phases, long[] durations) {
+        if (phases.length != durations.length) {
+            throw new IllegalArgumentException();
+        }
+        this.arrival = arrival;
+        this.phases = phases;
+        this.durations = durations;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+import com.github.rholder.moar.concurrent.thread.ThreadProfiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This {@link ThreadProfiler} reports the CPU and wait time a
+ * {@link Simulation} has charged to each of its simulated threads. Just like on
+ * a real JVM, a thread that is runnable but starved of a CPU accumulates
+ * neither.
+ */
+public class SimulatedThreadProfiler implements ThreadProfiler {
+
+    private final Map<Long, long[]> times = new HashMap<Long, long[]>();
+
+    @Override
+    public synchronized long getThreadCpuTime(long threadId) {
+        return times(threadId)[0];
+    }
+
+    @Override
+    public synchronized long getThreadWaitTime(long threadId) {
+        return times(threadId)[1];
+    }
+
+    synchronized void addCpuTime(long threadId, long nanos) {
+        times(threadId)[0] += nanos;
+    }
+
+    synchronized void addWaitTime(long threadId, long nanos) {
+        times(threadId)[1] += nanos;
+    }
+
+    private long[] times(long threadId) {
+        long[] t = times.get(threadId);
+        if (t == null) {
+            t = new long[2];
+            times.put(threadId, t);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+import com.github.rholder.moar.concurrent.thread.BalanceListener;
+import com.github.rholder.moar.concurrent.thread.BalancingThreadPoolExecutor;
+import com.github.rholder.moar.concurrent.thread.PoolSizingController;
+import com.github.rholder.moar.concurrent.thread.PoolSnapshot;
+import com.github.rholder.moar.concurrent.thread.SamplingStrategies;
+import com.github.rholder.moar.concurrent.thread.sim.SimulatedTask.Phase;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This replays a {@link Workload} against a {@link PoolSizingController} on a
+ * simulated machine in virtual time, so that minutes of load run in
+ * milliseconds and the same seed always gives the same result.
+ *
+ * The tasks are submitted to a real {@link BalancingThreadPoolExecutor} that
+ * profiles them with a {@link SimulatedThreadProfiler} and reads the time from
+ * a {@link VirtualClock}, so its tracking, smoothing, and balancing are the
+ * ones that run in production. Only the underlying pool is simulated: it works
+ * like a {@link ThreadPoolExecutor} with an unbounded queue, but each of its
+ * workers is a real thread that runs in lockstep with the simulation, blocking
+ * inside every task until the simulation has played out all of its phases.
+ * The machine has a fixed number of CPU's shared evenly by the threads that
+ * want one, and a single lock that {@link Phase#LOCKED} phases queue up for.
+ * Time moves in fixed steps, so phases should be several steps long.
+ */
+public class Simulation {
+
+    public static final long DEFAULT_STEP_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int cpus;
+    private final int maxThreads;
+    private final PoolSizingController poolSizingController;
+    private final float smoothingWeight;
+    private final int balanceAfter;
+    private final long stepNanos;
+
+    /**
+     * Construct a new {@link Simulation} using a smoothing weight of 0.5,
+     * balancing after every 23 tasks, and the default step.
+     *
+     * @param cpus                 the number of CPU's of the simulated machine
+     * @param maxThreads           the maximum size of the pool
+     * @param poolSizingController the controller to evaluate
+     */
+    public Simulation(int cpus, int maxThreads, PoolSizingController poolSizingController) {
+        this(cpus, maxThreads, poolSizingController, 0.5f, 23, DEFAULT_STEP_NANOS);
+    }
+
+    /**
+     * Construct a new {@link Simulation}.
+     *
+     * @param cpus                 the number of CPU's of the simulated machine
+     * @param maxThreads           the maximum size of the pool
+     * @param poolSizingController the controller to evaluate
+     * @param smoothingWeight      the weight of each task in the smoothed
+     *                             averages
+     * @param balanceAfter         balance the pool after this many tasks
+     * @param stepNanos            the length of each step of virtual time
+     */
+    public Simulation(int cpus, int maxThreads, PoolSizingController poolSizingController,
+                      float smoothingWeight, int balanceAfter, long stepNanos) {
+        if (cpus < 1 || maxThreads < 1 || balanceAfter < 1 || stepNanos < 1) {
+            throw new IllegalArgumentException();
+        }
+        if (poolSizingController == null) {
+            throw new NullPointerException();
+        }
+        this.cpus = cpus;
+        this.maxThreads = maxThreads;
+        this.poolSizingController = poolSizingController;
+        this.smoothingWeight = smoothingWeight;
+        this.balanceAfter = balanceAfter;
+        this.stepNanos = stepNanos;
+    }
+
+    /**
+     * Run the given workload for the given length of virtual time.
+     *
+     * @param workload the workload to replay
+     * @param duration how long to run for in virtual time
+     * @param unit     the unit of the duration
+     * @param seed     the seed for the randomness of the workload
+     */
+    public SimulationResult run(Workload workload, long duration, TimeUnit unit, long seed) {
+        return new Run(workload.generate(unit.toNanos(duration), new Random(seed)), unit.toNanos(duration)).run();
+    }
+
+    /**
+     * This is the state of a single run.
+     */
+    private class Run {
+
+        final List<SimulatedTask> tasks;
+        final long duration;
+        final VirtualClock clock = new VirtualClock();
+        final SimulatedThreadProfiler profiler = new SimulatedThreadProfiler();
+        final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+        final List<SimThread> threads = new ArrayList<SimThread>();
+        final ArrayDeque<SimThread> lockWaiters = new ArrayDeque<SimThread>();
+        final List<Long> latencies = new ArrayList<Long>();
+        final List<SimulationResult.Sample> samples = new ArrayList<SimulationResult.Sample>();
+        final SimulatedPool pool = new SimulatedPool();
+        final BalancingThreadPoolExecutor executor;
+
+        SimThread lockHolder;
+        long completed;
+        long threadNanos;
+
+        Run(List<SimulatedTask> tasks, long duration) {
+            this.tasks = tasks;
+            this.duration = duration;
+            this.executor = new BalancingThreadPoolExecutor(pool, profiler, poolSizingController,
+                    smoothingWeight, balanceAfter, SamplingStrategies.everyTask()) {
+                @Override
+                protected long nanoTime() {
+                    return clock.nanoTime();
+                }
+            };
+        }
+
+        SimulationResult run() {
+            BalanceListener listener = new BalanceListener() {
+                @Override
+                public void balanced(PoolSnapshot snapshot, int targetPoolSize, int corePoolSize) {
+                    samples.add(new SimulationResult.Sample(snapshot.timestamp, corePoolSize,
+                            snapshot.queueDepth, snapshot.completedTasks));
+                }
+            };
+            executor.addBalanceListener(listener);
+            samples.add(new SimulationResult.Sample(0, pool.getCorePoolSize(), 0, 0));
+
+            int next = 0;
+            try {
+                while (clock.nanoTime() < duration) {
+                    long now = clock.nanoTime();
+                    while (next < tasks.size() && tasks.get(next).arrival <= now) {
+                        executor.execute(new Arrival(tasks.get(next++)));
+                    }
+
+                    // idle threads above the core size go away, others pick up queued tasks
+                    for (Iterator<SimThread> it = threads.iterator(); it.hasNext(); ) {
+                        SimThread thread = it.next();
+                        if (thread.task == null) {
+                            if (threads.size() > pool.getCorePoolSize()) {
+                                it.remove();
+                                thread.terminate();
+                            } else if (!queue.isEmpty()) {
+                                start(thread, queue.poll());
+                            }
+                        }
+                    }
+                    while (!queue.isEmpty() && threads.size() < pool.getCorePoolSize()) {
+                        SimThread thread = new SimThread();
+                        thread.start();
+                        threads.add(thread);
+                        start(thread, queue.poll());
+                    }
+
+                    step();
+                    clock.advance(stepNanos);
+                    threadNanos += threads.size() * stepNanos;
+
+                    for (SimThread thread : new ArrayList<SimThread>(threads)) {
+                        while (thread.task != null && thread.remaining <= 0 && !thread.waitingForLock()) {
+                            nextPhase(thread);
+                        }
+                    }
+                }
+            } finally {
+                executor.removeBalanceListener(listener);
+            }
+
+            long pending = queue.size() + (tasks.size() - next);
+            for (SimThread thread : threads) {
+                if (thread.task != null) {
+                    pending++;
+                    thread.handBack();
+                }
+                thread.terminate();
+            }
+            return new SimulationResult(duration, completed, pending, threadNanos / duration, latencies, samples);
+        }
+
+        /**
+         * Charge one step of CPU or wait time to every busy thread.
+         */
+        void step() {
+            int runnable = 0;
+            for (SimThread thread : threads) {
+                if (thread.wantsCpu()) {
+                    runnable++;
+                }
+            }
+            double share = runnable > cpus ? cpus / (double) runnable : 1.0;
+            long cpuStep = (long) (share * stepNanos);
+
+            for (SimThread thread : threads) {
+                if (thread.task == null) {
+                    continue;
+                }
+                if (thread.wantsCpu()) {
+                    thread.remaining -= cpuStep;
+                    profiler.addCpuTime(thread.getId(), cpuStep);
+                } else if (thread.waitingForLock()) {
+                    profiler.addWaitTime(thread.getId(), stepNanos);
+                } else {
+                    thread.remaining -= stepNanos;
+                    profiler.addWaitTime(thread.getId(), stepNanos);
+                }
+            }
+        }
+
+        void start(SimThread thread, Runnable command) {
+            // the executor's wrapper takes its measurements and then blocks in the task
+            thread.command = command;
+            thread.toWorker.release();
+            thread.toSimulation.acquireUninterruptibly();
+            thread.phase = -1;
+            nextPhase(thread);
+        }
+
+        void nextPhase(SimThread thread) {
+            if (lockHolder == thread) {
+                lockHolder = lockWaiters.poll();
+            }
+
+            thread.phase++;
+            if (thread.phase == thread.task.phases.length) {
+                finish(thread);
+                return;
+            }
+
+            thread.remaining = thread.task.durations[thread.phase];
+            if (thread.task.phases[thread.phase] == Phase.LOCKED) {
+                if (lockHolder == null) {
+                    lockHolder = thread;
+                } else {
+                    lockWaiters.add(thread);
+                }
+            }
+        }
+
+        void finish(SimThread thread) {
+            latencies.add(clock.nanoTime() - thread.task.arrival);
+            completed++;
+            thread.handBack();
+        }
+
+        /**
+         * This is the task submitted to the executor for each simulated task,
+         * which hands its worker thread over to the simulation until the
+         * simulation is done with it.
+         */
+        class Arrival implements Runnable {
+
+            final SimulatedTask task;
+
+            Arrival(SimulatedTask task) {
+                this.task = task;
+            }
+
+            @Override
+            public void run() {
+                SimThread thread = (SimThread) Thread.currentThread();
+                thread.task = task;
+                thread.toSimulation.release();
+                thread.toWorker.acquireUninterruptibly();
+            }
+        }
+
+        /**
+         * This is the underlying pool of the executor. Its core size is set by
+         * the executor's balancing, but its workers are started, stopped, and
+         * given tasks by the simulation.
+         */
+        class SimulatedPool extends ThreadPoolExecutor {
+
+            SimulatedPool() {
+                // the queue given here stays empty so no real workers are ever started
+                super(1, maxThreads, 0, TimeUnit.NANOSECONDS, new LinkedBlockingQueue<Runnable>());
+            }
+
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+            }
+
+            @Override
+            public BlockingQueue<Runnable> getQueue() {
+                return queue;
+            }
+
+            @Override
+            public int getPoolSize() {
+                return threads.size();
+            }
+
+            @Override
+            public long getCompletedTaskCount() {
+                return completed;
+            }
+        }
+
+        /**
+         * This is a single worker thread, which only ever runs while the
+         * simulation waits for it to hand control back.
+         */
+        class SimThread extends Thread {
+
+            final Semaphore toWorker = new Semaphore(0);
+            final Semaphore toSimulation = new Semaphore(0);
+
+            Runnable command;
+            SimulatedTask task;
+            int phase;
+            long remaining;
+
+            SimThread() {
+                setDaemon(true);
+            }
+
+            @Override
+            public void run() {
+                for (;;) {
+                    toWorker.acquireUninterruptibly();
+                    if (command == null) {
+                        return;
+                    }
+                    command.run();
+                    toSimulation.release();
+                }
+            }
+
+            /**
+             * Let the current task return, waiting for the executor to finish
+             * tracking it and possibly balancing.
+             */
+            void handBack() {
+                task = null;
+                command = null;
+                toWorker.release();
+                toSimulation.acquireUninterruptibly();
+            }
+
+            /**
+             * Stop this idle thread and wait for it to die, so the executor
+             * stops tracking it.
+             */
+            void terminate() {
+                toWorker.release();
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            boolean wantsCpu() {
+                if (task == null) {
+                    return false;
+                }
+                Phase p = task.phases[phase];
+                return p == Phase.CPU || (p == Phase.LOCKED && lockHolder == this);
+            }
+
+            boolean waitingForLock() {
+                return task != null && task.phases[phase] == Phase.LOCKED && lockHolder != this;
+            }
+        }
+    }
+}
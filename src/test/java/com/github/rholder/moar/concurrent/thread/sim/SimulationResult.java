@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This holds what happened during a single run of a {@link Simulation}. All
+ * times are in nanoseconds of virtual time.
+ */
+public class SimulationResult {
+
+    public final long duration;
+    public final long completedTasks;
+    public final long pendingTasks;
+    public final long averageThreads;
+    public final List<Sample> samples;
+
+    private final List<Long> latencies;
+
+    SimulationResult(long duration, long completedTasks, long pendingTasks, long averageThreads,
+                     List<Long> latencies, List<Sample> samples) {
+        this.duration = duration;
+        this.completedTasks = completedTasks;
+        this.pendingTasks = pendingTasks;
+        this.averageThreads = averageThreads;
+        this.samples = Collections.unmodifiableList(samples);
+        this.latencies = new ArrayList<Long>(latencies);
+        Collections.sort(this.latencies);
+    }
+
+    /**
+     * Return the number of tasks completed per second.
+     */
+    public double throughput() {
+        return completedTasks / (duration / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Return the given percentile of the time from arrival to completion of
+     * the completed tasks, or 0 if none completed.
+     *
+     * @param percentile a value between 0.0 and 100.0
+     */
+    public long latency(double percentile) {
+        if (latencies.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * latencies.size()) - 1;
+        return latencies.get(Math.max(0, Math.min(index, latencies.size() - 1)));
+    }
+
+    /**
+     * Return the pool size the run ended with.
+     */
+    public int finalPoolSize() {
+        return samples.get(samples.size() - 1).poolSize;
+    }
+
+    /**
+     * Return the largest pool size chosen during the run.
+     */
+    public int maxPoolSize() {
+        int max = 0;
+        for (Sample sample : samples) {
+            max = Math.max(max, sample.poolSize);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d tasks (%.1f/s), %d pending, p50 %.2f ms, p99 %.2f ms, %d threads on average, %d at most, %d at the end",
+                completedTasks, throughput(), pendingTasks, latency(50) / 1e6, latency(99) / 1e6,
+                averageThreads, maxPoolSize(), finalPoolSize());
+    }
+
+    /**
+     * This is the state of the pool right after it balanced.
+     */
+    public static class Sample {
+
+        public final long time;
+        public final int poolSize;
+        public final int queueDepth;
+        public final long completedTasks;
+
+        Sample(long time, int poolSize, int queueDepth, long completedTasks) {
+            this.time = time;
+            this.poolSize = poolSize;
+            this.queueDepth = queueDepth;
+            this.completedTasks = completedTasks;
+        }
+    }
+}
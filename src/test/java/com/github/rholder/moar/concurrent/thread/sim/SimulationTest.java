@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+import com.github.rholder.moar.concurrent.thread.CpuBudget;
+import com.github.rholder.moar.concurrent.thread.CpuBudgets;
+import com.github.rholder.moar.concurrent.thread.HillClimbingPoolSizingController;
+import com.github.rholder.moar.concurrent.thread.PoolSizingController;
+import com.github.rholder.moar.concurrent.thread.PoolSizingControllers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class SimulationTest {
+
+    private static final int CPUS = 4;
+    private static final int MAX_THREADS = 200;
+    private static final long SEED = 42;
+    private static final CpuBudget BUDGET = CpuBudgets.fixed(CPUS);
+
+    @Test
+    public void sameSeedSameResult() {
+        Workload workload = Workloads.mix(Workloads.blocking(1000, 1, 4), Workloads.contended(200, 1, 1));
+        SimulationResult first = run(utilization(), workload);
+        SimulationResult second = run(utilization(), workload);
+
+        Assert.assertEquals(first.toString(), second.toString());
+        Assert.assertEquals(first.samples.size(), second.samples.size());
+        for (int i = 0; i < first.samples.size(); i++) {
+            Assert.assertEquals(first.samples.get(i).time, second.samples.get(i).time);
+            Assert.assertEquals(first.samples.get(i).poolSize, second.samples.get(i).poolSize);
+        }
+    }
+
+    @Test
+    public void cpuBoundStaysAtCpuCount() {
+        // 3000 tasks/s of 1 ms each keeps 3 of the 4 CPU's busy
+        SimulationResult result = run(utilization(), Workloads.cpuBound(3000, 1));
+        Assert.assertTrue(result.toString(), result.maxPoolSize() <= CPUS);
+        Assert.assertTrue(result.toString(), result.throughput() > 2900);
+    }
+
+    @Test
+    public void blockingGrowsToFormula() {
+        // 9 ms blocked for every 1 ms of CPU calls for 4 * (1 + 9) threads
+        SimulationResult result = run(utilization(), Workloads.blocking(3000, 1, 9));
+        Assert.assertTrue(result.toString(), result.finalPoolSize() >= 30 && result.finalPoolSize() <= 50);
+        Assert.assertTrue(result.toString(), result.throughput() > 2900);
+        Assert.assertTrue(result.toString(), result.latency(99) < TimeUnit.MILLISECONDS.toNanos(25));
+    }
+
+    @Test
+    public void contendedLockLimitsThroughput() {
+        // the lock can serve at most 1000 tasks/s no matter how many threads there are
+        SimulationResult result = run(utilization(), Workloads.contended(1500, 1, 1));
+        Assert.assertTrue(result.toString(), result.throughput() < 1050);
+        Assert.assertTrue(result.toString(), result.pendingTasks > 1000);
+    }
+
+    @Test
+    public void backlogAwareCutsBurstLatency() {
+        // bursts triple the load for 200 ms out of every second
+        Workload workload = Workloads.bursty(Workloads.blocking(1000, 1, 9), Workloads.blocking(3000, 1, 9), 1000, 200);
+        SimulationResult plain = run(utilization(), workload);
+        SimulationResult backlogAware = run(PoolSizingControllers.backlogAware(utilization()), workload);
+        Assert.assertTrue(backlogAware + " vs " + plain, backlogAware.latency(50) < plain.latency(50));
+        Assert.assertTrue(backlogAware + " vs " + plain, backlogAware.latency(90) < plain.latency(90));
+    }
+
+    @Test
+    public void hillClimbingGrowsForBlockingTasks() {
+        // starting from a single thread it has to climb past the CPU count to keep up
+        SimulationResult result = run(hillClimbing(), Workloads.blocking(3000, 1, 9));
+        Assert.assertTrue(result.toString(), result.maxPoolSize() >= 30);
+        Assert.assertTrue(result.toString(), result.throughput() > 2900);
+    }
+
+    @Test
+    public void hillClimbingStaysSmallBehindLock() {
+        // more threads don't get more through the lock, so there's nothing to climb towards
+        SimulationResult result = run(hillClimbing(), Workloads.contended(1500, 1, 1));
+        Assert.assertTrue(result.toString(), result.maxPoolSize() <= 2 * CPUS);
+        Assert.assertTrue(result.toString(), result.throughput() > 900);
+    }
+
+    private static PoolSizingController hillClimbing() {
+        return new HillClimbingPoolSizingController(1, 100, TimeUnit.MILLISECONDS,
+                HillClimbingPoolSizingController.DEFAULT_THRESHOLD, HillClimbingPoolSizingController.DEFAULT_MAX_STEP);
+    }
+
+    private static PoolSizingController utilization() {
+        return PoolSizingControllers.targetUtilization(1.0f, BUDGET);
+    }
+
+    private static SimulationResult run(PoolSizingController controller, Workload workload) {
+        return new Simulation(CPUS, MAX_THREADS, controller).run(workload, 5, TimeUnit.SECONDS, SEED);
+    }
+}
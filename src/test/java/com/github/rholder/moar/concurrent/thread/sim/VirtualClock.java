@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+/**
+ * This is the clock of a {@link Simulation}, which only moves when the
+ * simulation advances it.
+ */
+public class VirtualClock {
+
+    private long now;
+
+    /**
+     * Return the current virtual time in nanoseconds.
+     */
+    public long nanoTime() {
+        return now;
+    }
+
+    /**
+     * Move the clock forward by the given number of nanoseconds.
+     */
+    public void advance(long nanos) {
+        now += nanos;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Implementations of this interface generate the tasks arriving during a
+ * {@link Simulation}. All randomness must come from the given {@link Random} so
+ * that a simulation with the same seed is repeated exactly.
+ */
+public interface Workload {
+
+    /**
+     * Return the tasks arriving before the given time, in order of arrival.
+     *
+     * @param duration generate tasks arriving up to this many nanoseconds
+     * @param random   the source of all randomness in the workload
+     */
+    public List<SimulatedTask> generate(long duration, Random random);
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2012-2015 Ray Holder
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.rholder.moar.concurrent.thread.sim;
+
+import com.github.rholder.moar.concurrent.thread.sim.SimulatedTask.Phase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is a helper class for instantiating common simulated Workload's. Tasks
+ * arrive at random as a Poisson process and the duration of each phase is
+ * spread evenly between half and one and a half times its mean.
+ */
+public class Workloads {
+
+    private static final Comparator<SimulatedTask> BY_ARRIVAL = new Comparator<SimulatedTask>() {
+        @Override
+        public int compare(SimulatedTask a, SimulatedTask b) {
+            return a.arrival < b.arrival ? -1 : (a.arrival == b.arrival ? 0 : 1);
+        }
+    };
+
+    /**
+     * Return a {@link Workload} of tasks that only use the CPU.
+     *
+     * @param tasksPerSecond the average arrival rate
+     * @param cpuMillis      the mean CPU time of each task
+     */
+    public static Workload cpuBound(double tasksPerSecond, double cpuMillis) {
+        return poisson(tasksPerSecond, new Phase[]{Phase.CPU}, new double[]{cpuMillis});
+    }
+
+    /**
+     * Return a {@link Workload} of tasks that block, like on a remote call,
+     * and then use the CPU.
+     *
+     * @param tasksPerSecond the average arrival rate
+     * @param cpuMillis      the mean CPU time of each task
+     * @param blockMillis    the mean time each task spends blocked
+     */
+    public static Workload blocking(double tasksPerSecond, double cpuMillis, double blockMillis) {
+        return poisson(tasksPerSecond, new Phase[]{Phase.BLOCK, Phase.CPU}, new double[]{blockMillis, cpuMillis});
+    }
+
+    /**
+     * Return a {@link Workload} of tasks that use the CPU and then use it some
+     * more while holding a lock shared by every task, so adding threads beyond
+     * what the lock can serve only adds waiting.
+     *
+     * @param tasksPerSecond the average arrival rate
+     * @param cpuMillis      the mean CPU time of each task outside the lock
+     * @param lockedMillis   the mean CPU time of each task inside the lock
+     */
+    public static Workload contended(double tasksPerSecond, double cpuMillis, double lockedMillis) {
+        return poisson(tasksPerSecond, new Phase[]{Phase.CPU, Phase.LOCKED}, new double[]{cpuMillis, lockedMillis});
+    }
+
+    /**
+     * Return a {@link Workload} of tasks that arrive at the given average rate
+     * and go through the given phases.
+     *
+     * @param tasksPerSecond the average arrival rate
+     * @param phases         the phases each task goes through
+     * @param meanMillis     the mean duration of each phase
+     */
+    public static Workload poisson(final double tasksPerSecond, final Phase[] phases, final double[] meanMillis) {
+        if (tasksPerSecond <= 0 || phases.length != meanMillis.length) {
+            throw new IllegalArgumentException();
+        }
+        return new Workload() {
+            @Override
+            public List<SimulatedTask> generate(long duration, Random random) {
+                double meanGap = TimeUnit.SECONDS.toNanos(1) / tasksPerSecond;
+                List<SimulatedTask> tasks = new ArrayList<SimulatedTask>();
+                double t = 0;
+                for (;;) {
+                    t += -Math.log(1.0 - random.nextDouble()) * meanGap;
+                    if (t >= duration) {
+                        return tasks;
+                    }
+                    long[] durations = new long[phases.length];
+                    for (int i = 0; i < phases.length; i++) {
+                        durations[i] = (long) (meanMillis[i] * 1000000 * (0.5 + random.nextDouble()));
+                    }
+                    tasks.add(new SimulatedTask((long) t, phases, durations));
+                }
+            }
+        };
+    }
+
+    /**
+     * Return a {@link Workload} where the tasks of the burst workload only
+     * arrive during the first part of every period, on top of the steady
+     * workload arriving all the time.
+     *
+     * @param steady       the workload arriving all the time
+     * @param burst        the workload arriving only during bursts
+     * @param periodMillis the time from the start of one burst to the next
+     * @param burstMillis  how long each burst lasts
+     */
+    public static Workload bursty(final Workload steady, final Workload burst, final long periodMillis, final long burstMillis) {
+        if (burstMillis <= 0 || burstMillis > periodMillis) {
+            throw new IllegalArgumentException();
+        }
+        final Workload bursts = new Workload() {
+            @Override
+            public List<SimulatedTask> generate(long duration, Random random) {
+                long period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+                long length = TimeUnit.MILLISECONDS.toNanos(burstMillis);
+                List<SimulatedTask> tasks = new ArrayList<SimulatedTask>();
+                for (SimulatedTask task : burst.generate(duration, random)) {
+                    if (task.arrival % period < length) {
+                        tasks.add(task);
+                    }
+                }
+                return tasks;
+            }
+        };
+        return mix(steady, bursts);
+    }
+
+    /**
+     * Return a {@link Workload} of the tasks of all of the given workloads.
+     *
+     * @param workloads the workloads to mix
+     */
+    public static Workload mix(final Workload... workloads) {
+        return new Workload() {
+            @Override
+            public List<SimulatedTask> generate(long duration, Random random) {
+                List<SimulatedTask> tasks = new ArrayList<SimulatedTask>();
+                for (Workload workload : workloads) {
+                    tasks.addAll(workload.generate(duration, random));
+                }
+                Collections.sort(tasks, BY_ARRIVAL);
+                return tasks;
+            }
+        };
+    }
+}